@@ -1,11 +1,14 @@
 package com.raqun.piri.sample.model;
 
+import com.raqun.PiriParcelable;
+
 import java.io.Serializable;
 
 /**
  * Created by tyln on 13/06/2017.
  */
 
+@PiriParcelable
 public class Book implements Serializable {
     private int bookId;
     private String bookName;
@@ -0,0 +1,27 @@
+package com.raqun;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional settings of an Activity with PiriParams.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface PiriActivity {
+    /*
+     * Instead of a binder, an Args class named after the activity with an Args suffix is generated.
+     * Every param is read from the Intent the first time its accessor is called, so params that are
+     * never used aren't deserialized at all.
+     */
+    boolean lazy() default false;
+
+    /*
+     * All params are sent as one Parcelable extra, an Args class named after the activity with a
+     * PackedArgs suffix. It writes the params one after another without their keys, and bind reads
+     * them back in one pass. Can't be combined with lazy.
+     */
+    boolean packedArgs() default false;
+}
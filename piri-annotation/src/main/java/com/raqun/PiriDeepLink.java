@@ -0,0 +1,17 @@
+package com.raqun;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * URI paths which open an Activity, e.g. "/users/{id}/posts/{postId}". A segment in braces is
+ * converted to the PiriParam with that key, every other PiriParam is read from the query parameter
+ * with its key. Only the path is matched, the scheme and the host aren't.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface PiriDeepLink {
+    String[] value();
+}
@@ -12,4 +12,42 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface PiriParam {
     boolean required() default false;
+
+    /* How the param gets to the activity, see Transport */
+    Transport transport() default Transport.EXTRA;
+
+    /*
+     * Puts a List, ArrayList or Collection of boxed primitives into the Intent as a primitive array,
+     * e.g. a List<Long> as a long[], and binds it as an ArrayList again. The list can't contain null.
+     */
+    boolean packPrimitives() default false;
+
+    /*
+     * Decoded on a background Executor by the generated bindAsync(), see PiriBinding of piri-runtime.
+     * Meant for large Serializable or Parcelable params, bind() still decodes it right away.
+     */
+    boolean heavy() default false;
+
+    /*
+     * Bounds of the parcelled size the piri.sizeBudget option estimates, -1 when there's none.
+     * maxLength is the number of characters of a String or CharSequence, or of every one in an array or list.
+     * maxSize is the number of elements of an array or list.
+     * maxBytes is the parcelled size of the whole value, the only bound of a Parcelable, Serializable or Bundle.
+     */
+    int maxLength() default -1;
+
+    int maxSize() default -1;
+
+    int maxBytes() default -1;
+
+    enum Transport {
+        /* Put into the Intent as a typed extra */
+        EXTRA,
+        /*
+         * Kept in the in-process PiriHandoff store of piri-runtime, only a token is put into the Intent.
+         * Avoids parcelling large objects, but the param is null if the process was killed or the
+         * object was evicted from the store.
+         */
+        IN_MEMORY
+    }
 }
@@ -0,0 +1,18 @@
+package com.raqun;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a Parcelable wrapper, named after the model with a ParcelWrapper suffix, which writes the
+ * model field by field. PiriParams of an annotated type are sent through the wrapper instead of
+ * Java serialization.
+ *
+ * The model needs a non-private no-arg constructor, and every private field needs a getter and a setter.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface PiriParcelable {
+}
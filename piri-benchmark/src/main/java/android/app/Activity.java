@@ -0,0 +1,19 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * JVM stand-in for the Android class, used by the navigation benchmark.
+ */
+public class Activity extends Context {
+    private Intent intent;
+
+    public Intent getIntent() {
+        return intent;
+    }
+
+    public void setIntent(Intent intent) {
+        this.intent = intent;
+    }
+}
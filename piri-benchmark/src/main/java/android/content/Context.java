@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * JVM stand-in for the Android class, used by the navigation benchmark.
+ */
+public class Context {
+}
@@ -0,0 +1,123 @@
+package android.content;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * JVM stand-in for the Android Intent, used by the navigation benchmark. Like the real one, the extras
+ * Bundle is created by the first put, and putExtras copies the given Bundle when there are no extras yet.
+ * Parcelling only writes the flags and the extras, the component costs the same whatever the extras are.
+ */
+public class Intent implements Parcelable {
+    public static final Parcelable.Creator<Intent> CREATOR = new Parcelable.Creator<Intent>() {
+        @Override
+        public Intent createFromParcel(Parcel source) {
+            return new Intent(source);
+        }
+
+        @Override
+        public Intent[] newArray(int size) {
+            return new Intent[size];
+        }
+    };
+
+    private final Class<?> component;
+    private int flags;
+    private Bundle extras;
+
+    public Intent(Context context, Class<?> cls) {
+        this.component = cls;
+    }
+
+    private Intent(Parcel in) {
+        this.component = null;
+        this.flags = in.readInt();
+        this.extras = in.readBundle(Intent.class.getClassLoader());
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(this.flags);
+        dest.writeBundle(extras);
+    }
+
+    public Class<?> getComponent() {
+        return component;
+    }
+
+    public Intent addFlags(int flags) {
+        this.flags |= flags;
+        return this;
+    }
+
+    public Intent putExtras(Bundle extras) {
+        if (this.extras == null) {
+            this.extras = new Bundle(extras);
+        } else {
+            this.extras.putAll(extras);
+        }
+        return this;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        getOrCreateExtras().putBoolean(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        getOrCreateExtras().putInt(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long value) {
+        getOrCreateExtras().putLong(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        getOrCreateExtras().putString(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Parcelable value) {
+        getOrCreateExtras().putParcelable(name, value);
+        return this;
+    }
+
+    public boolean hasExtra(String name) {
+        return extras != null && extras.containsKey(name);
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        return extras == null ? defaultValue : extras.getBoolean(name, defaultValue);
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        return extras == null ? defaultValue : extras.getInt(name, defaultValue);
+    }
+
+    public long getLongExtra(String name, long defaultValue) {
+        return extras == null ? defaultValue : extras.getLong(name, defaultValue);
+    }
+
+    public String getStringExtra(String name) {
+        return extras == null ? null : extras.getString(name);
+    }
+
+    public <T extends Parcelable> T getParcelableExtra(String name) {
+        return extras == null ? null : extras.<T>getParcelable(name);
+    }
+
+    private Bundle getOrCreateExtras() {
+        if (extras == null) {
+            extras = new Bundle();
+        }
+        return extras;
+    }
+}
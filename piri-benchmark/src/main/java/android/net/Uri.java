@@ -0,0 +1,70 @@
+package android.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Android Uri, used by the deep link benchmark. Like the real one, parse() only
+ * keeps the string, the path segments are split on first use and query parameters are searched for
+ * in the query on every call.
+ */
+public final class Uri {
+    private final String path;
+    private final String query;
+    private List<String> pathSegments;
+
+    private Uri(String path, String query) {
+        this.path = path;
+        this.query = query;
+    }
+
+    /* Only paths with an optional query, e.g. /books/42?title=piri */
+    public static Uri parse(String uriString) {
+        final int queryStart = uriString.indexOf('?');
+        return queryStart < 0 ? new Uri(uriString, null)
+                : new Uri(uriString.substring(0, queryStart), uriString.substring(queryStart + 1));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<String> getPathSegments() {
+        if (pathSegments == null) {
+            final List<String> segments = new ArrayList<>();
+            int start = 0;
+            while (start < path.length()) {
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = path.length();
+                }
+                if (end > start) {
+                    segments.add(path.substring(start, end));
+                }
+                start = end + 1;
+            }
+            pathSegments = Collections.unmodifiableList(segments);
+        }
+        return pathSegments;
+    }
+
+    public String getQueryParameter(String key) {
+        if (query == null) {
+            return null;
+        }
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            final int separator = query.indexOf('=', start);
+            if (separator - start == key.length() && separator < end && query.startsWith(key, start)) {
+                return query.substring(separator + 1, end);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+}
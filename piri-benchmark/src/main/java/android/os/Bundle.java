@@ -0,0 +1,146 @@
+package android.os;
+
+import java.util.Arrays;
+
+/**
+ * JVM stand-in for the Android Bundle, used by the navigation benchmark. Values are kept the way the
+ * ArrayMap of a Bundle keeps them, a hash array and a key/value array which grow from 4 to 8 and then
+ * by half, so a Bundle that isn't presized allocates like the real one.
+ */
+public final class Bundle {
+    private static final int BASE_SIZE = 4;
+
+    private int[] hashes;
+    private Object[] array;
+    private int size;
+
+    public Bundle() {
+        this(0);
+    }
+
+    public Bundle(int capacity) {
+        hashes = new int[capacity];
+        array = new Object[capacity << 1];
+    }
+
+    public Bundle(Bundle bundle) {
+        hashes = Arrays.copyOf(bundle.hashes, bundle.size);
+        array = Arrays.copyOf(bundle.array, bundle.size << 1);
+        size = bundle.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    public void putAll(Bundle bundle) {
+        for (int i = 0; i < bundle.size; i++) {
+            put((String) bundle.array[i << 1], bundle.array[(i << 1) + 1]);
+        }
+    }
+
+    public void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        put(key, value);
+    }
+
+    public void putString(String key, String value) {
+        put(key, value);
+    }
+
+    public void putParcelable(String key, Parcelable value) {
+        put(key, value);
+    }
+
+    public void putSerializable(String key, java.io.Serializable value) {
+        put(key, value);
+    }
+
+    public void putBundle(String key, Bundle value) {
+        put(key, value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        final Object value = get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        final Object value = get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        final Object value = get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public String getString(String key) {
+        return (String) get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(String key) {
+        return (T) get(key);
+    }
+
+    public Bundle getBundle(String key) {
+        return (Bundle) get(key);
+    }
+
+    /* For the Parcel stand-in, which writes and reads the entries in order */
+    String keyAt(int index) {
+        return (String) array[index << 1];
+    }
+
+    Object valueAt(int index) {
+        return array[(index << 1) + 1];
+    }
+
+    void putValue(String key, Object value) {
+        put(key, value);
+    }
+
+    private Object get(String key) {
+        final int index = indexOf(key);
+        return index >= 0 ? array[(index << 1) + 1] : null;
+    }
+
+    private void put(String key, Object value) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            array[(index << 1) + 1] = value;
+            return;
+        }
+        if (size == hashes.length) {
+            final int capacity = size >= BASE_SIZE * 2 ? size + (size >> 1) : size >= BASE_SIZE ? BASE_SIZE * 2 : BASE_SIZE;
+            hashes = Arrays.copyOf(hashes, capacity);
+            array = Arrays.copyOf(array, capacity << 1);
+        }
+        hashes[size] = key.hashCode();
+        array[size << 1] = key;
+        array[(size << 1) + 1] = value;
+        size++;
+    }
+
+    private int indexOf(String key) {
+        final int hash = key.hashCode();
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash && key.equals(array[i << 1])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
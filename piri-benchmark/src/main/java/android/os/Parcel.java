@@ -0,0 +1,482 @@
+package android.os;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Android Parcel. It follows the Android wire format closely enough for size and
+ * speed comparisons: every value is padded to 4 bytes, strings are UTF-16, and Serializables are written
+ * as their class name followed by the ObjectOutputStream bytes. Only the methods Piri generates are here.
+ * Like the real one, reads and writes share one data position.
+ */
+public final class Parcel {
+    private static final int VAL_NULL = -1;
+    private static final int VAL_STRING = 0;
+    private static final int VAL_INTEGER = 1;
+    private static final int VAL_LONG = 6;
+    private static final int VAL_PARCELABLE = 4;
+    private static final int VAL_BOOLEAN = 9;
+    private static final int VAL_SERIALIZABLE = 21;
+    /* 'B' 'N' 'D' 'L' */
+    private static final int BUNDLE_MAGIC = 0x4C444E42;
+
+    private static final Map<String, Parcelable.Creator<?>> CREATORS = new HashMap<>();
+
+    private byte[] data = new byte[256];
+    private int size;
+    private int position;
+
+    private Parcel() {}
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        size = 0;
+        position = 0;
+    }
+
+    public int dataSize() {
+        return size;
+    }
+
+    public int dataPosition() {
+        return position;
+    }
+
+    public void setDataPosition(int position) {
+        this.position = position;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        data[position++] = (byte) value;
+        data[position++] = (byte) (value >> 8);
+        data[position++] = (byte) (value >> 16);
+        data[position++] = (byte) (value >> 24);
+        grow();
+    }
+
+    public int readInt() {
+        final int value = (data[position] & 0xff)
+                | (data[position + 1] & 0xff) << 8
+                | (data[position + 2] & 0xff) << 16
+                | (data[position + 3] & 0xff) << 24;
+        position += 4;
+        return value;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    public long readLong() {
+        final long low = readInt() & 0xffffffffL;
+        return low | (long) readInt() << 32;
+    }
+
+    public void writeByte(byte value) {
+        writeInt(value);
+    }
+
+    public byte readByte() {
+        return (byte) readInt();
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        final int length = value.length();
+        writeInt(length);
+        /* UTF-16 chars plus a terminating zero char, padded to 4 bytes */
+        final int bytes = (length + 1) * 2;
+        final int padded = (bytes + 3) & ~3;
+        ensureCapacity(padded);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            data[position + i * 2] = (byte) c;
+            data[position + i * 2 + 1] = (byte) (c >> 8);
+        }
+        for (int i = length * 2; i < padded; i++) {
+            data[position + i] = 0;
+        }
+        position += padded;
+        grow();
+    }
+
+    public String readString() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ((data[position + i * 2] & 0xff) | (data[position + i * 2 + 1] & 0xff) << 8);
+        }
+        position += ((length + 1) * 2 + 3) & ~3;
+        return new String(chars);
+    }
+
+    public void writeByteArray(byte[] value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        final int padded = (value.length + 3) & ~3;
+        ensureCapacity(padded);
+        System.arraycopy(value, 0, data, position, value.length);
+        position += padded;
+        grow();
+    }
+
+    public byte[] createByteArray() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] value = new byte[length];
+        System.arraycopy(data, position, value, 0, length);
+        position += (length + 3) & ~3;
+        return value;
+    }
+
+    public void writeIntArray(int[] value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (int item : value) {
+            writeInt(item);
+        }
+    }
+
+    public int[] createIntArray() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final int[] value = new int[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = readInt();
+        }
+        return value;
+    }
+
+    public void writeLongArray(long[] value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (long item : value) {
+            writeLong(item);
+        }
+    }
+
+    public long[] createLongArray() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final long[] value = new long[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = readLong();
+        }
+        return value;
+    }
+
+    public void writeStringArray(String[] value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (String item : value) {
+            writeString(item);
+        }
+    }
+
+    public String[] createStringArray() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final String[] value = new String[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = readString();
+        }
+        return value;
+    }
+
+    public void writeStringList(List<String> value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (String item : value) {
+            writeString(item);
+        }
+    }
+
+    public ArrayList<String> createStringArrayList() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final ArrayList<String> value = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            value.add(readString());
+        }
+        return value;
+    }
+
+    public void writeParcelable(Parcelable value, int flags) {
+        if (value == null) {
+            writeString(null);
+            return;
+        }
+        writeString(value.getClass().getName());
+        value.writeToParcel(this, flags);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+        final String name = readString();
+        if (name == null) {
+            return null;
+        }
+        return (T) getCreator(name, loader).createFromParcel(this);
+    }
+
+    public <T extends Parcelable> void writeTypedArray(T[] value, int flags) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (T item : value) {
+            if (item == null) {
+                writeInt(0);
+            } else {
+                writeInt(1);
+                item.writeToParcel(this, flags);
+            }
+        }
+    }
+
+    public <T> T[] createTypedArray(Parcelable.Creator<T> creator) {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final T[] value = creator.newArray(length);
+        for (int i = 0; i < length; i++) {
+            value[i] = readInt() != 0 ? creator.createFromParcel(this) : null;
+        }
+        return value;
+    }
+
+    public <T extends Parcelable> void writeTypedList(List<T> value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (T item : value) {
+            if (item == null) {
+                writeInt(0);
+            } else {
+                writeInt(1);
+                item.writeToParcel(this, 0);
+            }
+        }
+    }
+
+    public <T> ArrayList<T> createTypedArrayList(Parcelable.Creator<T> creator) {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final ArrayList<T> value = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            value.add(readInt() != 0 ? creator.createFromParcel(this) : null);
+        }
+        return value;
+    }
+
+    /* The length, the magic and the map of the Bundle, every entry is its key and its value */
+    public void writeBundle(Bundle value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        final int lengthPosition = position;
+        writeInt(0);
+        writeInt(BUNDLE_MAGIC);
+        final int start = position;
+        writeInt(value.size());
+        for (int i = 0; i < value.size(); i++) {
+            writeString(value.keyAt(i));
+            writeValue(value.valueAt(i));
+        }
+        final int end = position;
+        position = lengthPosition;
+        writeInt(end - start);
+        position = end;
+    }
+
+    public Bundle readBundle(ClassLoader loader) {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (readInt() != BUNDLE_MAGIC) {
+            throw new IllegalStateException("Bad magic number for Bundle");
+        }
+        final int count = readInt();
+        final Bundle value = new Bundle(count);
+        for (int i = 0; i < count; i++) {
+            value.putValue(readString(), readValue(loader));
+        }
+        return value;
+    }
+
+    public void writeSerializable(Serializable value) {
+        if (value == null) {
+            writeString(null);
+            return;
+        }
+        writeString(value.getClass().getName());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Parcelable encountered IOException writing serializable object", e);
+        }
+        writeByteArray(bytes.toByteArray());
+    }
+
+    public Serializable readSerializable() {
+        final String name = readString();
+        if (name == null) {
+            return null;
+        }
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(createByteArray()));
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Parcelable encountered exception reading serializable object " + name, e);
+        }
+    }
+
+    public void writeValue(Object value) {
+        if (value == null) {
+            writeInt(VAL_NULL);
+        } else if (value instanceof String) {
+            writeInt(VAL_STRING);
+            writeString((String) value);
+        } else if (value instanceof Integer) {
+            writeInt(VAL_INTEGER);
+            writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            writeInt(VAL_LONG);
+            writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            writeInt(VAL_BOOLEAN);
+            writeInt((Boolean) value ? 1 : 0);
+        } else if (value instanceof Parcelable) {
+            writeInt(VAL_PARCELABLE);
+            writeParcelable((Parcelable) value, 0);
+        } else if (value instanceof Serializable) {
+            writeInt(VAL_SERIALIZABLE);
+            writeSerializable((Serializable) value);
+        } else {
+            throw new RuntimeException("Parcel: unable to marshal value " + value);
+        }
+    }
+
+    public Object readValue(ClassLoader loader) {
+        final int type = readInt();
+        switch (type) {
+            case VAL_NULL:
+                return null;
+            case VAL_STRING:
+                return readString();
+            case VAL_INTEGER:
+                return readInt();
+            case VAL_LONG:
+                return readLong();
+            case VAL_BOOLEAN:
+                return readInt() != 0;
+            case VAL_PARCELABLE:
+                return readParcelable(loader);
+            case VAL_SERIALIZABLE:
+                return readSerializable();
+            default:
+                throw new RuntimeException("Parcel: unmarshalling unknown type code " + type);
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > data.length) {
+            final byte[] grown = new byte[Math.max(data.length * 2, position + bytes)];
+            System.arraycopy(data, 0, grown, 0, size);
+            data = grown;
+        }
+    }
+
+    /* The data ends at the furthest position written */
+    private void grow() {
+        if (position > size) {
+            size = position;
+        }
+    }
+
+    private static Parcelable.Creator<?> getCreator(String name, ClassLoader loader) {
+        synchronized (CREATORS) {
+            Parcelable.Creator<?> creator = CREATORS.get(name);
+            if (creator == null) {
+                try {
+                    creator = (Parcelable.Creator<?>) Class.forName(name, true, loader).getField("CREATOR").get(null);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("Parcelable protocol requires a CREATOR in " + name, e);
+                }
+                CREATORS.put(name, creator);
+            }
+            return creator;
+        }
+    }
+}
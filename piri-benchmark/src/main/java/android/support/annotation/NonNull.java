@@ -0,0 +1,7 @@
+package android.support.annotation;
+
+/**
+ * JVM stand-in for the support annotation, used by the navigation benchmark.
+ */
+public @interface NonNull {
+}
@@ -0,0 +1,38 @@
+package com.raqun.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the bytes allocated by the current thread, if the JVM supports it.
+ */
+
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = findThreadBean();
+
+    private Allocations() {}
+
+    static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    /* Returns -1 when allocation counting isn't available */
+    static long currentThreadAllocatedBytes() {
+        if (THREAD_BEAN == null) {
+            return -1;
+        }
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+}
@@ -0,0 +1,58 @@
+package com.raqun.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal Android classes the generated code compiles against, so no Android SDK is needed.
+ */
+
+final class AndroidStubs {
+    private AndroidStubs() {}
+
+    static Map<String, String> create() {
+        final Map<String, String> stubs = new LinkedHashMap<>();
+        stubs.put("android.content.Context", "package android.content; public class Context {}");
+        final StringBuilder bundle = new StringBuilder()
+                .append("package android.os;\n")
+                .append("public final class Bundle {\n")
+                .append("    public Bundle(int capacity) {}\n")
+                .append("    public void putString(String key, String value) {}\n")
+                .append("    public void putSerializable(String key, java.io.Serializable value) {}\n")
+                .append("    public void putBundle(String key, Bundle value) {}\n")
+                .append("    public boolean containsKey(String key) { return false; }\n")
+                .append("    public String getString(String key) { return null; }\n")
+                .append("    public java.io.Serializable getSerializable(String key) { return null; }\n")
+                .append("    public Bundle getBundle(String key) { return null; }\n");
+        stubs.put("android.app.Activity", "package android.app;\n"
+                + "public class Activity extends android.content.Context {\n"
+                + "    public android.content.Intent getIntent() { return null; }\n"
+                + "}\n");
+        stubs.put("android.support.annotation.NonNull", "package android.support.annotation; public @interface NonNull {}");
+
+        final StringBuilder intent = new StringBuilder()
+                .append("package android.content;\n")
+                .append("public class Intent {\n")
+                .append("    public Intent(Context context, Class<?> cls) {}\n")
+                .append("    public Intent addFlags(int flags) { return this; }\n")
+                .append("    public boolean hasExtra(String name) { return false; }\n")
+                .append("    public String getStringExtra(String name) { return null; }\n")
+                .append("    public java.io.Serializable getSerializableExtra(String name) { return null; }\n")
+                .append("    public Intent putExtras(android.os.Bundle extras) { return this; }\n");
+        final String[][] primitives = {
+                {"boolean", "Boolean"}, {"byte", "Byte"}, {"char", "Char"}, {"short", "Short"},
+                {"int", "Int"}, {"long", "Long"}, {"float", "Float"}, {"double", "Double"}};
+        for (String[] primitive : primitives) {
+            bundle.append("    public void put").append(primitive[1]).append("(String key, ")
+                    .append(primitive[0]).append(" value) {}\n")
+                    .append("    public ").append(primitive[0]).append(" get").append(primitive[1])
+                    .append("(String key, ").append(primitive[0]).append(" defaultValue) { return defaultValue; }\n");
+            intent.append("    public ").append(primitive[0]).append(" get").append(primitive[1])
+                    .append("Extra(String name, ").append(primitive[0]).append(" defaultValue) { return defaultValue; }\n");
+        }
+        stubs.put("android.os.Bundle", bundle.append("}\n").toString());
+        intent.append("}\n");
+        stubs.put("android.content.Intent", intent.toString());
+        return stubs;
+    }
+}
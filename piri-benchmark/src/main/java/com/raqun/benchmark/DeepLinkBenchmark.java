@@ -0,0 +1,103 @@
+package com.raqun.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import com.raqun.benchmark.model.BenchmarkDeepLinks;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures routing a deep link to the Intent of its activity: the router generated from PiriDeepLinks
+ * against a hand-written table of regular expressions over the same 26 paths. Every iteration parses
+ * the next link of a mix of matching and unknown links, as an app does for an incoming link.
+ *
+ * Arguments: [--iterations N]
+ */
+
+public final class DeepLinkBenchmark {
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final String[] LINKS = {
+            "/books/8006?title=Kitab-i%20Bahriye&position=3",
+            "/shelves/maps/books/8006",
+            "/authors/piri-reis",
+            "/publishers/42/books",
+            "/events/1513/followers",
+            "/reviews/7",
+            "/lists/atlases/books",
+            "/unknown/link",
+    };
+    /* Links of the mix which have an activity */
+    private static final int MATCHING_LINKS = 7;
+
+    private DeepLinkBenchmark() {}
+
+    public static void main(String[] args) {
+        int iterations = 1000000;
+        if (args.length == 2 && "--iterations".equals(args[0])) {
+            iterations = Integer.parseInt(args[1]);
+        } else if (args.length != 0) {
+            throw new IllegalArgumentException("Unknown arguments: " + Arrays.toString(args));
+        }
+
+        final Context context = new Context();
+        final Router[] routers = {
+                new Router("regex") {
+                    @Override
+                    Intent route(Context context, Uri uri) {
+                        return BenchmarkDeepLinks.regex(context, uri);
+                    }
+                },
+                new Router("generated trie") {
+                    @Override
+                    Intent route(Context context, Uri uri) {
+                        return BenchmarkDeepLinks.router(context, uri);
+                    }
+                },
+        };
+
+        System.out.println(String.format(Locale.ROOT, "Deep link benchmark: %d links, %d iterations after %d warm-up",
+                LINKS.length, iterations, WARMUP_ITERATIONS));
+        System.out.println(String.format(Locale.ROOT, "%-16s %12s %16s", "", "time", "allocated"));
+        for (Router router : routers) {
+            run(router, context, WARMUP_ITERATIONS);
+        }
+        for (Router router : routers) {
+            final long[] result = run(router, context, iterations);
+            System.out.println(String.format(Locale.ROOT, "%-16s %9.1f ns %12d B",
+                    router.name, (double) result[0] / iterations, result[1] / iterations));
+        }
+    }
+
+    /* Returns the elapsed nanos and the allocated bytes */
+    private static long[] run(Router router, Context context, int iterations) {
+        int routed = 0;
+        final long startBytes = Allocations.currentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (router.route(context, Uri.parse(LINKS[i % LINKS.length])) != null) {
+                routed++;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        final long bytes = Allocations.currentThreadAllocatedBytes() - startBytes;
+
+        final int expected = iterations / LINKS.length * MATCHING_LINKS + Math.min(iterations % LINKS.length, MATCHING_LINKS);
+        if (routed != expected) {
+            throw new IllegalStateException(router.name + " routed " + routed + " links instead of " + expected);
+        }
+        return new long[]{nanos, bytes};
+    }
+
+    private abstract static class Router {
+        final String name;
+
+        Router(String name) {
+            this.name = name;
+        }
+
+        abstract Intent route(Context context, Uri uri);
+    }
+}
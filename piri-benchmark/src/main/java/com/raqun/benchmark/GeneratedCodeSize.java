@@ -0,0 +1,249 @@
+package com.raqun.benchmark;
+
+import com.raqun.PiriProcessor;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a synthetic module with and without the piri.compact option and reports how many classes,
+ * methods and fields the generated code defines and how large its class files are. The compact numbers
+ * include the classes of piri-runtime it shares, which are compiled from their sources.
+ *
+ * Arguments: [--activities N] [--params M] [--runtime path/to/piri-runtime/src/main/java]
+ */
+
+public final class GeneratedCodeSize {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /* The classes of piri-runtime compact code uses */
+    private static final String[] RUNTIME_CLASSES = {"com.raqun.PiriIntentCreator", "com.raqun.PiriBinders"};
+
+    private int activities = 400;
+    private int params = 8;
+    private File runtimeSources = new File("../piri-runtime/src/main/java");
+
+    private GeneratedCodeSize() {}
+
+    public static void main(String[] args) throws IOException {
+        final GeneratedCodeSize report = new GeneratedCodeSize();
+        report.parseArguments(args);
+        report.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (i + 1 < args.length && "--activities".equals(arg)) {
+                activities = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "--params".equals(arg)) {
+                params = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "--runtime".equals(arg)) {
+                runtimeSources = new File(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        final Size standard = measure(false);
+        final Size compact = measure(true);
+
+        System.out.println(String.format(Locale.ROOT, "Generated code size: %d activities x %d params",
+                activities, params));
+        System.out.println(String.format(Locale.ROOT, "%-24s %10s %10s %10s %12s",
+                "", "classes", "methods", "fields", "bytes"));
+        print("default", standard);
+        print("compact", compact);
+        print("  of which piri-runtime", compact.runtime);
+        System.out.println(String.format(Locale.ROOT, "%-24s %+10d %+10d %+10d %+12d", "difference",
+                compact.classes - standard.classes, compact.methods - standard.methods,
+                compact.fields - standard.fields, compact.bytes - standard.bytes));
+    }
+
+    private static void print(String label, Size size) {
+        System.out.println(String.format(Locale.ROOT, "%-24s %10d %10d %10d %12d",
+                label, size.classes, size.methods, size.fields, size.bytes));
+    }
+
+    private Size measure(boolean compact) throws IOException {
+        final List<JavaFileObject> units = new ArrayList<>();
+        for (Map.Entry<String, String> stub : AndroidStubs.create().entrySet()) {
+            units.add(new ProcessorBenchmark.SourceFile(stub.getKey(), stub.getValue()));
+        }
+        for (Map.Entry<String, String> source : SyntheticSources.create(activities, params).entrySet()) {
+            units.add(new ProcessorBenchmark.SourceFile(source.getKey(), source.getValue()));
+        }
+        if (compact) {
+            for (String runtimeClass : RUNTIME_CLASSES) {
+                final File source = new File(runtimeSources, runtimeClass.replace('.', File.separatorChar) + ".java");
+                units.add(new ProcessorBenchmark.SourceFile(runtimeClass,
+                        new String(Files.readAllBytes(source.toPath()), UTF_8)));
+            }
+        }
+
+        final File outputDir = ProcessorBenchmark.createTempDir();
+        final File sourceOutputDir = new File(outputDir, "generated");
+        final File classOutputDir = new File(outputDir, "classes");
+        if (!sourceOutputDir.mkdirs() || !classOutputDir.mkdirs()) {
+            throw new IOException("Could not create output directories in " + outputDir);
+        }
+
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-s", sourceOutputDir.getPath(),
+                "-d", classOutputDir.getPath(),
+                "-Apiri.compact=" + compact,
+                /* In the package of the activities, so it's counted with the other generated classes */
+                "-Apiri.registry=" + SyntheticSources.PACKAGE_NAME + ".PiriRegistry"));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8);
+        try {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, arguments, null, units);
+            task.setProcessors(Collections.singletonList(new PiriProcessor()));
+            if (!task.call()) {
+                final StringBuilder errors = new StringBuilder("Compilation of the synthetic sources failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    errors.append('\n').append(diagnostic.getMessage(Locale.ROOT));
+                }
+                throw new IllegalStateException(errors.toString());
+            }
+
+            final Size size = new Size();
+            final File packageDir = new File(classOutputDir, SyntheticSources.PACKAGE_NAME.replace('.', File.separatorChar));
+            final File[] classFiles = packageDir.listFiles();
+            if (classFiles == null) {
+                throw new IOException("Could not list " + packageDir);
+            }
+            for (File classFile : classFiles) {
+                if (isGenerated(classFile.getName())) {
+                    size.add(classFile);
+                }
+            }
+            if (compact) {
+                size.runtime = new Size();
+                for (String runtimeClass : RUNTIME_CLASSES) {
+                    final File classFile = new File(classOutputDir, runtimeClass.replace('.', File.separatorChar) + ".class");
+                    size.runtime.add(classFile);
+                    size.add(classFile);
+                }
+            }
+            return size;
+        } finally {
+            fileManager.close();
+            ProcessorBenchmark.delete(outputDir);
+        }
+    }
+
+    /* Everything but the synthetic activities and their model */
+    private static boolean isGenerated(String fileName) {
+        return fileName.endsWith("IntentCreator.class") || fileName.endsWith("Binder.class")
+                || fileName.equals("Piri.class") || fileName.equals("PiriRegistry.class");
+    }
+
+    private static final class Size {
+        int classes;
+        int methods;
+        int fields;
+        long bytes;
+        /* The shared classes of piri-runtime, only set for compact code */
+        Size runtime;
+
+        /* Reads the counts from the class file, constructors and static initializers are methods too */
+        void add(File classFile) throws IOException {
+            final DataInputStream in = new DataInputStream(new FileInputStream(classFile));
+            try {
+                /* Magic, minor and major version */
+                in.readInt();
+                in.readInt();
+                skipConstantPool(in);
+                /* Access flags, this class and super class */
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                skipFully(in, in.readUnsignedShort() * 2);
+                final int fieldCount = in.readUnsignedShort();
+                skipMembers(in, fieldCount);
+                final int methodCount = in.readUnsignedShort();
+
+                classes++;
+                fields += fieldCount;
+                methods += methodCount;
+                bytes += classFile.length();
+            } finally {
+                in.close();
+            }
+        }
+
+        private static void skipConstantPool(DataInputStream in) throws IOException {
+            final int count = in.readUnsignedShort();
+            for (int i = 1; i < count; i++) {
+                final int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1:
+                        /* Utf8 */
+                        skipFully(in, in.readUnsignedShort());
+                        break;
+                    case 7:
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        /* Class, String, MethodType, Module, Package */
+                        skipFully(in, 2);
+                        break;
+                    case 15:
+                        /* MethodHandle */
+                        skipFully(in, 3);
+                        break;
+                    case 5:
+                    case 6:
+                        /* Long and Double take two entries */
+                        skipFully(in, 8);
+                        i++;
+                        break;
+                    default:
+                        /* Integer, Float, the member references, NameAndType, Dynamic and InvokeDynamic */
+                        skipFully(in, 4);
+                        break;
+                }
+            }
+        }
+
+        private static void skipMembers(DataInputStream in, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                /* Access flags, name and descriptor */
+                skipFully(in, 6);
+                final int attributes = in.readUnsignedShort();
+                for (int attribute = 0; attribute < attributes; attribute++) {
+                    in.readUnsignedShort();
+                    skipFully(in, in.readInt());
+                }
+            }
+        }
+
+        private static void skipFully(DataInputStream in, int count) throws IOException {
+            if (in.skipBytes(count) != count) {
+                throw new IOException("Truncated class file");
+            }
+        }
+    }
+}
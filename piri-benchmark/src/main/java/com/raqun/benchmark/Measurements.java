@@ -0,0 +1,63 @@
+package com.raqun.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the numbers of a single compilation.
+ */
+
+final class Measurements {
+    final List<Round> rounds = new ArrayList<>();
+    long compilationNanos;
+
+    long generationNanos;
+    long generationAllocatedBytes;
+    long generatedFiles;
+    long generatedBytes;
+
+    private long generationStartNanos = -1;
+    private long generationStartBytes;
+
+    void startGeneration() {
+        generationStartNanos = System.nanoTime();
+        generationStartBytes = Allocations.currentThreadAllocatedBytes();
+    }
+
+    void endGeneration(long bytesWritten) {
+        if (generationStartNanos < 0) {
+            return;
+        }
+        generationNanos += System.nanoTime() - generationStartNanos;
+        generationAllocatedBytes += Allocations.currentThreadAllocatedBytes() - generationStartBytes;
+        generatedFiles++;
+        generatedBytes += bytesWritten;
+        generationStartNanos = -1;
+    }
+
+    long processingNanos() {
+        long nanos = 0;
+        for (Round round : rounds) {
+            nanos += round.nanos;
+        }
+        return nanos;
+    }
+
+    long processingAllocatedBytes() {
+        long bytes = 0;
+        for (Round round : rounds) {
+            bytes += round.allocatedBytes;
+        }
+        return bytes;
+    }
+
+    static final class Round {
+        final long nanos;
+        final long allocatedBytes;
+
+        Round(long nanos, long allocatedBytes) {
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
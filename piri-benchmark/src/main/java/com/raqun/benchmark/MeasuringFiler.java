@@ -0,0 +1,61 @@
+package com.raqun.benchmark;
+
+import com.raqun.CountingWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * A Filer that measures a generated source from its creation until its writer is closed.
+ */
+
+final class MeasuringFiler implements Filer {
+    private final Filer delegate;
+    private final Measurements measurements;
+
+    MeasuringFiler(Filer delegate, Measurements measurements) {
+        this.delegate = delegate;
+        this.measurements = measurements;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) throws IOException {
+        measurements.startGeneration();
+        return new ForwardingJavaFileObject<JavaFileObject>(delegate.createSourceFile(name, originatingElements)) {
+            @Override
+            public Writer openWriter() throws IOException {
+                return new CountingWriter(super.openWriter()) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        measurements.endGeneration(getBytes());
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) throws IOException {
+        return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(JavaFileManager.Location location, CharSequence pkg,
+                                     CharSequence relativeName, Element... originatingElements) throws IOException {
+        return delegate.createResource(location, pkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(JavaFileManager.Location location, CharSequence pkg,
+                                  CharSequence relativeName) throws IOException {
+        return delegate.getResource(location, pkg, relativeName);
+    }
+}
@@ -0,0 +1,110 @@
+package com.raqun.benchmark;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.AbstractProcessor;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Wraps a processor and measures each round, and every file it writes through the Filer.
+ */
+
+final class MeasuringProcessor extends AbstractProcessor {
+    private final Processor delegate;
+    private final Measurements measurements;
+
+    MeasuringProcessor(Processor delegate, Measurements measurements) {
+        this.delegate = delegate;
+        this.measurements = measurements;
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+        super.init(processingEnvironment);
+        delegate.init(new MeasuringEnvironment(processingEnvironment,
+                new MeasuringFiler(processingEnvironment.getFiler(), measurements)));
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+        final long startBytes = Allocations.currentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        try {
+            return delegate.process(set, roundEnvironment);
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            measurements.rounds.add(new Measurements.Round(nanos,
+                    Allocations.currentThreadAllocatedBytes() - startBytes));
+        }
+    }
+
+    private static final class MeasuringEnvironment implements ProcessingEnvironment {
+        private final ProcessingEnvironment delegate;
+        private final Filer filer;
+
+        MeasuringEnvironment(ProcessingEnvironment delegate, Filer filer) {
+            this.delegate = delegate;
+            this.filer = filer;
+        }
+
+        @Override
+        public Map<String, String> getOptions() {
+            return delegate.getOptions();
+        }
+
+        @Override
+        public Messager getMessager() {
+            return delegate.getMessager();
+        }
+
+        @Override
+        public Filer getFiler() {
+            return filer;
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return delegate.getElementUtils();
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return delegate.getTypeUtils();
+        }
+
+        @Override
+        public SourceVersion getSourceVersion() {
+            return delegate.getSourceVersion();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return delegate.getLocale();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.raqun.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+
+import com.raqun.benchmark.model.BenchmarkBook;
+import com.raqun.benchmark.model.BenchmarkNavigations;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures what building the Intent of one navigation costs: one putExtra per param as Piri used to
+ * generate, the presized create() of the builder, and the static createIntent() fast path. Uses JVM
+ * stand-ins for Intent and Bundle which allocate like the Android classes.
+ *
+ * Arguments: [--iterations N]
+ */
+
+public final class NavigationBenchmark {
+    private static final int WARMUP_ITERATIONS = 50000;
+
+    private NavigationBenchmark() {}
+
+    public static void main(String[] args) {
+        int iterations = 1000000;
+        if (args.length == 2 && "--iterations".equals(args[0])) {
+            iterations = Integer.parseInt(args[1]);
+        } else if (args.length != 0) {
+            throw new IllegalArgumentException("Unknown arguments: " + Arrays.toString(args));
+        }
+
+        final Context context = new Context();
+        final BenchmarkBook book = new BenchmarkBook();
+        book.setBookId(8006);
+        book.setBookName("The Map of Piri Reis");
+
+        final Navigation[] navigations = {
+                new Navigation("putExtra") {
+                    @Override
+                    Intent create(Context context, BenchmarkBook book) {
+                        return BenchmarkNavigations.putExtraPerParam(context, book);
+                    }
+                },
+                new Navigation("create()") {
+                    @Override
+                    Intent create(Context context, BenchmarkBook book) {
+                        return BenchmarkNavigations.builder(context, book);
+                    }
+                },
+                new Navigation("createIntent()") {
+                    @Override
+                    Intent create(Context context, BenchmarkBook book) {
+                        return BenchmarkNavigations.createIntent(context, book);
+                    }
+                },
+        };
+
+        System.out.println(String.format(Locale.ROOT, "Navigation benchmark: 6 params, %d iterations after %d warm-up",
+                iterations, WARMUP_ITERATIONS));
+        System.out.println(String.format(Locale.ROOT, "%-16s %12s %16s", "", "time", "allocated"));
+        for (Navigation navigation : navigations) {
+            run(navigation, context, book, WARMUP_ITERATIONS);
+        }
+        for (Navigation navigation : navigations) {
+            final long[] result = run(navigation, context, book, iterations);
+            System.out.println(String.format(Locale.ROOT, "%-16s %9.1f ns %12d B",
+                    navigation.name, (double) result[0] / iterations, result[1] / iterations));
+        }
+    }
+
+    /* Returns the elapsed nanos and the allocated bytes */
+    private static long[] run(Navigation navigation, Context context, BenchmarkBook book, int iterations) {
+        long checksum = 0;
+        final long startBytes = Allocations.currentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += navigation.create(context, book).getLongExtra("bookId", 0L);
+        }
+        final long nanos = System.nanoTime() - start;
+        final long bytes = Allocations.currentThreadAllocatedBytes() - startBytes;
+
+        if (checksum != (long) book.getBookId() * iterations) {
+            throw new IllegalStateException(navigation.name + " didn't put the params");
+        }
+        return new long[]{nanos, bytes};
+    }
+
+    private abstract static class Navigation {
+        final String name;
+
+        Navigation(String name) {
+            this.name = name;
+        }
+
+        abstract Intent create(Context context, BenchmarkBook book);
+    }
+}
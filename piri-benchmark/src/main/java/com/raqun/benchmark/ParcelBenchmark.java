@@ -0,0 +1,294 @@
+package com.raqun.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+
+import com.raqun.benchmark.model.BenchmarkActivity;
+import com.raqun.benchmark.model.BenchmarkBindings;
+import com.raqun.benchmark.model.BenchmarkBook;
+import com.raqun.benchmark.model.BenchmarkBookParcelWrapper;
+import com.raqun.benchmark.model.BenchmarkNavigations;
+import com.raqun.benchmark.model.BenchmarkPackedActivity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares sending a model as Serializable with sending it through its generated PiriParcelable wrapper,
+ * the way an Intent extra is written: payload size, encode and decode time, and allocations. Does the same
+ * for a list of ids, as a Serializable ArrayList<Long> and packed into a long[] by packPrimitives. Last, the
+ * Intent of six params with one extra per param and with packedArgs: encoding creates and parcels the
+ * Intent, decoding unparcels it and binds the activity.
+ *
+ * Arguments: [--iterations N]
+ */
+
+public final class ParcelBenchmark {
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int IDS = 1000;
+
+    private ParcelBenchmark() {}
+
+    public static void main(String[] args) {
+        int iterations = 100000;
+        if (args.length == 2 && "--iterations".equals(args[0])) {
+            iterations = Integer.parseInt(args[1]);
+        } else if (args.length != 0) {
+            throw new IllegalArgumentException("Unknown arguments: " + Arrays.toString(args));
+        }
+
+        System.out.println(String.format(Locale.ROOT, "Parcel benchmark: %d iterations after %d warm-up",
+                iterations, WARMUP_ITERATIONS));
+        System.out.println(String.format(Locale.ROOT, "%-14s %10s %14s %14s %16s %16s",
+                "", "payload", "encode", "decode", "encode alloc", "decode alloc"));
+        runAll(Arrays.<Codec<BenchmarkBook>>asList(new SerializableCodec(), new WrapperCodec()), createBook(), iterations);
+
+        final ArrayList<Long> ids = new ArrayList<>(IDS);
+        for (long id = 0; id < IDS; id++) {
+            ids.add(id * 7919);
+        }
+        System.out.println(String.format(Locale.ROOT, "%d ids, %d iterations", IDS, iterations / 10));
+        runAll(Arrays.<Codec<ArrayList<Long>>>asList(new SerializableListCodec(), new PackedListCodec()), ids,
+                iterations / 10);
+
+        System.out.println(String.format(Locale.ROOT, "Intent of 6 params, %d iterations", iterations));
+        runAll(Arrays.<Codec<BenchmarkBook>>asList(new ExtrasCodec(), new PackedArgsCodec()), createBook(), iterations);
+    }
+
+    private static <T> void runAll(List<Codec<T>> codecs, T value, int iterations) {
+        for (Codec<T> codec : codecs) {
+            run(codec, value, WARMUP_ITERATIONS);
+        }
+        for (Codec<T> codec : codecs) {
+            final Result result = run(codec, value, iterations);
+            System.out.println(String.format(Locale.ROOT, "%-14s %8d B %11.0f ns %11.0f ns %14d B %14d B",
+                    codec.name(), result.payloadBytes,
+                    (double) result.encodeNanos / iterations, (double) result.decodeNanos / iterations,
+                    result.encodeBytes / iterations, result.decodeBytes / iterations));
+        }
+    }
+
+    private static <T> Result run(Codec<T> codec, T value, int iterations) {
+        final Result result = new Result();
+        final Parcel parcel = Parcel.obtain();
+        long checksum = 0;
+
+        long startBytes = Allocations.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parcel.recycle();
+            codec.write(parcel, value);
+        }
+        result.encodeNanos = System.nanoTime() - start;
+        result.encodeBytes = Allocations.currentThreadAllocatedBytes() - startBytes;
+        result.payloadBytes = parcel.dataSize();
+
+        startBytes = Allocations.currentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parcel.setDataPosition(0);
+            checksum += codec.checksum(codec.read(parcel));
+        }
+        result.decodeNanos = System.nanoTime() - start;
+        result.decodeBytes = Allocations.currentThreadAllocatedBytes() - startBytes;
+
+        if (checksum != codec.checksum(value) * iterations) {
+            throw new IllegalStateException(codec.name() + " didn't read back the written value");
+        }
+        return result;
+    }
+
+    private static BenchmarkBook createBook() {
+        final BenchmarkBook book = new BenchmarkBook();
+        book.setBookId(8006);
+        book.setBookName("The Map of Piri Reis");
+        book.setPublishedAt(1513L * 365 * 24 * 60 * 60 * 1000);
+        book.setRating(4.5);
+        book.setAvailable(true);
+        book.setChapterPages(new int[]{1, 24, 57, 88, 120, 161, 203, 240});
+        book.setTags(new ArrayList<>(Arrays.asList("history", "maps", "navigation")));
+        return book;
+    }
+
+    private interface Codec<T> {
+        String name();
+
+        void write(Parcel parcel, T value);
+
+        T read(Parcel parcel);
+
+        /* Tells whether the value was read back */
+        long checksum(T value);
+    }
+
+    /* What Intent.putExtra(String, Serializable) ends up doing */
+    private static final class SerializableCodec implements Codec<BenchmarkBook> {
+        @Override
+        public String name() {
+            return "Serializable";
+        }
+
+        @Override
+        public void write(Parcel parcel, BenchmarkBook book) {
+            parcel.writeSerializable(book);
+        }
+
+        @Override
+        public BenchmarkBook read(Parcel parcel) {
+            return (BenchmarkBook) parcel.readSerializable();
+        }
+
+        @Override
+        public long checksum(BenchmarkBook book) {
+            return book.getBookId();
+        }
+    }
+
+    /* What Intent.putExtra(String, Parcelable) does with the generated wrapper */
+    private static final class WrapperCodec implements Codec<BenchmarkBook> {
+        @Override
+        public String name() {
+            return "ParcelWrapper";
+        }
+
+        @Override
+        public void write(Parcel parcel, BenchmarkBook book) {
+            parcel.writeParcelable(new BenchmarkBookParcelWrapper(book), 0);
+        }
+
+        @Override
+        public BenchmarkBook read(Parcel parcel) {
+            final BenchmarkBookParcelWrapper wrapper = parcel.readParcelable(BenchmarkBookParcelWrapper.class.getClassLoader());
+            return wrapper.get();
+        }
+
+        @Override
+        public long checksum(BenchmarkBook book) {
+            return book.getBookId();
+        }
+    }
+
+    /* What Intent.putExtra(String, Serializable) does with an ArrayList<Long> */
+    private static final class SerializableListCodec implements Codec<ArrayList<Long>> {
+        @Override
+        public String name() {
+            return "Serializable";
+        }
+
+        @Override
+        public void write(Parcel parcel, ArrayList<Long> ids) {
+            parcel.writeSerializable(ids);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ArrayList<Long> read(Parcel parcel) {
+            return (ArrayList<Long>) parcel.readSerializable();
+        }
+
+        @Override
+        public long checksum(ArrayList<Long> ids) {
+            return ids.get(ids.size() - 1);
+        }
+    }
+
+    /* What the generated code of a packPrimitives param does */
+    private static final class PackedListCodec implements Codec<ArrayList<Long>> {
+        @Override
+        public String name() {
+            return "long[]";
+        }
+
+        @Override
+        public void write(Parcel parcel, ArrayList<Long> ids) {
+            final long[] packed = new long[ids.size()];
+            int i = 0;
+            for (Long id : ids) {
+                packed[i++] = id;
+            }
+            parcel.writeLongArray(packed);
+        }
+
+        @Override
+        public ArrayList<Long> read(Parcel parcel) {
+            final long[] packed = parcel.createLongArray();
+            final ArrayList<Long> ids = new ArrayList<>(packed.length);
+            for (long id : packed) {
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        @Override
+        public long checksum(ArrayList<Long> ids) {
+            return ids.get(ids.size() - 1);
+        }
+    }
+
+    /* What the Intent of an activity goes through: one extra per param */
+    private static final class ExtrasCodec implements Codec<BenchmarkBook> {
+        private final Context context = new Context();
+        private final BenchmarkActivity activity = new BenchmarkActivity();
+
+        @Override
+        public String name() {
+            return "Extras";
+        }
+
+        @Override
+        public void write(Parcel parcel, BenchmarkBook book) {
+            BenchmarkNavigations.createIntent(context, book).writeToParcel(parcel, 0);
+        }
+
+        @Override
+        public BenchmarkBook read(Parcel parcel) {
+            activity.setIntent(Intent.CREATOR.createFromParcel(parcel));
+            BenchmarkBindings.bind(activity);
+            return activity.getBook();
+        }
+
+        @Override
+        public long checksum(BenchmarkBook book) {
+            return book.getBookId();
+        }
+    }
+
+    /* The same params in the single extra of packedArgs */
+    private static final class PackedArgsCodec implements Codec<BenchmarkBook> {
+        private final Context context = new Context();
+        private final BenchmarkPackedActivity activity = new BenchmarkPackedActivity();
+
+        @Override
+        public String name() {
+            return "PackedArgs";
+        }
+
+        @Override
+        public void write(Parcel parcel, BenchmarkBook book) {
+            BenchmarkNavigations.packedCreateIntent(context, book).writeToParcel(parcel, 0);
+        }
+
+        @Override
+        public BenchmarkBook read(Parcel parcel) {
+            activity.setIntent(Intent.CREATOR.createFromParcel(parcel));
+            BenchmarkBindings.bind(activity);
+            return activity.getBook();
+        }
+
+        @Override
+        public long checksum(BenchmarkBook book) {
+            return book.getBookId();
+        }
+    }
+
+    private static final class Result {
+        int payloadBytes;
+        long encodeNanos;
+        long decodeNanos;
+        long encodeBytes;
+        long decodeBytes;
+    }
+}
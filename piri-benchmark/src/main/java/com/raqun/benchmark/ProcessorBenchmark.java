@@ -0,0 +1,241 @@
+package com.raqun.benchmark;
+
+import com.raqun.PiriProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Runs PiriProcessor over a synthetic source set in an in-process compiler and reports
+ * how long processing and file generation take, and how much they allocate.
+ *
+ * Arguments: [--activities N] [--params M] [--warmup W] [--iterations I] [-Akey=value ...]
+ */
+
+public final class ProcessorBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int activities = 200;
+    private int params = 8;
+    private int warmup = 3;
+    private int iterations = 5;
+    private final List<String> processorOptions = new ArrayList<>();
+
+    private ProcessorBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        final ProcessorBenchmark benchmark = new ProcessorBenchmark();
+        benchmark.parseArguments(args);
+        benchmark.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.startsWith("-A")) {
+                processorOptions.add(arg);
+            } else if (i + 1 < args.length && "--activities".equals(arg)) {
+                activities = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "--params".equals(arg)) {
+                params = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "--warmup".equals(arg)) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && "--iterations".equals(arg)) {
+                iterations = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        final List<JavaFileObject> units = new ArrayList<>();
+        for (Map.Entry<String, String> stub : AndroidStubs.create().entrySet()) {
+            units.add(new SourceFile(stub.getKey(), stub.getValue()));
+        }
+        for (Map.Entry<String, String> source : SyntheticSources.create(activities, params).entrySet()) {
+            units.add(new SourceFile(source.getKey(), source.getValue()));
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            compile(units);
+        }
+
+        final List<Measurements> results = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            results.add(compile(units));
+        }
+
+        report(results);
+    }
+
+    private Measurements compile(List<JavaFileObject> units) throws IOException {
+        final File outputDir = createTempDir();
+        final File sourceOutputDir = new File(outputDir, "generated");
+        final File classOutputDir = new File(outputDir, "classes");
+        if (!sourceOutputDir.mkdirs() || !classOutputDir.mkdirs()) {
+            throw new IOException("Could not create output directories in " + outputDir);
+        }
+
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-s", sourceOutputDir.getPath(),
+                "-d", classOutputDir.getPath()));
+        arguments.addAll(processorOptions);
+
+        final Measurements measurements = new Measurements();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8);
+        try {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, arguments, null, units);
+            task.setProcessors(Collections.singletonList(new MeasuringProcessor(new PiriProcessor(), measurements)));
+
+            final long start = System.nanoTime();
+            final boolean success = task.call();
+            measurements.compilationNanos = System.nanoTime() - start;
+
+            if (!success) {
+                final StringBuilder errors = new StringBuilder("Compilation of the synthetic sources failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    errors.append('\n').append(diagnostic.getMessage(Locale.ROOT));
+                }
+                throw new IllegalStateException(errors.toString());
+            }
+        } finally {
+            fileManager.close();
+            delete(outputDir);
+        }
+        return measurements;
+    }
+
+    private void report(List<Measurements> results) {
+        System.out.println(String.format(Locale.ROOT,
+                "Piri processor benchmark: %d activities x %d params, %d iterations after %d warm-up",
+                activities, params, iterations, warmup));
+        System.out.println(String.format(Locale.ROOT, "%-32s %12s %12s %12s", "", "mean", "min", "max"));
+
+        final long[] compilation = new long[results.size()];
+        final long[] processing = new long[results.size()];
+        final long[] generation = new long[results.size()];
+        final long[] processingBytes = new long[results.size()];
+        final long[] generationBytes = new long[results.size()];
+        int roundCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            final Measurements measurements = results.get(i);
+            compilation[i] = measurements.compilationNanos;
+            processing[i] = measurements.processingNanos();
+            generation[i] = measurements.generationNanos;
+            processingBytes[i] = measurements.processingAllocatedBytes();
+            generationBytes[i] = measurements.generationAllocatedBytes;
+            roundCount = Math.max(roundCount, measurements.rounds.size());
+        }
+
+        printMillis("compilation wall time", compilation);
+        printMillis("processing, all rounds", processing);
+        for (int round = 0; round < roundCount; round++) {
+            final long[] roundNanos = new long[results.size()];
+            for (int i = 0; i < results.size(); i++) {
+                final List<Measurements.Round> rounds = results.get(i).rounds;
+                roundNanos[i] = round < rounds.size() ? rounds.get(round).nanos : 0;
+            }
+            printMillis("  round " + (round + 1), roundNanos);
+        }
+        printMillis("  of which file generation", generation);
+
+        if (Allocations.isSupported()) {
+            printMegabytes("allocated, all rounds", processingBytes);
+            printMegabytes("  of which file generation", generationBytes);
+        } else {
+            System.out.println("allocated bytes: not supported by this JVM");
+        }
+
+        final Measurements last = results.get(results.size() - 1);
+        System.out.println(String.format(Locale.ROOT, "generated files: %d, %d bytes",
+                last.generatedFiles, last.generatedBytes));
+    }
+
+    private static void printMillis(String label, long[] nanos) {
+        System.out.println(String.format(Locale.ROOT, "%-32s %9.2f ms %9.2f ms %9.2f ms",
+                label, mean(nanos) / 1e6, min(nanos) / 1e6, max(nanos) / 1e6));
+    }
+
+    private static void printMegabytes(String label, long[] bytes) {
+        final double megabyte = 1024 * 1024;
+        System.out.println(String.format(Locale.ROOT, "%-32s %9.2f MB %9.2f MB %9.2f MB",
+                label, mean(bytes) / megabyte, min(bytes) / megabyte, max(bytes) / megabyte));
+    }
+
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static long min(long[] values) {
+        long min = Long.MAX_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static long max(long[] values) {
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    static File createTempDir() throws IOException {
+        final File dir = File.createTempFile("piri-benchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create " + dir);
+        }
+        return dir;
+    }
+
+    static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    static final class SourceFile extends SimpleJavaFileObject {
+        private final String content;
+
+        SourceFile(String qualifiedName, String content) {
+            super(URI.create("string:///" + qualifiedName.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+}
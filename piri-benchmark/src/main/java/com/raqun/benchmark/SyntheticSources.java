@@ -0,0 +1,48 @@
+package com.raqun.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates a synthetic source set: activities with a mix of PiriParam types.
+ */
+
+final class SyntheticSources {
+    static final String PACKAGE_NAME = "com.raqun.synthetic";
+    private static final String[] PARAM_TYPES = {"int", "long", "String", "Payload"};
+
+    private SyntheticSources() {}
+
+    /**
+     * @param activityCount number of activities to generate
+     * @param paramCount    number of PiriParam fields in every activity
+     * @return sources by their fully qualified class name
+     */
+    static Map<String, String> create(int activityCount, int paramCount) {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(PACKAGE_NAME + ".Payload", "package " + PACKAGE_NAME + ";\n"
+                + "public class Payload implements java.io.Serializable {\n"
+                + "    int id;\n"
+                + "    String name;\n"
+                + "}\n");
+
+        for (int i = 0; i < activityCount; i++) {
+            final String className = "Screen" + i + "Activity";
+            final StringBuilder source = new StringBuilder()
+                    .append("package ").append(PACKAGE_NAME).append(";\n\n")
+                    .append("import com.raqun.PiriParam;\n\n")
+                    .append("public class ").append(className).append(" extends android.app.Activity {\n");
+            for (int param = 0; param < paramCount; param++) {
+                source.append("    @PiriParam")
+                        /* Make roughly a quarter of the params required */
+                        .append(param % 4 == 0 ? "(required = true)" : "")
+                        .append(" protected ")
+                        .append(PARAM_TYPES[(i + param) % PARAM_TYPES.length])
+                        .append(" param").append(param).append(";\n");
+            }
+            source.append("}\n");
+            sources.put(PACKAGE_NAME + "." + className, source.toString());
+        }
+        return sources;
+    }
+}
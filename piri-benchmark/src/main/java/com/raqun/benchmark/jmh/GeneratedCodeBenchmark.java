@@ -0,0 +1,98 @@
+package com.raqun.benchmark.jmh;
+
+import android.content.Context;
+import android.content.Intent;
+
+import com.raqun.benchmark.model.BenchmarkActivity;
+import com.raqun.benchmark.model.BenchmarkBindings;
+import com.raqun.benchmark.model.BenchmarkBook;
+import com.raqun.benchmark.model.BenchmarkNavigations;
+import com.raqun.benchmark.model.BenchmarkSecondActivity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the code Piri generates for the benchmark activities, compiled against the JVM
+ * stand-ins of the Android classes. Run with the gc profiler to get the allocations per operation:
+ * ./gradlew :piri-benchmark:jmh -Pargs="-prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratedCodeBenchmark {
+    private Context context;
+    private BenchmarkBook book;
+    private BenchmarkActivity activity;
+    private BenchmarkSecondActivity secondActivity;
+
+    @Setup
+    public void setUp() {
+        context = new Context();
+        book = new BenchmarkBook();
+        book.setBookId(8006);
+        book.setBookName("The Map of Piri Reis");
+
+        activity = new BenchmarkActivity();
+        activity.setIntent(BenchmarkNavigations.createIntent(context, book));
+        secondActivity = new BenchmarkSecondActivity();
+        secondActivity.setIntent(BenchmarkNavigations.secondCreateIntent(context, book));
+    }
+
+    @Benchmark
+    public Object secondCreatorConstruction() {
+        return BenchmarkNavigations.secondBuilder(context, book);
+    }
+
+    @Benchmark
+    public Intent secondCreate() {
+        return BenchmarkNavigations.secondBuilder(context, book).create();
+    }
+
+    @Benchmark
+    public Intent secondCreateIntent() {
+        return BenchmarkNavigations.secondCreateIntent(context, book);
+    }
+
+    @Benchmark
+    public Intent create() {
+        return BenchmarkNavigations.builder(context, book);
+    }
+
+    @Benchmark
+    public Intent createIntent() {
+        return BenchmarkNavigations.createIntent(context, book);
+    }
+
+    @Benchmark
+    public Long secondBind() {
+        BenchmarkBindings.bind(secondActivity);
+        return secondActivity.getId();
+    }
+
+    @Benchmark
+    public Object bind() {
+        BenchmarkBindings.bind(activity);
+        return activity;
+    }
+
+    /* Piri.bind(Activity), through the switch on the class name */
+    @Benchmark
+    public Object bindAny() {
+        BenchmarkBindings.bindAny(activity);
+        return activity;
+    }
+}
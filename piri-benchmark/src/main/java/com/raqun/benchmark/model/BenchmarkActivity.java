@@ -0,0 +1,34 @@
+package com.raqun.benchmark.model;
+
+import android.app.Activity;
+
+import com.raqun.PiriDeepLink;
+import com.raqun.PiriParam;
+
+/**
+ * A destination with the usual mix of params, its IntentCreator is generated when the benchmark is built.
+ */
+@PiriDeepLink({"/books/{bookId}", "/shelves/{title}/books/{bookId}"})
+public class BenchmarkActivity extends Activity {
+    @PiriParam(required = true)
+    protected long bookId;
+
+    @PiriParam(required = true)
+    protected String title;
+
+    @PiriParam
+    protected int position;
+
+    @PiriParam
+    protected boolean editable;
+
+    @PiriParam
+    protected String query;
+
+    @PiriParam
+    protected BenchmarkBook book;
+
+    public BenchmarkBook getBook() {
+        return book;
+    }
+}
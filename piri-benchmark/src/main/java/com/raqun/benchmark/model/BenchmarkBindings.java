@@ -0,0 +1,29 @@
+package com.raqun.benchmark.model;
+
+import android.app.Activity;
+
+import com.raqun.PiriRegistry;
+
+/**
+ * Binds the benchmark activities through the generated Piri class and the registry.
+ */
+public final class BenchmarkBindings {
+    private BenchmarkBindings() {}
+
+    public static void bind(BenchmarkActivity activity) {
+        Piri.bind(activity);
+    }
+
+    public static void bind(BenchmarkSecondActivity activity) {
+        Piri.bind(activity);
+    }
+
+    public static void bind(BenchmarkPackedActivity activity) {
+        Piri.bind(activity);
+    }
+
+    /* Finds the binder through the switch on the class name */
+    public static void bindAny(Activity activity) {
+        PiriRegistry.bind(activity);
+    }
+}
@@ -0,0 +1,76 @@
+package com.raqun.benchmark.model;
+
+import com.raqun.PiriParcelable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * A payload model like the sample's Book, with a few more fields.
+ */
+@PiriParcelable
+public class BenchmarkBook implements Serializable {
+    private int bookId;
+    private String bookName;
+    private long publishedAt;
+    private double rating;
+    private boolean available;
+    private int[] chapterPages;
+    private ArrayList<String> tags;
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getBookName() {
+        return bookName;
+    }
+
+    public void setBookName(String bookName) {
+        this.bookName = bookName;
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(long publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public void setRating(double rating) {
+        this.rating = rating;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public int[] getChapterPages() {
+        return chapterPages;
+    }
+
+    public void setChapterPages(int[] chapterPages) {
+        this.chapterPages = chapterPages;
+    }
+
+    public ArrayList<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(ArrayList<String> tags) {
+        this.tags = tags;
+    }
+}
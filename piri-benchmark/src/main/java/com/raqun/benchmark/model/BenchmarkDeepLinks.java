@@ -0,0 +1,73 @@
+package com.raqun.benchmark.model;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import com.raqun.PiriDeepLinkRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The ways to route a deep link to the activities of the benchmark: the generated router, and a
+ * hand-written table of regular expressions over the same paths as apps usually have.
+ */
+public final class BenchmarkDeepLinks {
+    private static final Pattern BOOK = Pattern.compile("/books/([^/]+)/?");
+    private static final Pattern SHELF_BOOK = Pattern.compile("/shelves/([^/]+)/books/([^/]+)/?");
+    private static final List<Pattern> LINKS = new ArrayList<>();
+
+    static {
+        final String[] sections = {"authors", "genres", "publishers", "series", "awards", "reviews", "lists", "events"};
+        for (String section : sections) {
+            LINKS.add(Pattern.compile("/" + section + "/([^/]+)/?"));
+            LINKS.add(Pattern.compile("/" + section + "/([^/]+)/books/?"));
+            LINKS.add(Pattern.compile("/" + section + "/([^/]+)/followers/?"));
+        }
+    }
+
+    private BenchmarkDeepLinks() {}
+
+    public static Intent router(Context context, Uri uri) {
+        return PiriDeepLinkRouter.route(context, uri);
+    }
+
+    /* Tries every expression in turn, like the routers the generated one replaces */
+    public static Intent regex(Context context, Uri uri) {
+        final String path = uri.getPath();
+        for (Pattern link : LINKS) {
+            final Matcher matcher = link.matcher(path);
+            if (matcher.matches()) {
+                return BenchmarkLinkActivityIntentCreator.createIntent(context, matcher.group(1));
+            }
+        }
+
+        Matcher matcher = BOOK.matcher(path);
+        if (matcher.matches()) {
+            final String title = uri.getQueryParameter("title");
+            return title != null ? book(context, uri, matcher.group(1), title) : null;
+        }
+        matcher = SHELF_BOOK.matcher(path);
+        if (matcher.matches()) {
+            return book(context, uri, matcher.group(2), matcher.group(1));
+        }
+        return null;
+    }
+
+    private static Intent book(Context context, Uri uri, String bookId, String title) {
+        final String position = uri.getQueryParameter("position");
+        final String editable = uri.getQueryParameter("editable");
+        try {
+            return BenchmarkActivityIntentCreator.createIntent(context, Long.parseLong(bookId), title,
+                    position != null ? Integer.parseInt(position) : -1,
+                    editable != null && Boolean.parseBoolean(editable),
+                    uri.getQueryParameter("query"),
+                    null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.raqun.benchmark.model;
+
+import android.app.Activity;
+
+import com.raqun.PiriDeepLink;
+import com.raqun.PiriParam;
+
+/**
+ * The rest of the deep links of an app, so the router has a realistic number of paths to tell apart.
+ * BenchmarkDeepLinks keeps the same paths as regular expressions.
+ */
+@PiriDeepLink({
+        "/authors/{id}", "/authors/{id}/books", "/authors/{id}/followers",
+        "/genres/{id}", "/genres/{id}/books", "/genres/{id}/followers",
+        "/publishers/{id}", "/publishers/{id}/books", "/publishers/{id}/followers",
+        "/series/{id}", "/series/{id}/books", "/series/{id}/followers",
+        "/awards/{id}", "/awards/{id}/books", "/awards/{id}/followers",
+        "/reviews/{id}", "/reviews/{id}/books", "/reviews/{id}/followers",
+        "/lists/{id}", "/lists/{id}/books", "/lists/{id}/followers",
+        "/events/{id}", "/events/{id}/books", "/events/{id}/followers",
+})
+public class BenchmarkLinkActivity extends Activity {
+    @PiriParam(required = true)
+    protected String id;
+}
@@ -0,0 +1,112 @@
+package com.raqun.benchmark.model;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * The ways to build the Intent of a BenchmarkActivity, a BenchmarkPackedActivity or a BenchmarkSecondActivity.
+ * The generated IntentCreator is package private, so the benchmark reaches it through this class.
+ */
+public final class BenchmarkNavigations {
+    private BenchmarkNavigations() {}
+
+    /* The IntentCreator before extras were presized: one putExtra per param, which grows the extras map */
+    public static Intent putExtraPerParam(Context context, BenchmarkBook book) {
+        return new LegacyIntentCreator(context, book.getBookId(), book.getBookName())
+                .position(3)
+                .editable(true)
+                .query("piri")
+                .book(book)
+                .create();
+    }
+
+    public static Intent builder(Context context, BenchmarkBook book) {
+        return new BenchmarkActivityIntentCreator(context, book.getBookId(), book.getBookName())
+                .position(3)
+                .editable(true)
+                .query("piri")
+                .book(book)
+                .create();
+    }
+
+    public static Intent createIntent(Context context, BenchmarkBook book) {
+        return BenchmarkActivityIntentCreator.createIntent(context, book.getBookId(), book.getBookName(),
+                3, true, "piri", book);
+    }
+
+    /* The same params as createIntent(), sent as one PackedArgs extra */
+    public static Intent packedCreateIntent(Context context, BenchmarkBook book) {
+        return BenchmarkPackedActivityIntentCreator.createIntent(context, book.getBookId(), book.getBookName(),
+                3, true, "piri", book);
+    }
+
+    /* The generated IntentCreator of the sample's SecondActivity, before create() */
+    public static BenchmarkSecondActivityIntentCreator secondBuilder(Context context, BenchmarkBook book) {
+        return new BenchmarkSecondActivityIntentCreator(context, (long) book.getBookId(), 38)
+                .name(book.getBookName())
+                .book(book);
+    }
+
+    public static Intent secondCreateIntent(Context context, BenchmarkBook book) {
+        return BenchmarkSecondActivityIntentCreator.createIntent(context, (long) book.getBookId(), book.getBookName(),
+                book, 38);
+    }
+
+    /* What Piri generated for BenchmarkActivity before */
+    private static final class LegacyIntentCreator {
+        private final Intent intent;
+        private final long bookId;
+        private final String title;
+        private int setMask;
+        private int position;
+        private boolean editable;
+        private String query = null;
+        private BenchmarkBook book = null;
+
+        LegacyIntentCreator(Context context, long bookId, String title) {
+            this.intent = new Intent(context, BenchmarkActivity.class);
+            this.bookId = bookId;
+            this.title = title;
+        }
+
+        Intent create() {
+            intent.putExtra("bookId", bookId);
+            intent.putExtra("title", title);
+            if ((setMask & 0x1) != 0) {
+                intent.putExtra("position", position);
+            }
+            if ((setMask & 0x2) != 0) {
+                intent.putExtra("editable", editable);
+            }
+            if (query != null) {
+                intent.putExtra("query", query);
+            }
+            if (book != null) {
+                intent.putExtra("book", new BenchmarkBookParcelWrapper(book));
+            }
+            return intent;
+        }
+
+        LegacyIntentCreator position(int position) {
+            this.position = position;
+            setMask |= 0x1;
+            return this;
+        }
+
+        LegacyIntentCreator editable(boolean editable) {
+            this.editable = editable;
+            setMask |= 0x2;
+            return this;
+        }
+
+        LegacyIntentCreator query(String query) {
+            this.query = query;
+            return this;
+        }
+
+        LegacyIntentCreator book(BenchmarkBook book) {
+            this.book = book;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.raqun.benchmark.model;
+
+import android.app.Activity;
+
+import com.raqun.PiriActivity;
+import com.raqun.PiriParam;
+
+/**
+ * BenchmarkActivity with packed args, its params are sent as one BenchmarkPackedActivityPackedArgs extra.
+ */
+@PiriActivity(packedArgs = true)
+public class BenchmarkPackedActivity extends Activity {
+    @PiriParam(required = true)
+    protected long bookId;
+
+    @PiriParam(required = true)
+    protected String title;
+
+    @PiriParam
+    protected int position;
+
+    @PiriParam
+    protected boolean editable;
+
+    @PiriParam
+    protected String query;
+
+    @PiriParam
+    protected BenchmarkBook book;
+
+    public BenchmarkBook getBook() {
+        return book;
+    }
+}
@@ -0,0 +1,26 @@
+package com.raqun.benchmark.model;
+
+import android.app.Activity;
+
+import com.raqun.PiriParam;
+
+/**
+ * The params of the sample's SecondActivity, with BenchmarkBook for the sample's Book.
+ */
+public class BenchmarkSecondActivity extends Activity {
+    @PiriParam(required = true)
+    protected Long id;
+
+    @PiriParam
+    protected String name;
+
+    @PiriParam
+    protected BenchmarkBook book;
+
+    @PiriParam(required = true)
+    protected Integer integer;
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,125 @@
+package com.raqun;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+
+import static com.raqun.PiriProcessor.intentClass;
+import static com.raqun.PiriProcessor.nonNullAnnotation;
+
+/**
+ * Data class for the Args of a lazy Activity. Every param has an accessor which reads it from the
+ * Intent on the first call and memoizes it. The params are published through a volatile mask, so an
+ * Args instance can be shared between threads.
+ */
+
+public class ActivityArgs implements Generatable {
+    private static final String CLASS_NAME_ARGS_SUFFIX = "Args";
+    private static final String DECODED_MASK_NAME = "decodedMask";
+
+    private final String packageName;
+    private final ClassName className;
+    private final TypeSpec.Builder typeSpecBuilder;
+    // Fields of the params are named after them, the intent and the masks take the names left
+    private final NameAllocator fieldNames = new NameAllocator();
+    private final String intentName;
+
+    public ActivityArgs(ActivityModel activity) {
+        final List<KeyElementPair> piriParamList = activity.params;
+        this.packageName = activity.packageName;
+        this.className = getClassName(activity);
+
+        for (KeyElementPair pair : piriParamList) {
+            fieldNames.newName(pair.name);
+        }
+        this.intentName = fieldNames.newName("intent");
+
+        this.typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(activity.element)
+                .addField(intentClass, intentName, Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(ParameterSpec.builder(intentClass, "intent").addAnnotation(nonNullAnnotation).build())
+                        .addStatement("this.$L = intent", intentName)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("of")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addParameter(ParameterSpec.builder(activity.className, "activity")
+                                .addAnnotation(nonNullAnnotation)
+                                .build())
+                        .addStatement("return new $T(activity.getIntent())", className)
+                        .returns(className)
+                        .build());
+
+        for (int i = 0; i < piriParamList.size(); i++) {
+            addAccessor(piriParamList.get(i), i);
+        }
+        PrimitivePacking.addUnpackMethods(typeSpecBuilder, piriParamList);
+    }
+
+    private void addAccessor(KeyElementPair pair, int index) {
+        final String name = pair.name;
+        final String maskTag = getDecodedMaskName(index);
+        final String bit = "0x" + Integer.toHexString(1 << (index % Integer.SIZE));
+
+        /* Every 32 params share one mask */
+        if (index % Integer.SIZE == 0) {
+            typeSpecBuilder.addField(FieldSpec.builder(TypeName.INT, fieldNames.newName(maskTag, maskTag),
+                    Modifier.PRIVATE, Modifier.VOLATILE).build());
+        }
+        final String maskName = fieldNames.get(maskTag);
+        typeSpecBuilder.addField(pair.type, name, Modifier.PRIVATE);
+
+        /* Double checked, the field is written before the bit is published through the volatile mask */
+        final MethodSpec.Builder accessorBuilder = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(pair.type)
+                .beginControlFlow("if (($L & $L) == 0)", maskName, bit)
+                .beginControlFlow("synchronized (this)")
+                .beginControlFlow("if (($L & $L) == 0)", maskName, bit);
+        ActivityBinder.addReadStatements(accessorBuilder, CodeBlock.of("this.$L", name), pair,
+                intentName, pair.bundleType.getIntentGetter());
+        accessorBuilder.addStatement("$L |= $L", maskName, bit)
+                .endControlFlow()
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return $L", name);
+
+        if (ActivityBinder.isUncheckedCast(pair)) {
+            accessorBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+        typeSpecBuilder.addMethod(accessorBuilder.build());
+    }
+
+    private static String getDecodedMaskName(int index) {
+        final int maskIndex = index / Integer.SIZE;
+        return maskIndex == 0 ? DECODED_MASK_NAME : DECODED_MASK_NAME + maskIndex;
+    }
+
+    static ClassName getClassName(ActivityModel activity) {
+        return ClassName.get(activity.packageName, activity.getSimpleName() + CLASS_NAME_ARGS_SUFFIX);
+    }
+
+    @Override
+    public String getPackage() {
+        return packageName;
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        return typeSpecBuilder.build();
+    }
+}
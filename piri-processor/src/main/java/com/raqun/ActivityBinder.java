@@ -0,0 +1,606 @@
+package com.raqun;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.lang.model.element.Modifier;
+
+import static com.raqun.PiriProcessor.bindersClass;
+import static com.raqun.PiriProcessor.bindingClass;
+import static com.raqun.PiriProcessor.bundleClass;
+import static com.raqun.PiriProcessor.handoffClass;
+import static com.raqun.PiriProcessor.instrumentationClass;
+import static com.raqun.PiriProcessor.intentClass;
+import static com.raqun.PiriProcessor.parcelableClass;
+
+/**
+ * Data class for an Activity Binder. Every binder is generated from exactly one
+ * Activity, which keeps it usable from an isolating incremental build.
+ * Besides bind, it has a rebind for onNewIntent which only reads the params present in the new
+ * Intent and reports the keys of the params whose values changed. An activity with heavy params
+ * also gets a bindAsync, which decodes them on an Executor. save and restore keep the current values
+ * in the saved instance state, so a recreated activity doesn't bind the Intent's values again.
+ */
+
+public class ActivityBinder implements Generatable {
+    private static final String CLASS_NAME_BINDER_SUFFIX = "Binder";
+    static final String BIND_METHOD_NAME = "bind";
+    static final String REBIND_METHOD_NAME = "rebind";
+    static final String BIND_ASYNC_METHOD_NAME = "bindAsync";
+    static final String SAVE_METHOD_NAME = "save";
+    static final String RESTORE_METHOD_NAME = "restore";
+    /* The params are saved in a Bundle of their own, so their keys can't clash with the activity's state */
+    private static final String STATE_KEY = "com.raqun.piri.state";
+    /* Heavy params are sent in a Bundle of their own, which stays parcelled until one of them is read */
+    static final String HEAVY_EXTRAS_KEY = "com.raqun.piri.heavy";
+    private static final String HEAVY_EXTRAS_NAME = "heavyExtras";
+    private static final String ADD_CHANGED_METHOD_NAME = "addChanged";
+    private static final String IS_EQUAL_METHOD_NAME = "isEqual";
+    /* Tag of the warning about PackedArgs of another build */
+    private static final String LOG_TAG = "Piri";
+    private static final ClassName logClass = ClassName.get("android.util", "Log");
+    static final TypeName changedSetType = ParameterizedTypeName.get(Set.class, String.class);
+
+    private final String packageName;
+    private final ClassName className;
+    private final TypeSpec.Builder typeSpecBuilder;
+
+    public ActivityBinder(ActivityModel activity) {
+        this.packageName = activity.packageName;
+        this.className = getClassName(activity);
+
+        final MethodSpec.Builder bindBuilder = MethodSpec.methodBuilder(BIND_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .addParameter(activity.className, "activity");
+        if (activity.instrumented) {
+            bindBuilder.addStatement("final long piriStart = $T.begin($S)",
+                    instrumentationClass, activity.getTraceSection(BIND_METHOD_NAME))
+                    .beginControlFlow("try");
+        }
+        bindBuilder.addStatement("$T intent = activity.getIntent()", intentClass);
+        boolean uncheckedCast = false;
+
+        if (activity.packedArgs) {
+            addPackedReadStatements(bindBuilder, activity);
+        } else {
+            if (hasHeavyParams(activity)) {
+                addHeavyExtrasStatement(bindBuilder);
+            }
+            for (KeyElementPair pair : activity.params) {
+                addIntentReadStatements(bindBuilder, activity, CodeBlock.of("activity.$L", pair.name), pair);
+                uncheckedCast |= isUncheckedCast(pair);
+            }
+        }
+
+        if (activity.instrumented) {
+            bindBuilder.nextControlFlow("finally")
+                    .addStatement("$T.endBind(piriStart, $S)", instrumentationClass, activity.binaryName)
+                    .endControlFlow();
+        }
+
+        if (uncheckedCast) {
+            bindBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+
+        this.typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.FINAL)
+                .addOriginatingElement(activity.element)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(bindBuilder.build())
+                .addMethod(createRebindMethod(activity, uncheckedCast))
+                .addMethod(createSaveMethod(activity))
+                .addMethod(createRestoreMethod(activity));
+        if (hasHeavyParams(activity)) {
+            typeSpecBuilder.addMethod(createBindAsyncMethod(activity, uncheckedCast));
+        }
+        /* Compact binders call the same helpers in PiriBinders */
+        if (!activity.compact) {
+            addRebindHelpers(typeSpecBuilder, activity);
+        }
+        PrimitivePacking.addPackMethods(typeSpecBuilder, activity.params);
+        PrimitivePacking.addUnpackMethods(typeSpecBuilder, activity.params);
+    }
+
+    private static void addRebindHelpers(TypeSpec.Builder typeSpecBuilder, ActivityModel activity) {
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder(ADD_CHANGED_METHOD_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(changedSetType)
+                .addParameter(changedSetType, "changed")
+                .addParameter(String.class, "key")
+                .beginControlFlow("if (changed == null)")
+                .addStatement("changed = new $T<>()", HashSet.class)
+                .endControlFlow()
+                .addStatement("changed.add(key)")
+                .addStatement("return changed")
+                .build());
+        /* java.util.Objects needs API 19 */
+        if (needsIsEqual(activity)) {
+            typeSpecBuilder.addMethod(MethodSpec.methodBuilder(IS_EQUAL_METHOD_NAME)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(TypeName.BOOLEAN)
+                    .addParameter(Object.class, "a")
+                    .addParameter(Object.class, "b")
+                    .addStatement("return a == b || a != null && a.equals(b)")
+                    .build());
+        }
+    }
+
+    private static CodeBlock getHelper(ActivityModel activity, String name) {
+        return activity.compact ? CodeBlock.of("$T.$L", bindersClass, name) : CodeBlock.of("$L", name);
+    }
+
+    /*
+     * Params without an extra in the new Intent keep their values, so only those which are sent again are
+     * decoded. A decoded value equal to the current one isn't assigned and isn't reported.
+     */
+    private static MethodSpec createRebindMethod(ActivityModel activity, boolean uncheckedCast) {
+        final MethodSpec.Builder rebindBuilder = MethodSpec.methodBuilder(REBIND_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .returns(changedSetType)
+                .addParameter(activity.className, "activity")
+                .addParameter(intentClass, "intent");
+        if (activity.instrumented) {
+            rebindBuilder.addStatement("final long piriStart = $T.begin($S)",
+                    instrumentationClass, activity.getTraceSection(REBIND_METHOD_NAME))
+                    .beginControlFlow("try");
+        }
+
+        final NameAllocator names = new NameAllocator();
+        for (String name : new String[]{"activity", "intent", "args", "changed", "piriStart", HEAVY_EXTRAS_NAME}) {
+            names.newName(name);
+        }
+        for (KeyElementPair pair : activity.params) {
+            names.newName(pair.name + "Wrapper");
+            names.newName(pair.name + "Array");
+        }
+
+        if (activity.packedArgs) {
+            final ClassName argsClass = ActivityPackedArgs.getClassName(activity);
+            rebindBuilder.addStatement("$T args = intent.getParcelableExtra($T.$L)",
+                    argsClass, argsClass, ActivityPackedArgs.EXTRA_KEY_NAME)
+                    .beginControlFlow("if (args == null)")
+                    .addStatement("return $T.emptySet()", Collections.class)
+                    .endControlFlow();
+            beginSchemaHashCheck(rebindBuilder, activity, argsClass);
+            rebindBuilder.addStatement("return $T.emptySet()", Collections.class)
+                    .endControlFlow();
+        } else if (hasHeavyParams(activity)) {
+            addHeavyExtrasStatement(rebindBuilder);
+        }
+        rebindBuilder.addStatement("$T changed = null", changedSetType);
+
+        for (KeyElementPair pair : activity.params) {
+            final String valueName = names.newName(pair.name + "Value");
+            if (activity.packedArgs) {
+                rebindBuilder.addStatement("$T $L = $L", pair.type, valueName,
+                        ActivityPackedArgs.getParamValue(pair, "args." + pair.name));
+            } else {
+                if (isHeavy(activity, pair)) {
+                    rebindBuilder.beginControlFlow("if ($L.containsKey($S))", HEAVY_EXTRAS_NAME, pair.key);
+                } else {
+                    rebindBuilder.beginControlFlow("if (intent.hasExtra($S))", pair.key);
+                }
+                addIntentReadStatements(rebindBuilder, activity, CodeBlock.of("$T $L", pair.type, valueName), pair);
+            }
+            rebindBuilder.beginControlFlow("if ($L)",
+                    getChangedCondition(getHelper(activity, IS_EQUAL_METHOD_NAME), pair, "activity." + pair.name, valueName))
+                    .addStatement("activity.$L = $L", pair.name, valueName)
+                    .addStatement("changed = $L(changed, $S)", getHelper(activity, ADD_CHANGED_METHOD_NAME), pair.key)
+                    .endControlFlow();
+            if (!activity.packedArgs) {
+                rebindBuilder.endControlFlow();
+            }
+        }
+        rebindBuilder.addStatement("return changed != null ? changed : $T.<$T>emptySet()", Collections.class, String.class);
+
+        if (activity.instrumented) {
+            rebindBuilder.nextControlFlow("finally")
+                    .addStatement("$T.endBind(piriStart, $S)", instrumentationClass, activity.binaryName)
+                    .endControlFlow();
+        }
+        if (uncheckedCast) {
+            rebindBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+        return rebindBuilder.build();
+    }
+
+    /* Packed args are decoded at once and lazy ones by their accessors, there's nothing to move to the background */
+    static boolean hasHeavyParams(ActivityModel activity) {
+        if (activity.packedArgs || activity.lazy) {
+            return false;
+        }
+        for (KeyElementPair pair : activity.params) {
+            if (pair.heavy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Whether the param is sent in the Bundle of the heavy params */
+    static boolean isHeavy(ActivityModel activity, KeyElementPair pair) {
+        return pair.heavy && hasHeavyParams(activity);
+    }
+
+    /* An Intent without the Bundle of the heavy params binds them like missing extras */
+    private static void addHeavyExtrasStatement(MethodSpec.Builder builder) {
+        builder.addStatement("final $T $L = intent.hasExtra($S)$>$>\n? intent.getBundleExtra($S)\n: $T.EMPTY$<$<",
+                bundleClass, HEAVY_EXTRAS_NAME, HEAVY_EXTRAS_KEY, HEAVY_EXTRAS_KEY, bundleClass);
+    }
+
+    /*
+     * Binds the light params right away. Getting the Bundle of the heavy params from the extras doesn't decode
+     * them, that's left to a single task which reads them one after another and assigns each on the main thread.
+     * The task never touches the Intent, whose extras aren't safe to read from several threads. Nothing is
+     * decoded or assigned anymore once the binding is cancelled or the activity is destroyed. A param that can't
+     * be decoded is reported to the listener on the main thread, and the params after it aren't decoded.
+     */
+    private static MethodSpec createBindAsyncMethod(ActivityModel activity, boolean uncheckedCast) {
+        final ClassName listenerClass = bindingClass.nestedClass("Listener");
+        final MethodSpec.Builder bindAsyncBuilder = MethodSpec.methodBuilder(BIND_ASYNC_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .returns(bindingClass)
+                .addParameter(activity.className, "activity", Modifier.FINAL)
+                .addParameter(Executor.class, "executor")
+                .addParameter(listenerClass, "listener", Modifier.FINAL)
+                .addStatement("final $T intent = activity.getIntent()", intentClass);
+
+        final NameAllocator names = new NameAllocator();
+        for (String name : new String[]{"activity", "executor", "listener", "intent", "binding", HEAVY_EXTRAS_NAME,
+                "key", "error", "failedKey"}) {
+            names.newName(name);
+        }
+        for (KeyElementPair pair : activity.params) {
+            names.newName(pair.name + "Wrapper");
+            names.newName(pair.name + "Array");
+        }
+
+        /* The key of the param being decoded, which is reported when it can't be */
+        final MethodSpec.Builder decodeBuilder = MethodSpec.methodBuilder("run")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("$T key = null", String.class)
+                .beginControlFlow("try");
+        for (KeyElementPair pair : activity.params) {
+            if (!pair.heavy) {
+                addReadStatements(bindAsyncBuilder, "activity", pair);
+                continue;
+            }
+
+            final String valueName = names.newName(pair.name + "Value");
+            final TypeSpec assignment = TypeSpec.anonymousClassBuilder("")
+                    .addSuperinterface(Runnable.class)
+                    .addMethod(MethodSpec.methodBuilder("run")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .beginControlFlow("if (!binding.isCancelled() && !activity.isDestroyed())")
+                            .addStatement("activity.$L = $L", pair.name, valueName)
+                            .addStatement("listener.onParamReady($S)", pair.key)
+                            .endControlFlow()
+                            .build())
+                    .build();
+            decodeBuilder.beginControlFlow("if (binding.isCancelled() || activity.isDestroyed())")
+                    .addStatement("return")
+                    .endControlFlow()
+                    .addStatement("key = $S", pair.key);
+            addIntentReadStatements(decodeBuilder, activity, CodeBlock.of("final $T $L", pair.type, valueName), pair);
+            decodeBuilder.addStatement("activity.runOnUiThread($L)", assignment);
+        }
+
+        final TypeSpec failure = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(Runnable.class)
+                .addMethod(MethodSpec.methodBuilder("run")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .beginControlFlow("if (!binding.isCancelled() && !activity.isDestroyed())")
+                        .addStatement("listener.onParamFailed(failedKey, error)")
+                        .endControlFlow()
+                        .build())
+                .build();
+        decodeBuilder.nextControlFlow("catch (final $T error)", RuntimeException.class)
+                .addStatement("final $T failedKey = key", String.class)
+                .addStatement("activity.runOnUiThread($L)", failure)
+                .endControlFlow();
+
+        final TypeSpec decode = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(Runnable.class)
+                .addMethod(decodeBuilder.build())
+                .build();
+        addHeavyExtrasStatement(bindAsyncBuilder);
+        bindAsyncBuilder.addStatement("final $T binding = new $T()", bindingClass, bindingClass)
+                .addStatement("executor.execute($L)", decode)
+                .addStatement("return binding");
+        if (uncheckedCast) {
+            bindAsyncBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+        return bindAsyncBuilder.build();
+    }
+
+    /* In-memory params only have a token, which is stale after process death, they're bound from the Intent */
+    private static boolean isSaved(KeyElementPair pair) {
+        return !pair.inMemory;
+    }
+
+    /* Every saved param is put, a null too, so a restored null isn't replaced by the Intent's value */
+    private static MethodSpec createSaveMethod(ActivityModel activity) {
+        int savedCount = 0;
+        for (KeyElementPair pair : activity.params) {
+            savedCount += isSaved(pair) ? 1 : 0;
+        }
+
+        final MethodSpec.Builder saveBuilder = MethodSpec.methodBuilder(SAVE_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .addParameter(activity.className, "activity")
+                .addParameter(bundleClass, "outState")
+                .addStatement("final $T state = new $T($L)", bundleClass, bundleClass, savedCount);
+        for (KeyElementPair pair : activity.params) {
+            if (!isSaved(pair)) {
+                continue;
+            }
+            final String field = "activity." + pair.name;
+            final CodeBlock value = ActivityIntentCreator.getPutValue(pair, field);
+            if (!pair.primitive && pair.bundleType.isPrimitive()) {
+                /* A null box is kept as a null value, which the getter in restore reads like a missing extra */
+                saveBuilder.addStatement("state.putSerializable($S, $L)", pair.key, field);
+            } else if (pair.primitive || value.toString().equals(field)) {
+                saveBuilder.addStatement("state.$L($S, $L)", pair.bundleType.getBundlePutter(), pair.key, value);
+            } else {
+                /* The conversions don't take null */
+                saveBuilder.addStatement("state.$L($S, $L != null ? ($L) : null)",
+                        pair.bundleType.getBundlePutter(), pair.key, field, value);
+            }
+        }
+        return saveBuilder.addStatement("outState.putBundle($S, state)", STATE_KEY)
+                .build();
+    }
+
+    /*
+     * Binds every param, from the saved state when it has a value for it and from the Intent otherwise. The Intent
+     * isn't read when the state has all saved params, e.g. after a configuration change or process death. State
+     * of a build with other params is incomplete, the params are bound first and the saved values replace them.
+     */
+    private static MethodSpec createRestoreMethod(ActivityModel activity) {
+        final MethodSpec.Builder restoreBuilder = MethodSpec.methodBuilder(RESTORE_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .addParameter(activity.className, "activity")
+                .addParameter(bundleClass, "savedState")
+                .addStatement("final $T state = savedState != null ? savedState.getBundle($S) : null",
+                        bundleClass, STATE_KEY);
+
+        final CodeBlock.Builder incomplete = CodeBlock.builder().add("state == null$>$>");
+        boolean hasUnsaved = false;
+        boolean hasUnsavedHeavy = false;
+        for (KeyElementPair pair : activity.params) {
+            if (isSaved(pair)) {
+                incomplete.add("\n|| !state.containsKey($S)", pair.key);
+            } else {
+                hasUnsaved = true;
+                hasUnsavedHeavy |= isHeavy(activity, pair);
+            }
+        }
+        incomplete.add("$<$<");
+        restoreBuilder.beginControlFlow("if ($L)", incomplete.build())
+                .addStatement("$L(activity)", BIND_METHOD_NAME)
+                .beginControlFlow("if (state == null)")
+                .addStatement("return")
+                .endControlFlow();
+        if (hasUnsaved) {
+            restoreBuilder.nextControlFlow("else")
+                    .addStatement("$T intent = activity.getIntent()", intentClass);
+            if (activity.packedArgs) {
+                addPackedRestoreStatements(restoreBuilder, activity);
+            } else {
+                if (hasUnsavedHeavy) {
+                    addHeavyExtrasStatement(restoreBuilder);
+                }
+                for (KeyElementPair pair : activity.params) {
+                    if (!isSaved(pair)) {
+                        addIntentReadStatements(restoreBuilder, activity, CodeBlock.of("activity.$L", pair.name), pair);
+                    }
+                }
+            }
+        }
+        restoreBuilder.endControlFlow();
+
+        /* The state holds every param on its own, also those of packed args */
+        boolean uncheckedCast = false;
+        for (KeyElementPair pair : activity.params) {
+            if (isSaved(pair)) {
+                uncheckedCast |= isUncheckedCast(pair);
+                restoreBuilder.beginControlFlow("if (state.containsKey($S))", pair.key);
+                addReadStatements(restoreBuilder, CodeBlock.of("activity.$L", pair.name), pair,
+                        "state", pair.bundleType.getBundleGetter());
+                restoreBuilder.endControlFlow();
+            }
+        }
+
+        if (uncheckedCast) {
+            restoreBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+        return restoreBuilder.build();
+    }
+
+    /* Primitives and tokens are compared by value and identity, arrays by content, objects with equals */
+    private static CodeBlock getChangedCondition(CodeBlock isEqual, KeyElementPair pair, String current, String value) {
+        if (pair.primitive) {
+            if (pair.type.equals(TypeName.FLOAT) || pair.type.equals(TypeName.DOUBLE)) {
+                /* NaN doesn't equal itself */
+                return CodeBlock.of("$T.compare($L, $L) != 0", pair.type.box(), current, value);
+            }
+            return CodeBlock.of("$L != $L", current, value);
+        } else if (pair.inMemory) {
+            return CodeBlock.of("$L != $L", current, value);
+        } else if (pair.type instanceof ArrayTypeName) {
+            return CodeBlock.of("!$T.equals($L, $L)", Arrays.class, current, value);
+        }
+        return CodeBlock.of("!$L($L, $L)", isEqual, current, value);
+    }
+
+    private static boolean needsIsEqual(ActivityModel activity) {
+        for (KeyElementPair pair : activity.params) {
+            if (!pair.primitive && !pair.inMemory && !(pair.type instanceof ArrayTypeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Casting a Serializable to a generic type is unchecked */
+    static boolean isUncheckedCast(KeyElementPair pair) {
+        return pair.bundleType == BundleType.SERIALIZABLE && pair.type instanceof ParameterizedTypeName;
+    }
+
+    /* Reads every param from the PackedArgs of the intent, the Args already decoded them in one pass */
+    private static void addPackedReadStatements(MethodSpec.Builder builder, ActivityModel activity) {
+        final ClassName argsClass = ActivityPackedArgs.getClassName(activity);
+        builder.addStatement("$T args = intent.getParcelableExtra($T.$L)", argsClass, argsClass, ActivityPackedArgs.EXTRA_KEY_NAME)
+                .beginControlFlow("if (args == null)")
+                .addStatement("return")
+                .endControlFlow();
+        beginSchemaHashCheck(builder, activity, argsClass);
+        builder.addStatement("return")
+                .endControlFlow();
+        for (KeyElementPair pair : activity.params) {
+            builder.addStatement("activity.$L = $L", pair.name, ActivityPackedArgs.getParamValue(pair, "args." + pair.name));
+        }
+    }
+
+    /* The unsaved params of packed args are only in the PackedArgs, an Intent without them leaves the fields alone */
+    private static void addPackedRestoreStatements(MethodSpec.Builder builder, ActivityModel activity) {
+        final ClassName argsClass = ActivityPackedArgs.getClassName(activity);
+        builder.addStatement("$T args = intent.getParcelableExtra($T.$L)", argsClass, argsClass, ActivityPackedArgs.EXTRA_KEY_NAME)
+                .beginControlFlow("if (args != null)");
+        beginSchemaHashCheck(builder, activity, argsClass);
+        builder.nextControlFlow("else");
+        for (KeyElementPair pair : activity.params) {
+            if (!isSaved(pair)) {
+                builder.addStatement("activity.$L = $L", pair.name, ActivityPackedArgs.getParamValue(pair, "args." + pair.name));
+            }
+        }
+        builder.endControlFlow()
+                .endControlFlow();
+    }
+
+    /*
+     * Args of another build, e.g. of a pending Intent from before an app update, were skipped by the PackedArgs.
+     * They're reported and the fields are left alone like for an Intent without args, the caller ends the block.
+     */
+    private static void beginSchemaHashCheck(MethodSpec.Builder builder, ActivityModel activity, ClassName argsClass) {
+        builder.beginControlFlow("if (args.$L != $T.$L)",
+                ActivityPackedArgs.SCHEMA_HASH_FIELD_NAME, argsClass, ActivityPackedArgs.SCHEMA_HASH_NAME)
+                .addStatement("$T.w($S, $S)", logClass, LOG_TAG, activity.binaryName
+                        + " was started with the PackedArgs of a build with other PiriParams, they aren't bound");
+    }
+
+    /* Reads the param from a variable called intent, or a heavy one from the Bundle of the heavy params */
+    private static void addIntentReadStatements(MethodSpec.Builder builder, ActivityModel activity,
+                                                CodeBlock assignee, KeyElementPair pair) {
+        if (isHeavy(activity, pair)) {
+            addReadStatements(builder, assignee, pair, HEAVY_EXTRAS_NAME, pair.bundleType.getBundleGetter());
+        } else {
+            addReadStatements(builder, assignee, pair);
+        }
+    }
+
+    /* Reads the param from a variable called intent and assigns it to the field of the given target */
+    static void addReadStatements(MethodSpec.Builder builder, String target, KeyElementPair pair) {
+        addReadStatements(builder, CodeBlock.of("$L.$L", target, pair.name), pair);
+    }
+
+    /* Reads the param from a variable called intent and assigns it, e.g. to a declared local */
+    static void addReadStatements(MethodSpec.Builder builder, CodeBlock assignee, KeyElementPair pair) {
+        addReadStatements(builder, assignee, pair, "intent", pair.bundleType.getIntentGetter());
+    }
+
+    /* Reads the param with the given getter of the source, an Intent or a Bundle, and assigns it */
+    static void addReadStatements(MethodSpec.Builder builder, CodeBlock assignee, KeyElementPair pair,
+                                  String source, String getter) {
+        final String elementName = pair.name;
+        final TypeName elementType = pair.type;
+
+        if (pair.inMemory) {
+            /* A stale token resolves to null */
+            builder.addStatement("$L = $T.get($L.$L($S, $T.NO_TOKEN))",
+                    assignee, handoffClass, source, getter, pair.key, handoffClass);
+            return;
+        }
+
+        if (pair.packed) {
+            builder.addStatement("$L = $L($L.$L($S))",
+                    assignee, PrimitivePacking.getUnpackMethodName(pair), source, getter, pair.key);
+            return;
+        }
+
+        if (pair.parcelWrapper != null) {
+            final String wrapperName = elementName + "Wrapper";
+            builder.addStatement("$T $L = $L.$L($S)", pair.parcelWrapper, wrapperName, source, getter, pair.key)
+                    .addStatement("$L = $L != null ? $L.$L() : null",
+                            assignee, wrapperName, wrapperName, ParcelableWrapper.GET_METHOD_NAME);
+            return;
+        }
+
+        switch (pair.bundleType) {
+            case SERIALIZABLE:
+                builder.addStatement("$L = ($T) $L.$L($S)", assignee, elementType, source, getter, pair.key);
+                break;
+            case PARCELABLE_ARRAY:
+                if (elementType.equals(ArrayTypeName.of(parcelableClass))) {
+                    builder.addStatement("$L = $L.$L($S)", assignee, source, getter, pair.key);
+                } else {
+                    /* Parcelable[] can't be cast to a sub type array, copy it into one */
+                    final String arrayName = elementName + "Array";
+                    builder.addStatement("$T[] $L = $L.$L($S)", parcelableClass, arrayName, source, getter, pair.key)
+                            .addStatement("$L = $L != null ? $T.copyOf($L, $L.length, $T.class) : null",
+                                    assignee, arrayName, Arrays.class, arrayName, arrayName, elementType);
+                }
+                break;
+            default:
+                if (pair.bundleType.isPrimitive()) {
+                    builder.addStatement("$L = $L.$L($S, $L)",
+                            assignee, source, getter, pair.key, pair.bundleType.getDefaultValue());
+                } else {
+                    builder.addStatement("$L = $L.$L($S)", assignee, source, getter, pair.key);
+                }
+                break;
+        }
+    }
+
+    static ClassName getClassName(ActivityModel activity) {
+        return ClassName.get(activity.packageName, activity.getSimpleName() + CLASS_NAME_BINDER_SUFFIX);
+    }
+
+    public ClassName getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getPackage() {
+        return packageName;
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        return typeSpecBuilder.build();
+    }
+}
@@ -2,22 +2,28 @@ package com.raqun;
 
 import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.TypeElement;
-import javax.lang.model.type.TypeMirror;
 
+import static com.raqun.PiriProcessor.bundleClass;
+import static com.raqun.PiriProcessor.contextClass;
+import static com.raqun.PiriProcessor.handoffClass;
+import static com.raqun.PiriProcessor.instrumentationClass;
+import static com.raqun.PiriProcessor.intentCreatorClass;
 import static com.raqun.PiriProcessor.intentClass;
 import static com.raqun.PiriProcessor.nonNullAnnotation;
-import static com.raqun.PiriProcessor.nonNullContextParam;
 
 /**
  * Data class for an Activity IntentCreator.
@@ -26,6 +32,8 @@ import static com.raqun.PiriProcessor.nonNullContextParam;
 public class ActivityIntentCreator implements Generatable {
     private static final String CLASS_NAME_INTENT_CREATOR_SUFFIX = "IntentCreator";
     private static final String CREATE_METHOD_NAME = "create";
+    static final String CREATE_INTENT_METHOD_NAME = "createIntent";
+    private static final String SET_MASK_NAME = "setMask";
 
     private final String packageName;
     private final String simpleName;
@@ -37,56 +45,168 @@ public class ActivityIntentCreator implements Generatable {
     private final MethodSpec.Builder constructorBuilder;
     // Builder for the create() method
     private final MethodSpec.Builder createMethodBuilder;
-
-    public ActivityIntentCreator(TypeElement element, List<KeyElementPair> piriParamList) {
-        this.packageName = EnvironmentUtil.getProcessingEnvironment().getElementUtils().getPackageOf(element).toString();
-        this.simpleName = element.getSimpleName().toString();
-        this.className = ClassName.get(packageName,simpleName + CLASS_NAME_INTENT_CREATOR_SUFFIX);
+    // Statements counting the params that are set, to presize the extras Bundle
+    private final CodeBlock.Builder sizeBuilder = CodeBlock.builder();
+    // Statements putting the set params into the extras Bundle
+    private final CodeBlock.Builder extrasBuilder = CodeBlock.builder();
+    // Builder for the static createIntent() method that takes every param
+    private final MethodSpec.Builder createIntentMethodBuilder;
+    // Params are passed to a PackedArgs instead of being put into a Bundle one by one
+    private final boolean packedArgs;
+    // Arguments of the PackedArgs constructor in create() and createIntent()
+    private final List<CodeBlock> createArgs = new ArrayList<>();
+    private final List<CodeBlock> createIntentArgs = new ArrayList<>();
+    // Fields holding the params, which can't take the name of the intent field
+    private final NameAllocator fieldNames = new NameAllocator();
+    // Parameters and locals of the constructor and createIntent(), a local can't hide a param
+    private final NameAllocator localNames = new NameAllocator();
+    private final String intentName;
+    private final String extrasName;
+    private final String heavyExtrasName;
+    // Heavy params go into a Bundle of their own, see ActivityBinder.HEAVY_EXTRAS_KEY
+    private final boolean hasHeavyParams;
+    private int heavyCount;
+
+    public ActivityIntentCreator(ActivityModel activity) {
+        final List<KeyElementPair> piriParamList = activity.params;
+        this.packageName = activity.packageName;
+        this.simpleName = activity.getSimpleName();
+        this.className = getClassName(activity);
+        this.packedArgs = activity.packedArgs;
+
+        /* Params keep their names, unless a member or local of the intent creator takes it */
+        fieldNames.newName("intent");
+        for (KeyElementPair pair : piriParamList) {
+            fieldNames.newName(pair.name, pair);
+            localNames.newName(pair.name, pair);
+        }
+        final String contextName = localNames.newName("context");
+        final String startName = localNames.newName("piriStart");
+        this.intentName = localNames.newName("intent");
+        this.extrasName = localNames.newName("extras");
+        this.heavyExtrasName = localNames.newName("heavyExtras");
+        this.hasHeavyParams = ActivityBinder.hasHeavyParams(activity);
+        final ParameterSpec contextParam = ParameterSpec.builder(contextClass, contextName)
+                .addAnnotation(nonNullAnnotation)
+                .build();
 
         /* Begin creating typespec for the class */
         this.typeSpecBuilder = TypeSpec.classBuilder(className)
                   .addModifiers(Modifier.PUBLIC)
-                  .addMethod(getAddFlagsMethod());
+                  .addOriginatingElement(activity.element);
+        this.constructorBuilder = MethodSpec.constructorBuilder()
+                .addParameter(contextParam);
 
-        /* Create the intent field which exists in all intent creators */
-        final FieldSpec intentField = FieldSpec.builder(intentClass, "intent")
-                .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
-                .build();
+        /* Lists of items we will build our intent creator with */
+        final List<MethodSpec> builderMethods = new ArrayList<>();
+        final List<FieldSpec> fields = new ArrayList<>();
 
-        this.constructorBuilder = MethodSpec.constructorBuilder()
-                .addParameter(nonNullContextParam)
-                .addStatement("$L.$L = new $T($L, $T.class)",
-                        "this",
-                        "intent",
-                        intentClass,
-                        "context",
-                        element.asType());
+        if (activity.compact) {
+            /* The intent field and addFlags are inherited from PiriIntentCreator */
+            this.typeSpecBuilder.addModifiers(Modifier.FINAL)
+                    .superclass(ParameterizedTypeName.get(intentCreatorClass, className));
+            this.constructorBuilder.addStatement("super($L, $T.class)", contextName, activity.className);
+        } else {
+            /* Create the intent field which exists in all intent creators */
+            fields.add(FieldSpec.builder(intentClass, "intent")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .build());
+            this.typeSpecBuilder.addMethod(getAddFlagsMethod());
+            this.constructorBuilder.addStatement("$L.$L = new $T($L, $T.class)",
+                    "this",
+                    "intent",
+                    intentClass,
+                    contextName,
+                    activity.className);
+        }
 
         /* Start building the `create` method of the intent creator. We will
         add statements as we loop through the KeyElementPairs */
         this.createMethodBuilder = MethodSpec.methodBuilder(CREATE_METHOD_NAME)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(intentClass);
+        if (activity.compact) {
+            this.createMethodBuilder.addAnnotation(Override.class);
+        }
 
-        /* Lists of items we will build our intent creator with */
-        final List<MethodSpec> builderMethods = new ArrayList<>();
-        final List<FieldSpec> fields = new ArrayList<>();
-        fields.add(intentField);
+        /* The fast path doesn't need an instance of the intent creator */
+        this.createIntentMethodBuilder = MethodSpec.methodBuilder(CREATE_INTENT_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(contextParam)
+                .returns(intentClass);
+
+        /* Instrumented create methods measure everything up to the return */
+        if (activity.instrumented) {
+            this.createMethodBuilder
+                    .addStatement("final long piriStart = $T.begin($S)",
+                            instrumentationClass, activity.getTraceSection(CREATE_METHOD_NAME))
+                    .beginControlFlow("try");
+            this.createIntentMethodBuilder
+                    .addStatement("final long $L = $T.begin($S)", startName,
+                            instrumentationClass, activity.getTraceSection(CREATE_INTENT_METHOD_NAME));
+        }
+        this.createIntentMethodBuilder
+                .addStatement("$T $L = new $T($L, $T.class)",
+                        intentClass, intentName, intentClass, contextName, activity.className);
+        if (activity.instrumented) {
+            this.createIntentMethodBuilder.beginControlFlow("try");
+        }
 
         /* Process all piri params */
         if (!Utils.isNullOrEmpty(piriParamList)) {
             processPiriParams(piriParamList, builderMethods, fields);
+
+            if (packedArgs) {
+                /* The only extra is the Args, it has no Bundle of its own */
+                final ClassName argsClass = ActivityPackedArgs.getClassName(activity);
+                this.createMethodBuilder.addStatement("intent.putExtra($T.$L, new $T($>$>$L$<$<))",
+                        argsClass, ActivityPackedArgs.EXTRA_KEY_NAME, argsClass, joinArguments(createArgs));
+                this.createIntentMethodBuilder.addStatement("$L.putExtra($T.$L, new $T($>$>$L$<$<))", intentName,
+                        argsClass, ActivityPackedArgs.EXTRA_KEY_NAME, argsClass, joinArguments(createIntentArgs));
+            } else {
+                /* All params go into one Bundle which is presized to the set params, so it never grows */
+                this.createMethodBuilder.addCode(sizeBuilder.build())
+                        .addStatement("$T extras = new $T(size)", bundleClass, bundleClass);
+                if (hasHeavyParams) {
+                    this.createMethodBuilder.addStatement("$T heavyExtras = new $T($L)", bundleClass, bundleClass, heavyCount);
+                }
+                this.createMethodBuilder.addCode(extrasBuilder.build());
+                if (hasHeavyParams) {
+                    this.createMethodBuilder.addStatement("extras.putBundle($S, heavyExtras)", ActivityBinder.HEAVY_EXTRAS_KEY);
+                    this.createIntentMethodBuilder.addStatement("$L.putBundle($S, $L)",
+                            extrasName, ActivityBinder.HEAVY_EXTRAS_KEY, heavyExtrasName);
+                }
+                this.createMethodBuilder.addStatement("intent.putExtras(extras)");
+                this.createIntentMethodBuilder.addStatement("$L.putExtras($L)", intentName, extrasName);
+            }
         }
 
-        /* Add the final statement to the create method */
+        /* Add the final statement to the create methods */
         this.createMethodBuilder.addStatement("return $L", "intent");
+        this.createIntentMethodBuilder.addStatement("return $L", intentName);
+
+        if (activity.instrumented) {
+            this.createMethodBuilder.nextControlFlow("finally")
+                    .addStatement("$T.endCreate(piriStart, $S, intent)", instrumentationClass, activity.binaryName)
+                    .endControlFlow();
+            this.createIntentMethodBuilder.nextControlFlow("finally")
+                    .addStatement("$T.endCreate($L, $S, $L)",
+                            instrumentationClass, startName, activity.binaryName, intentName)
+                    .endControlFlow();
+        }
 
             /* Finally, build the intent creator class! */
         this.typeSpecBuilder
                 .addFields(fields)
                 .addMethod(this.constructorBuilder.build())
                 .addMethod(this.createMethodBuilder.build())
+                .addMethod(this.createIntentMethodBuilder.build())
                 .addMethods(builderMethods);
+        PrimitivePacking.addPackMethods(typeSpecBuilder, piriParamList);
+    }
+
+    static ClassName getClassName(ActivityModel activity) {
+        return ClassName.get(activity.packageName, activity.getSimpleName() + CLASS_NAME_INTENT_CREATOR_SUFFIX);
     }
 
     @Override
@@ -100,18 +220,39 @@ public class ActivityIntentCreator implements Generatable {
     }
 
     private void processPiriParams(List<KeyElementPair> piriParamList, List<MethodSpec> builderMethods, List<FieldSpec> fields) {
+        int optionalPrimitiveCount = 0;
+        int requiredCount = 0;
         for (KeyElementPair pair : piriParamList) {
+            if (isHeavy(pair)) {
+                heavyCount++;
+            } else if (pair.required) {
+                requiredCount++;
+            }
+        }
+        if (!packedArgs) {
+            /* The Bundle of the heavy params is one extra, a set heavy primitive only makes the count a bit high */
+            final int heavyExtrasCount = hasHeavyParams ? 1 : 0;
+            sizeBuilder.addStatement("int size = $L", requiredCount + heavyExtrasCount);
+            createIntentMethodBuilder.addStatement("$T $L = new $T($L)",
+                    bundleClass, extrasName, bundleClass, piriParamList.size() - heavyCount + heavyExtrasCount);
+            if (hasHeavyParams) {
+                createIntentMethodBuilder.addStatement("$T $L = new $T($L)",
+                        bundleClass, heavyExtrasName, bundleClass, heavyCount);
+            }
+        }
 
-            /* The name of the variable itself (int i; would be "i") */
-            final String elementName = pair.element.getSimpleName().toString();
+        for (KeyElementPair pair : piriParamList) {
 
-            /* Create the field that will hold a param for the intent creator */
+            /* Create the field that will hold a param for the intent creator, primitives stay unboxed */
             final FieldSpec.Builder fieldBuilder = FieldSpec
-                    .builder(ClassName.get(pair.element.asType()).box(), elementName, Modifier.PRIVATE);
+                    .builder(pair.type, fieldNames.get(pair), Modifier.PRIVATE);
 
             /* Process the param based on whether it's required */
             if (pair.required) {
                 processRequiredPiriParm(fieldBuilder, pair);
+            } else if (pair.primitive) {
+                /* A primitive can't be null, so whether it's set is tracked in a bit mask */
+                processOptionalPrimitivePiriParam(pair, optionalPrimitiveCount++, builderMethods, fields);
             } else {
                 /* Pass builder methods list along because a builder method is generated for optional params */
                 processOptionalPiriParam(fieldBuilder, pair, builderMethods);
@@ -119,53 +260,215 @@ public class ActivityIntentCreator implements Generatable {
 
             /* Add the processed field */
             fields.add(fieldBuilder.build());
+
+            /* The fast path takes every param, only null objects are left out */
+            addCreateIntentParam(pair, localNames.get(pair));
+        }
+
+        /* A set bit of a mask is a set optional primitive */
+        for (int i = 0; i < optionalPrimitiveCount; i += Integer.SIZE) {
+            sizeBuilder.addStatement("size += $T.bitCount($L)", Integer.class, fieldNames.get(getSetMaskName(i)));
+        }
+    }
+
+    private void addCreateIntentParam(KeyElementPair pair, String name) {
+        if (packedArgs) {
+            if (pair.required) {
+                createIntentMethodBuilder.addParameter(generateRequiredIntentParam(pair, name));
+                createIntentArgs.add(ActivityPackedArgs.getWireValue(pair, name));
+            } else {
+                createIntentMethodBuilder.addParameter(pair.type, name);
+                createIntentArgs.add(pair.primitive ? CodeBlock.of("$L", name) : getOptionalWireValue(pair, name));
+            }
+        } else if (pair.required) {
+            createIntentMethodBuilder.addParameter(generateRequiredIntentParam(pair, name));
+            createIntentMethodBuilder.addCode(getPutStatement(pair, isHeavy(pair) ? heavyExtrasName : extrasName, name));
+        } else if (pair.primitive) {
+            createIntentMethodBuilder.addParameter(pair.type, name);
+            createIntentMethodBuilder.addCode(getPutStatement(pair, isHeavy(pair) ? heavyExtrasName : extrasName, name));
+        } else {
+            createIntentMethodBuilder.addParameter(pair.type, name)
+                    .beginControlFlow("if ($L != null)", name);
+            createIntentMethodBuilder.addCode(getPutStatement(pair, isHeavy(pair) ? heavyExtrasName : extrasName, name));
+            createIntentMethodBuilder.endControlFlow();
         }
     }
 
     /* If the param is required, accept it in the constructor and don't create builder method */
     private void processRequiredPiriParm(FieldSpec.Builder fieldBuilder, KeyElementPair pair) {
-        String name = pair.element.getSimpleName().toString();
+        String name = fieldNames.get(pair);
         /* Accept and set the param in the constructor */
-        constructorBuilder.addParameter(generateRequiredIntentParam(pair.element.asType(), name));
-        constructorBuilder.addStatement("$L.$L = $L", "this", name, name);
+        constructorBuilder.addParameter(generateRequiredIntentParam(pair, localNames.get(pair)));
+        constructorBuilder.addStatement("$L.$L = $L", "this", name, localNames.get(pair));
 
         /* Set corresponding field to final since it gets set in constructor */
         fieldBuilder.addModifiers(Modifier.FINAL);
 
-        /* Always add required param to intent in create method */
-        createMethodBuilder.addStatement("intent.putExtra($S, $L)", pair.key, name);
+        /* Always add required param to intent in create method, fields are qualified so no local hides them */
+        if (packedArgs) {
+            createArgs.add(ActivityPackedArgs.getWireValue(pair, "this." + name));
+        } else {
+            addPutStatement(extrasBuilder, pair, "this." + name);
+        }
     }
 
     private void processOptionalPiriParam(FieldSpec.Builder fieldBuilder, KeyElementPair pair, List<MethodSpec> builderMethods) {
-        String name = pair.element.getSimpleName().toString();
+        String name = fieldNames.get(pair);
 
         /* Add a builder method for the optional param */
-        builderMethods.add(generateOptionalIntentParamBuilderMethod(pair.element.asType(), name));
+        builderMethods.add(generateOptionalIntentParamBuilderMethod(pair.type, pair.name, name));
 
         /* Set non-required field to null */
         fieldBuilder.initializer("$L", "null");
 
+        if (packedArgs) {
+            createArgs.add(getOptionalWireValue(pair, "this." + name));
+            return;
+        }
+
         /* Add a statement in the create method to add the param to the intent if not null */
-        createMethodBuilder.beginControlFlow("if ($L != null)", name)
-                .addStatement("intent.putExtra($S, $L)", pair.key, name)
-                .endControlFlow();
+        if (!isHeavy(pair)) {
+            sizeBuilder.beginControlFlow("if (this.$L != null)", name)
+                    .addStatement("size++")
+                    .endControlFlow();
+        }
+        extrasBuilder.beginControlFlow("if (this.$L != null)", name);
+        addPutStatement(extrasBuilder, pair, "this." + name);
+        extrasBuilder.endControlFlow();
+    }
+
+    private void processOptionalPrimitivePiriParam(KeyElementPair pair, int index, List<MethodSpec> builderMethods, List<FieldSpec> fields) {
+        final String name = fieldNames.get(pair);
+        final String maskTag = getSetMaskName(index);
+        final String bit = "0x" + Integer.toHexString(1 << (index % Integer.SIZE));
+
+        /* Every 32 optional primitives share one int mask, named after the params so it can't take a name of one */
+        if (index % Integer.SIZE == 0) {
+            fields.add(FieldSpec.builder(TypeName.INT, fieldNames.newName(maskTag, maskTag), Modifier.PRIVATE).build());
+        }
+        final String maskName = fieldNames.get(maskTag);
+
+        builderMethods.add(MethodSpec.methodBuilder(pair.name)
+                .addParameter(pair.type, pair.name)
+                .addStatement("this.$L = $L", name, pair.name)
+                .addStatement("$L |= $L", maskName, bit)
+                .addStatement("return this")
+                .returns(this.className)
+                .build());
+
+        if (packedArgs) {
+            /* An unset primitive binds to the default value of a missing extra */
+            createArgs.add(CodeBlock.of("($L & $L) != 0 ? this.$L : $L",
+                    maskName, bit, name, pair.bundleType.getDefaultValue()));
+            return;
+        }
+
+        extrasBuilder.beginControlFlow("if (($L & $L) != 0)", maskName, bit);
+        addPutStatement(extrasBuilder, pair, "this." + name);
+        extrasBuilder.endControlFlow();
+    }
+
+    private static String getSetMaskName(int index) {
+        final int maskIndex = index / Integer.SIZE;
+        return maskIndex == 0 ? SET_MASK_NAME : SET_MASK_NAME + maskIndex;
+    }
+
+    /* Null is passed on, unless the param is sent as something else */
+    private static CodeBlock getOptionalWireValue(KeyElementPair pair, String name) {
+        final CodeBlock wireValue = ActivityPackedArgs.getWireValue(pair, name);
+        if (wireValue.toString().equals(name)) {
+            return wireValue;
+        }
+        return CodeBlock.of("$L != null ? $L : $L", name, wireValue, ActivityPackedArgs.getUnsetWireValue(pair));
+    }
+
+    /* One constructor argument per line */
+    private static CodeBlock joinArguments(List<CodeBlock> arguments) {
+        final CodeBlock.Builder builder = CodeBlock.builder();
+        for (int i = 0; i < arguments.size(); i++) {
+            builder.add(i == 0 ? "$L" : ",\n$L", arguments.get(i));
+        }
+        return builder.build();
+    }
+
+    private void addPutStatement(CodeBlock.Builder builder, KeyElementPair pair, String name) {
+        builder.add(getPutStatement(pair, isHeavy(pair) ? "heavyExtras" : "extras", name));
+    }
+
+    private boolean isHeavy(KeyElementPair pair) {
+        return hasHeavyParams && pair.heavy;
     }
 
-    private MethodSpec generateOptionalIntentParamBuilderMethod(TypeMirror type, String name) {
+    private static CodeBlock getPutStatement(KeyElementPair pair, String extrasName, String name) {
+        return CodeBlock.of("$L.$L($S, $L);\n",
+                extrasName, pair.bundleType.getBundlePutter(), pair.key, getPutValue(pair, name));
+    }
+
+    /* The value a param is put into a Bundle as */
+    static CodeBlock getPutValue(KeyElementPair pair, String name) {
+        if (pair.inMemory) {
+            return CodeBlock.of("$T.put($L)", handoffClass, name);
+        } else if (pair.packed) {
+            return CodeBlock.of("$L($L)", PrimitivePacking.getPackMethodName(pair), name);
+        } else if (pair.parcelWrapper != null) {
+            return CodeBlock.of("new $T($L)", pair.parcelWrapper, name);
+        } else if (isArrayListView(pair)) {
+            /* Bundle only takes an ArrayList, any other List or Collection is copied into one */
+            return getArrayListCopy(pair, name);
+        }
+        return CodeBlock.of("$L", name);
+    }
+
+    /* e.g. users instanceof ArrayList ? (ArrayList<User>) users : new ArrayList<User>(users) */
+    static CodeBlock getArrayListCopy(KeyElementPair pair, String name) {
+        final ParameterizedTypeName listType = (ParameterizedTypeName) pair.type;
+        return CodeBlock.of("$L instanceof $T ? ($T) $L : new $T($L)",
+                name, ArrayList.class, getArrayListType(pair),
+                name, ParameterizedTypeName.get(ClassName.get(ArrayList.class), getListElement(listType)), name);
+    }
+
+    /* The ArrayList a List or Collection param is sent as, e.g. ArrayList<? extends User> */
+    static TypeName getArrayListType(KeyElementPair pair) {
+        return ParameterizedTypeName.get(ClassName.get(ArrayList.class), ((ParameterizedTypeName) pair.type).typeArguments.get(0));
+    }
+
+    static boolean isArrayListView(KeyElementPair pair) {
+        switch (pair.bundleType) {
+            case INTEGER_ARRAY_LIST:
+            case STRING_ARRAY_LIST:
+            case CHAR_SEQUENCE_ARRAY_LIST:
+            case PARCELABLE_ARRAY_LIST:
+                return pair.type instanceof ParameterizedTypeName
+                        && !((ParameterizedTypeName) pair.type).rawType.equals(ClassName.get(ArrayList.class));
+            default:
+                return false;
+        }
+    }
+
+    /* The element type of a List<? extends User> is User */
+    private static TypeName getListElement(ParameterizedTypeName listType) {
+        final TypeName element = listType.typeArguments.get(0);
+        return element instanceof WildcardTypeName ? ((WildcardTypeName) element).upperBounds.get(0) : element;
+    }
+
+    private MethodSpec generateOptionalIntentParamBuilderMethod(TypeName type, String name, String fieldName) {
         /* Create a builder method that will be added to the intent creator */
         return MethodSpec.methodBuilder(name)
-                .addParameter(ClassName.get(type), name)
-                .addStatement("this.$L = $L", name, name)
+                .addParameter(type, name)
+                .addStatement("this.$L = $L", fieldName, name)
                 .addStatement("return this")
                 .returns(this.className)
                 .build();
     }
 
-    private ParameterSpec generateRequiredIntentParam(TypeMirror type, String name) {
-        /* The required param is annotated NonNull */
-        return ParameterSpec.builder(ClassName.get(type).box(), name)
-                .addAnnotation(nonNullAnnotation)
-                .build();
+    private ParameterSpec generateRequiredIntentParam(KeyElementPair pair, String name) {
+        final ParameterSpec.Builder builder = ParameterSpec.builder(pair.type, name);
+
+        /* The required param is annotated NonNull, unless it's a primitive */
+        if (!pair.primitive) {
+            builder.addAnnotation(nonNullAnnotation);
+        }
+        return builder.build();
     }
 
     private MethodSpec getAddFlagsMethod() {
@@ -0,0 +1,58 @@
+package com.raqun;
+
+import com.squareup.javapoet.ClassName;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Plain data read from an Activity with PiriParams, which is everything its files are generated from.
+ * The element is only kept as the originating element of those files.
+ */
+
+final class ActivityModel {
+    private static final int MAX_TRACE_SECTION_LENGTH = 127;
+
+    final TypeElement element;
+    final String packageName;
+    final ClassName className;
+    /* Class.getName() of the activity, e.g. com.example.Outer$InnerActivity */
+    final String binaryName;
+    final boolean lazy;
+    /* Params are sent as one PackedArgs extra */
+    final boolean packedArgs;
+    /* Generated code reports to PiriInstrumentation */
+    final boolean instrumented;
+    /* Generated code extends and calls the shared classes of piri-runtime */
+    final boolean compact;
+    final List<KeyElementPair> params;
+    /* Valid paths of its PiriDeepLink */
+    final List<String> deepLinks;
+
+    ActivityModel(TypeElement element, String packageName, ClassName className, String binaryName, boolean lazy,
+                  boolean packedArgs, boolean instrumented, boolean compact, List<KeyElementPair> params,
+                  List<String> deepLinks) {
+        this.element = element;
+        this.packageName = packageName;
+        this.className = className;
+        this.binaryName = binaryName;
+        this.lazy = lazy;
+        this.packedArgs = packedArgs;
+        this.instrumented = instrumented;
+        this.compact = compact;
+        this.params = Collections.unmodifiableList(params);
+        this.deepLinks = Collections.unmodifiableList(deepLinks);
+    }
+
+    String getSimpleName() {
+        return className.simpleName();
+    }
+
+    /* Trace section names can't be longer than 127 characters */
+    String getTraceSection(String methodName) {
+        final String section = "Piri " + methodName + " " + getSimpleName();
+        return section.length() > MAX_TRACE_SECTION_LENGTH ? section.substring(0, MAX_TRACE_SECTION_LENGTH) : section;
+    }
+}
@@ -0,0 +1,323 @@
+package com.raqun;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+
+import static com.raqun.PiriProcessor.handoffClass;
+import static com.raqun.PiriProcessor.parcelableClass;
+
+/**
+ * Data class for the PackedArgs of an Activity, a Parcelable with every param in declaration order. It's
+ * sent as the only extra of the Intent, so the parcel holds no key per param and the binder reads them
+ * all in one pass. The parcel starts with a hash of the params: Args written by a build with other
+ * params are skipped instead of misread, and the binder reports them.
+ */
+
+public class ActivityPackedArgs implements Generatable {
+    private static final String CLASS_NAME_PACKED_ARGS_SUFFIX = "PackedArgs";
+    static final String EXTRA_KEY_NAME = "EXTRA_KEY";
+    static final String SCHEMA_HASH_NAME = "SCHEMA_HASH";
+    static final String SCHEMA_HASH_FIELD_NAME = "schemaHash";
+    private static final String CREATOR_NAME = "CREATOR";
+    /* The fields of the params are named after them, so no param can take one of these */
+    static final List<String> MEMBER_NAMES = Arrays.asList(EXTRA_KEY_NAME, SCHEMA_HASH_NAME, SCHEMA_HASH_FIELD_NAME, CREATOR_NAME);
+    /* An Intent only has the Args of its own activity, so all of them can use the same key */
+    static final String EXTRA_KEY = "com.raqun.piri.args";
+    /* Part of every schema hash, changes with the layout of the parcel */
+    private static final String SCHEMA_VERSION = "piri-packed-1";
+
+    private static final ClassName parcelClass = ClassName.get("android.os", "Parcel");
+    private static final ClassName creatorClass = ClassName.get("android.os", "Parcelable", "Creator");
+
+    private final String packageName;
+    private final ClassName className;
+    private final TypeSpec.Builder typeSpecBuilder;
+
+    /* Set when a param reads a value of an unknown class, which needs the class loader */
+    private boolean readsWithLoader;
+
+    public ActivityPackedArgs(ActivityModel activity) {
+        this.packageName = activity.packageName;
+        this.className = getClassName(activity);
+
+        final MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addStatement("this.$L = $L", SCHEMA_HASH_FIELD_NAME, SCHEMA_HASH_NAME);
+        /* The length of the params lets a reader skip them when the hash doesn't match */
+        final MethodSpec.Builder writeBuilder = MethodSpec.methodBuilder("writeToParcel")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(parcelClass, "dest")
+                .addParameter(TypeName.INT, "flags")
+                .addStatement("dest.writeInt(this.$L)", SCHEMA_HASH_FIELD_NAME)
+                .addStatement("final int lengthPosition = dest.dataPosition()")
+                .addStatement("dest.writeInt(0)");
+        final CodeBlock.Builder readStatements = CodeBlock.builder();
+        final StringBuilder schema = new StringBuilder(SCHEMA_VERSION);
+        boolean uncheckedCast = false;
+
+        this.typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(parcelableClass)
+                .addOriginatingElement(activity.element);
+
+        for (KeyElementPair pair : activity.params) {
+            final TypeName wireType = getWireType(pair);
+            typeSpecBuilder.addField(wireType, pair.name);
+            constructorBuilder.addParameter(wireType, pair.name)
+                    .addStatement("this.$L = $L", pair.name, pair.name);
+            uncheckedCast |= addParam(pair, wireType, writeBuilder, readStatements);
+            schema.append(';').append(pair.key).append(':').append(pair.bundleType).append(':').append(wireType);
+        }
+
+        writeBuilder.addStatement("final int end = dest.dataPosition()")
+                .addStatement("dest.setDataPosition(lengthPosition)")
+                .addStatement("dest.writeInt(end - lengthPosition - 4)")
+                .addStatement("dest.setDataPosition(end)");
+
+        final MethodSpec.Builder readBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(parcelClass, "in")
+                .addStatement("this.$L = in.readInt()", SCHEMA_HASH_FIELD_NAME)
+                .addStatement("final int length = in.readInt()")
+                .beginControlFlow("if (this.$L != $L)", SCHEMA_HASH_FIELD_NAME, SCHEMA_HASH_NAME)
+                .addStatement("in.setDataPosition(in.dataPosition() + length)")
+                .addStatement("return")
+                .endControlFlow();
+        /* Only look up the class loader if a param reads a value of an unknown class */
+        if (readsWithLoader) {
+            readBuilder.addStatement("final $T loader = $T.class.getClassLoader()", ClassLoader.class, className);
+        }
+        readBuilder.addCode(readStatements.build());
+        if (uncheckedCast) {
+            readBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+
+        final TypeName creatorType = ParameterizedTypeName.get(creatorClass, className);
+        final TypeSpec creator = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(creatorType)
+                .addMethod(MethodSpec.methodBuilder("createFromParcel")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(parcelClass, "in")
+                        .returns(className)
+                        .addStatement("return new $T(in)", className)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("newArray")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(TypeName.INT, "size")
+                        .returns(ArrayTypeName.of(className))
+                        .addStatement("return new $T[size]", className)
+                        .build())
+                .build();
+
+        typeSpecBuilder
+                .addField(FieldSpec.builder(String.class, EXTRA_KEY_NAME, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$S", EXTRA_KEY)
+                        .build())
+                .addField(FieldSpec.builder(TypeName.INT, SCHEMA_HASH_NAME, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", schema.toString().hashCode())
+                        .build())
+                .addField(FieldSpec.builder(creatorType, CREATOR_NAME, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", creator)
+                        .build())
+                .addField(TypeName.INT, SCHEMA_HASH_FIELD_NAME, Modifier.FINAL)
+                .addMethod(constructorBuilder.build())
+                .addMethod(readBuilder.build())
+                .addMethod(MethodSpec.methodBuilder("describeContents")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.INT)
+                        .addStatement("return 0")
+                        .build())
+                .addMethod(writeBuilder.build());
+    }
+
+    /* What a param is held as: the token of an IN_MEMORY param, the array of a packed one */
+    static TypeName getWireType(KeyElementPair pair) {
+        if (pair.inMemory) {
+            return TypeName.LONG;
+        } else if (pair.packed) {
+            return PrimitivePacking.getPackedType(pair);
+        } else if (ActivityIntentCreator.isArrayListView(pair)) {
+            return ActivityIntentCreator.getArrayListType(pair);
+        }
+        return pair.type;
+    }
+
+    /* The wire value of a set param, which the IntentCreator passes to the constructor */
+    static CodeBlock getWireValue(KeyElementPair pair, String name) {
+        if (pair.inMemory) {
+            return CodeBlock.of("$T.put($L)", handoffClass, name);
+        } else if (pair.packed) {
+            return CodeBlock.of("$L($L)", PrimitivePacking.getPackMethodName(pair), name);
+        } else if (ActivityIntentCreator.isArrayListView(pair)) {
+            return ActivityIntentCreator.getArrayListCopy(pair, name);
+        }
+        return CodeBlock.of("$L", name);
+    }
+
+    /* The wire value of a param that isn't set, which binds like a missing extra */
+    static CodeBlock getUnsetWireValue(KeyElementPair pair) {
+        if (pair.inMemory) {
+            return CodeBlock.of("$T.NO_TOKEN", handoffClass);
+        } else if (pair.primitive) {
+            return CodeBlock.of("$L", pair.bundleType.getDefaultValue());
+        }
+        return CodeBlock.of("null");
+    }
+
+    /* Turns the wire value of the Args back into the param, the inverse of getWireValue() */
+    static CodeBlock getParamValue(KeyElementPair pair, String wireValue) {
+        if (pair.inMemory) {
+            /* A stale token resolves to null */
+            return CodeBlock.of("$T.get($L)", handoffClass, wireValue);
+        } else if (pair.packed) {
+            return CodeBlock.of("$L($L)", PrimitivePacking.getUnpackMethodName(pair), wireValue);
+        }
+        return CodeBlock.of("$L", wireValue);
+    }
+
+    /* Adds the write statement and the read statements of the param, returns whether the read is an unchecked cast */
+    private boolean addParam(KeyElementPair pair, TypeName wireType,
+                             MethodSpec.Builder writeBuilder, CodeBlock.Builder readStatements) {
+        final String name = pair.name;
+        if (pair.parcelWrapper != null) {
+            /* Writes the model without wrapping it */
+            writeBuilder.addStatement("$T.$L(dest, this.$L, flags)", pair.parcelWrapper, ParcelableWrapper.WRITE_METHOD_NAME, name);
+            readStatements.addStatement("this.$L = $T.$L(in)", name, pair.parcelWrapper, ParcelableWrapper.READ_METHOD_NAME);
+            return false;
+        }
+
+        if (wireType.isPrimitive()) {
+            final BundleType bundleType = pair.inMemory ? BundleType.LONG : pair.bundleType;
+            addPrimitive(bundleType, name, writeBuilder, readStatements);
+            return false;
+        }
+
+        switch (pair.bundleType) {
+            case STRING:
+                writeBuilder.addStatement("dest.writeString(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readString()", name);
+                return false;
+            case BUNDLE:
+                writeBuilder.addStatement("dest.writeBundle(this.$L)", name);
+                addReadWithLoader(readStatements, "this.$L = in.readBundle(loader)", name);
+                return false;
+            case PARCELABLE:
+                writeBuilder.addStatement("dest.writeParcelable(this.$L, flags)", name);
+                addReadWithLoader(readStatements, "this.$L = ($T) in.readParcelable(loader)", name, wireType);
+                return false;
+            case SERIALIZABLE:
+                writeBuilder.addStatement("dest.writeSerializable(this.$L)", name);
+                readStatements.addStatement("this.$L = ($T) in.readSerializable()", name, wireType);
+                return wireType instanceof ParameterizedTypeName;
+            case BOOLEAN_ARRAY:
+            case BYTE_ARRAY:
+            case CHAR_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case STRING_ARRAY:
+                /* Parcel has typed methods for these, e.g. writeIntArray and createIntArray */
+                final String arrayName = ParcelableWrapper.getParcelArrayName(pair.bundleType);
+                writeBuilder.addStatement("dest.write$L(this.$L)", arrayName, name);
+                readStatements.addStatement("this.$L = in.create$L()", name, arrayName);
+                return false;
+            case STRING_ARRAY_LIST:
+                writeBuilder.addStatement("dest.writeStringList(this.$L)", name);
+                readStatements.addStatement("this.$L = in.createStringArrayList()", name);
+                return false;
+            case PARCELABLE_ARRAY:
+                writeBuilder.addStatement("dest.writeParcelableArray(this.$L, flags)", name);
+                if (wireType.equals(ArrayTypeName.of(parcelableClass))) {
+                    addReadWithLoader(readStatements, "this.$L = in.readParcelableArray(loader)", name);
+                } else {
+                    /* Parcelable[] can't be cast to a sub type array, copy it into one */
+                    final String arrayLocalName = name + "Array";
+                    addReadWithLoader(readStatements, "final $T[] $L = in.readParcelableArray(loader)",
+                            parcelableClass, arrayLocalName);
+                    readStatements.addStatement("this.$L = $L != null ? $T.copyOf($L, $L.length, $T.class) : null",
+                            name, arrayLocalName, Arrays.class, arrayLocalName, arrayLocalName, wireType);
+                }
+                return false;
+            default:
+                /* Boxed primitives may be null, writeValue keeps that. It also takes everything without a typed method */
+                writeBuilder.addStatement("dest.writeValue(this.$L)", name);
+                addReadWithLoader(readStatements, "this.$L = ($T) in.readValue(loader)", name, wireType);
+                return wireType instanceof ParameterizedTypeName;
+        }
+    }
+
+    private void addReadWithLoader(CodeBlock.Builder readStatements, String format, Object... args) {
+        readsWithLoader = true;
+        readStatements.addStatement(format, args);
+    }
+
+    private static void addPrimitive(BundleType bundleType, String name,
+                                     MethodSpec.Builder writeBuilder, CodeBlock.Builder readStatements) {
+        switch (bundleType) {
+            case BOOLEAN:
+                writeBuilder.addStatement("dest.writeInt(this.$L ? 1 : 0)", name);
+                readStatements.addStatement("this.$L = in.readInt() != 0", name);
+                break;
+            case BYTE:
+                writeBuilder.addStatement("dest.writeByte(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readByte()", name);
+                break;
+            case CHAR:
+                writeBuilder.addStatement("dest.writeInt(this.$L)", name);
+                readStatements.addStatement("this.$L = (char) in.readInt()", name);
+                break;
+            case SHORT:
+                writeBuilder.addStatement("dest.writeInt(this.$L)", name);
+                readStatements.addStatement("this.$L = (short) in.readInt()", name);
+                break;
+            case INT:
+                writeBuilder.addStatement("dest.writeInt(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readInt()", name);
+                break;
+            case LONG:
+                writeBuilder.addStatement("dest.writeLong(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readLong()", name);
+                break;
+            case FLOAT:
+                writeBuilder.addStatement("dest.writeFloat(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readFloat()", name);
+                break;
+            default:
+                writeBuilder.addStatement("dest.writeDouble(this.$L)", name);
+                readStatements.addStatement("this.$L = in.readDouble()", name);
+                break;
+        }
+    }
+
+    static ClassName getClassName(ActivityModel activity) {
+        return ClassName.get(activity.packageName, activity.getSimpleName() + CLASS_NAME_PACKED_ARGS_SUFFIX);
+    }
+
+    @Override
+    public String getPackage() {
+        return packageName;
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        return typeSpecBuilder.build();
+    }
+}
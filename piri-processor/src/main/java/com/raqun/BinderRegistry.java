@@ -0,0 +1,139 @@
+package com.raqun;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+
+import static com.raqun.PiriProcessor.nonNullAnnotation;
+
+/**
+ * Data class for the registry of every activity Piri binds, whatever its package. Its bind(Activity) is
+ * the entry point of base activities, which don't know the package of the activity they bind. The activities
+ * and the sub classes compiled with them are found with one switch on the class name. Only a sub class
+ * compiled elsewhere walks up its super classes, and an activity without a binder is an error.
+ *
+ * With the piri.prewarm option its prewarm(Executor, Class...) calls the prewarm of the Piri class of
+ * every package, so an app has one entry point to warm all of its activities.
+ */
+
+public class BinderRegistry implements Generatable {
+    static final ClassName activityClass = ClassName.get("android.app", "Activity");
+    private static final TypeName anyClassType =
+            ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+
+    private final ClassName className;
+    private final Set<TypeElement> originatingElements = new LinkedHashSet<>();
+    /* Class.getName() of the activities bound like the key, the activity itself first */
+    private final Map<ClassName, List<String>> boundNames = new LinkedHashMap<>();
+    /* Packages whose Piri class has a prewarm method */
+    private final Set<String> prewarmedPackages = new LinkedHashSet<>();
+
+    public BinderRegistry(ClassName className) {
+        this.className = className;
+    }
+
+    public void addActivity(ActivityModel activity) {
+        originatingElements.add(activity.element);
+        final List<String> names = new ArrayList<>();
+        names.add(activity.binaryName);
+        boundNames.put(activity.className, names);
+    }
+
+    public boolean isBound(ClassName activityName) {
+        return boundNames.containsKey(activityName);
+    }
+
+    /* A sub class without PiriParams of its own is bound by the binder of the given activity */
+    public void addSubclass(TypeElement subclass, String binaryName, ClassName boundActivity) {
+        originatingElements.add(subclass);
+        boundNames.get(boundActivity).add(binaryName);
+    }
+
+    public void addPrewarmedActivity(ActivityModel activity) {
+        originatingElements.add(activity.element);
+        prewarmedPackages.add(activity.packageName);
+    }
+
+    @Override
+    public String getPackage() {
+        return className.packageName();
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        final TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+        if (!boundNames.isEmpty()) {
+            typeSpecBuilder.addMethod(createBindMethod());
+        }
+        if (!prewarmedPackages.isEmpty()) {
+            typeSpecBuilder.addMethod(createPrewarmMethod());
+        }
+        for (TypeElement element : originatingElements) {
+            typeSpecBuilder.addOriginatingElement(element);
+        }
+        return typeSpecBuilder.build();
+    }
+
+    private MethodSpec createBindMethod() {
+        final CodeBlock.Builder cases = CodeBlock.builder();
+        for (Map.Entry<ClassName, List<String>> entry : boundNames.entrySet()) {
+            final ClassName activityName = entry.getKey();
+            for (String name : entry.getValue()) {
+                cases.add("case $S:\n", name);
+            }
+            cases.indent()
+                    .addStatement("$T.$L(($T) activity)", PackageBinder.getClassName(activityName.packageName()),
+                            ActivityBinder.BIND_METHOD_NAME, activityName)
+                    .addStatement("return")
+                    .unindent();
+        }
+
+        return MethodSpec.methodBuilder(ActivityBinder.BIND_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(activityClass, "activity")
+                        .addAnnotation(nonNullAnnotation)
+                        .build())
+                .beginControlFlow("for ($T type = activity.getClass(); type != $T.class; type = type.getSuperclass())",
+                        anyClassType, activityClass)
+                .beginControlFlow("switch (type.getName())")
+                .addCode(cases.build())
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("throw new $T(activity.getClass().getName() + $S)", IllegalArgumentException.class,
+                        " has no PiriParams bound by " + className.simpleName())
+                .build();
+    }
+
+    /* Every package warms its activities in a task of its own, the ones passed as first before its others */
+    private MethodSpec createPrewarmMethod() {
+        final MethodSpec.Builder prewarmBuilder = MethodSpec.methodBuilder(PackageBinder.PREWARM_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Executor.class, "executor")
+                .addParameter(ArrayTypeName.of(anyClassType), "first")
+                .varargs();
+        for (String packageName : prewarmedPackages) {
+            prewarmBuilder.addStatement("$T.$L(executor, first)", PackageBinder.getClassName(packageName),
+                    PackageBinder.PREWARM_METHOD_NAME);
+        }
+        return prewarmBuilder.build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.raqun;
+
+/**
+ * Every type an Intent or a Bundle can carry with a typed accessor. The accessor name is shared by
+ * both, e.g. Intent.getIntExtra / Bundle.getInt for INT.
+ */
+
+enum BundleType {
+    BOOLEAN("Boolean", "false"),
+    BYTE("Byte", "(byte) 0"),
+    CHAR("Char", "(char) 0"),
+    SHORT("Short", "(short) 0"),
+    INT("Int", "-1"),
+    LONG("Long", "-1L"),
+    FLOAT("Float", "0f"),
+    DOUBLE("Double", "0d"),
+
+    STRING("String"),
+    CHAR_SEQUENCE("CharSequence"),
+    BUNDLE("Bundle"),
+    PARCELABLE("Parcelable"),
+    SERIALIZABLE("Serializable"),
+
+    BOOLEAN_ARRAY("BooleanArray"),
+    BYTE_ARRAY("ByteArray"),
+    CHAR_ARRAY("CharArray"),
+    SHORT_ARRAY("ShortArray"),
+    INT_ARRAY("IntArray"),
+    LONG_ARRAY("LongArray"),
+    FLOAT_ARRAY("FloatArray"),
+    DOUBLE_ARRAY("DoubleArray"),
+    STRING_ARRAY("StringArray"),
+    CHAR_SEQUENCE_ARRAY("CharSequenceArray"),
+    PARCELABLE_ARRAY("ParcelableArray"),
+
+    INTEGER_ARRAY_LIST("IntegerArrayList"),
+    STRING_ARRAY_LIST("StringArrayList"),
+    CHAR_SEQUENCE_ARRAY_LIST("CharSequenceArrayList"),
+    PARCELABLE_ARRAY_LIST("ParcelableArrayList");
+
+    private final String accessorName;
+    /* Value returned by the Intent when a primitive extra is missing, null for object types */
+    private final String defaultValue;
+
+    BundleType(String accessorName) {
+        this(accessorName, null);
+    }
+
+    BundleType(String accessorName, String defaultValue) {
+        this.accessorName = accessorName;
+        this.defaultValue = defaultValue;
+    }
+
+    boolean isPrimitive() {
+        return defaultValue != null;
+    }
+
+    String getDefaultValue() {
+        return defaultValue;
+    }
+
+    String getIntentGetter() {
+        return "get" + accessorName + "Extra";
+    }
+
+    String getBundleGetter() {
+        return "get" + accessorName;
+    }
+
+    /* Unlike Intent.putExtra, every Bundle put method has its own name */
+    String getBundlePutter() {
+        return "put" + accessorName;
+    }
+}
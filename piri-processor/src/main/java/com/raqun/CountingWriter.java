@@ -0,0 +1,49 @@
+package com.raqun;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Counts the UTF-8 bytes of what's written. Used for the sizes in the piri.stats report, and by the
+ * benchmarks to measure the generated sources.
+ */
+
+public class CountingWriter extends FilterWriter {
+    private long bytes;
+
+    public CountingWriter(Writer writer) {
+        super(writer);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        super.write(c);
+        bytes += utf8Length((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        super.write(chars, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            bytes += utf8Length(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        super.write(string, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            bytes += utf8Length(string.charAt(i));
+        }
+    }
+
+    /* A surrogate pair takes four bytes, two for each half */
+    private static int utf8Length(char c) {
+        return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+    }
+}
@@ -0,0 +1,472 @@
+package com.raqun;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Modifier;
+
+import static com.raqun.PiriProcessor.contextClass;
+import static com.raqun.PiriProcessor.intentClass;
+import static com.raqun.PiriProcessor.nonNullAnnotation;
+import static com.raqun.PiriProcessor.nonNullContextParam;
+
+/**
+ * Data class for the deep link router. The paths of every PiriDeepLink are compiled into a trie with
+ * one state per path prefix, so a URI is matched with one string switch per path segment, without
+ * regular expressions, reflection or backtracking. The matched segments and query parameters are
+ * converted to the types of the params and passed to createIntent() of the IntentCreator.
+ */
+
+public class DeepLinkRouter implements Generatable {
+    static final ClassName uriClass = ClassName.get("android.net", "Uri");
+    private static final String ROUTE_METHOD_NAME = "route";
+    private static final String MATCH_METHOD_NAME = "match";
+    private static final String NO_MATCH = "NO_MATCH";
+
+    /* Types a path segment or query parameter can be converted to */
+    private static final Set<BundleType> CONVERTIBLE_TYPES = new HashSet<>(Arrays.asList(
+            BundleType.STRING, BundleType.CHAR_SEQUENCE, BundleType.BOOLEAN, BundleType.BYTE, BundleType.SHORT,
+            BundleType.INT, BundleType.LONG, BundleType.FLOAT, BundleType.DOUBLE));
+
+    private final ClassName className;
+    private final List<Route> routes = new ArrayList<>();
+    /* Paths which only differ in the names of their placeholders match the same URIs */
+    private final Map<String, Route> routesByShape = new HashMap<>();
+
+    public DeepLinkRouter(ClassName className) {
+        this.className = className;
+    }
+
+    /* Returns the path of the route which already matches the same URIs, null when the path was added */
+    public String addRoute(ActivityModel activity, String path) {
+        final Route route = new Route(routes.size(), activity, path, getSegments(path));
+        final Route existing = routesByShape.get(route.getShape());
+        if (existing != null) {
+            return existing.path + " of " + existing.activity.className;
+        }
+        routes.add(route);
+        routesByShape.put(route.getShape(), route);
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    /* Returns why the path can't be routed to the activity, null when it can */
+    static String validate(String path, List<KeyElementPair> params) {
+        final Map<String, KeyElementPair> paramsByKey = new HashMap<>();
+        for (KeyElementPair pair : params) {
+            paramsByKey.put(pair.key, pair);
+        }
+
+        final Set<String> placeholders = new HashSet<>();
+        for (String segment : getSegments(path)) {
+            if (segment.isEmpty()) {
+                return "PiriDeepLink " + path + " has an empty segment!";
+            }
+            final String key = getPlaceholderKey(segment);
+            if (key == null) {
+                if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0) {
+                    return "PiriDeepLink " + path + " can only have placeholders as whole segments!";
+                }
+                continue;
+            }
+            final KeyElementPair pair = paramsByKey.get(key);
+            if (pair == null) {
+                return "PiriDeepLink " + path + " has no PiriParam with the key " + key + "!";
+            }
+            if (!isConvertible(pair)) {
+                return "PiriDeepLink " + path + " can't convert a segment to " + pair.type + " " + key + "!";
+            }
+            if (!placeholders.add(key)) {
+                return "PiriDeepLink " + path + " has the placeholder " + key + " twice!";
+            }
+        }
+
+        for (KeyElementPair pair : params) {
+            if (pair.required && !placeholders.contains(pair.key) && !isConvertible(pair)) {
+                return "PiriDeepLink " + path + " can't read the required PiriParam " + pair.key + "!";
+            }
+        }
+        return null;
+    }
+
+    private static List<String> getSegments(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return start == end ? Collections.<String>emptyList() : Arrays.asList(path.substring(start, end).split("/", -1));
+    }
+
+    /* Returns the key of a {key} segment, null for a literal segment */
+    private static String getPlaceholderKey(String segment) {
+        if (segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}') {
+            return segment.substring(1, segment.length() - 1);
+        }
+        return null;
+    }
+
+    private static boolean isConvertible(KeyElementPair pair) {
+        return !pair.inMemory && pair.parcelWrapper == null && CONVERTIBLE_TYPES.contains(pair.bundleType);
+    }
+
+    @Override
+    public String getPackage() {
+        return className.packageName();
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        final List<State> states = createStates();
+        final TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(TypeName.INT, NO_MATCH,
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("-1").build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(createRouteMethod())
+                .addMethod(createMatchMethod(states));
+        for (Route route : routes) {
+            typeSpecBuilder.addMethod(createRouteMethod(route));
+        }
+
+        final Set<ActivityModel> activities = new HashSet<>();
+        for (Route route : routes) {
+            if (activities.add(route.activity)) {
+                typeSpecBuilder.addOriginatingElement(route.activity.element);
+            }
+        }
+        return typeSpecBuilder.build();
+    }
+
+    private MethodSpec createRouteMethod() {
+        final CodeBlock.Builder cases = CodeBlock.builder();
+        for (Route route : routes) {
+            cases.add("case $L:\n", route.index)
+                    .indent()
+                    .addStatement("return $L(context, uri, segments)", route.getMethodName())
+                    .unindent();
+        }
+        return MethodSpec.methodBuilder(ROUTE_METHOD_NAME)
+                .addJavadoc("Returns the Intent of the activity with a PiriDeepLink matching the path of the uri,\n"
+                        + "null when there is none or a param can't be converted.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(intentClass)
+                .addParameter(nonNullContextParam)
+                .addParameter(ParameterSpec.builder(uriClass, "uri").addAnnotation(nonNullAnnotation).build())
+                .addStatement("final $T segments = uri.getPathSegments()", getSegmentsType())
+                .beginControlFlow("switch ($L(segments))", MATCH_METHOD_NAME)
+                .addCode(cases.build())
+                .addCode("default:\n")
+                .addStatement("$>return null$<")
+                .endControlFlow()
+                .build();
+    }
+
+    /* A loop over the segments with a switch over the states, every state has a switch over its literals */
+    private static MethodSpec createMatchMethod(List<State> states) {
+        final CodeBlock.Builder transitions = CodeBlock.builder();
+        final CodeBlock.Builder accepts = CodeBlock.builder();
+        for (State state : states) {
+            if (state.accepted != null) {
+                accepts.add("case $L:\n", state.id)
+                        .indent()
+                        .addStatement("return $L", state.accepted.index)
+                        .unindent();
+            }
+            if (state.literals.isEmpty() && state.other == null) {
+                continue;
+            }
+
+            transitions.add("case $L:\n", state.id).indent();
+            if (state.literals.isEmpty()) {
+                transitions.addStatement("state = $L", state.other.id);
+            } else {
+                transitions.beginControlFlow("switch (segment)");
+                for (Map.Entry<String, State> literal : state.literals.entrySet()) {
+                    transitions.add("case $S:\n", literal.getKey())
+                            .indent()
+                            .addStatement("state = $L", literal.getValue().id)
+                            .addStatement("break")
+                            .unindent();
+                }
+                transitions.add("default:\n").indent();
+                if (state.other != null) {
+                    transitions.addStatement("state = $L", state.other.id)
+                            .addStatement("break");
+                } else {
+                    transitions.addStatement("return $L", NO_MATCH);
+                }
+                transitions.unindent().endControlFlow();
+            }
+            transitions.addStatement("break").unindent();
+        }
+
+        return MethodSpec.methodBuilder(MATCH_METHOD_NAME)
+                .addModifiers(Modifier.STATIC)
+                .returns(TypeName.INT)
+                .addParameter(getSegmentsType(), "segments")
+                .addStatement("int state = 0")
+                .beginControlFlow("for (int i = 0, count = segments.size(); i < count; i++)")
+                .addStatement("final $T segment = segments.get(i)", String.class)
+                .beginControlFlow("switch (state)")
+                .addCode(transitions.build())
+                .addCode("default:\n")
+                .addStatement("$>return $L$<", NO_MATCH)
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("switch (state)")
+                .addCode(accepts.build())
+                .addCode("default:\n")
+                .addStatement("$>return $L$<", NO_MATCH)
+                .endControlFlow()
+                .build();
+    }
+
+    private static MethodSpec createRouteMethod(Route route) {
+        /* Locals must not hide the parameters of the method */
+        final NameAllocator names = new NameAllocator();
+        names.newName("context");
+        names.newName("uri");
+        names.newName("segments");
+
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder(route.getMethodName())
+                .addJavadoc("$L\n", route.path)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(intentClass)
+                .addParameter(contextClass, "context")
+                .addParameter(uriClass, "uri")
+                .addParameter(getSegmentsType(), "segments");
+
+        final CodeBlock.Builder arguments = CodeBlock.builder().add("context");
+        boolean parses = false;
+        for (KeyElementPair pair : route.activity.params) {
+            final CodeBlock argument;
+            final int position = route.getPosition(pair.key);
+            if (position >= 0) {
+                argument = convert(pair, CodeBlock.of("segments.get($L)", position));
+            } else if (isConvertible(pair)) {
+                final String valueName = names.newName(pair.name + "Value");
+                builder.addStatement("final $T $L = uri.getQueryParameter($S)", String.class, valueName, pair.key);
+                if (pair.required) {
+                    builder.beginControlFlow("if ($L == null)", valueName)
+                            .addStatement("return null")
+                            .endControlFlow();
+                    argument = convert(pair, CodeBlock.of("$L", valueName));
+                } else if (isText(pair)) {
+                    argument = CodeBlock.of("$L", valueName);
+                } else {
+                    argument = CodeBlock.of("$L != null ? $L : $L", valueName,
+                            convert(pair, CodeBlock.of("$L", valueName)), getMissingValue(pair));
+                }
+            } else {
+                argument = CodeBlock.of("$L", getMissingValue(pair));
+            }
+            parses |= (position >= 0 || isConvertible(pair)) && !isText(pair);
+            arguments.add(",\n$L", argument);
+        }
+
+        final ClassName creatorClassName = ActivityIntentCreator.getClassName(route.activity);
+        if (!parses) {
+            return builder.addStatement("return $T.$L($>$>$L$<$<)",
+                    creatorClassName, ActivityIntentCreator.CREATE_INTENT_METHOD_NAME, arguments.build()).build();
+        }
+        /* A segment which isn't a number doesn't match */
+        return builder.beginControlFlow("try")
+                .addStatement("return $T.$L($>$>$L$<$<)",
+                        creatorClassName, ActivityIntentCreator.CREATE_INTENT_METHOD_NAME, arguments.build())
+                .nextControlFlow("catch ($T e)", NumberFormatException.class)
+                .addStatement("return null")
+                .endControlFlow()
+                .build();
+    }
+
+    private static boolean isText(KeyElementPair pair) {
+        return pair.bundleType == BundleType.STRING || pair.bundleType == BundleType.CHAR_SEQUENCE;
+    }
+
+    private static CodeBlock convert(KeyElementPair pair, CodeBlock value) {
+        if (isText(pair)) {
+            return value;
+        }
+        if (pair.primitive) {
+            /* e.g. Integer.parseInt for int */
+            final String primitiveName = pair.type.toString();
+            return CodeBlock.of("$T.parse$L$L($L)", pair.type.box(),
+                    Character.toUpperCase(primitiveName.charAt(0)), primitiveName.substring(1), value);
+        }
+        return CodeBlock.of("$T.valueOf($L)", pair.type, value);
+    }
+
+    /* What an absent optional param is created with, the same as the binder reads when the extra is missing */
+    private static String getMissingValue(KeyElementPair pair) {
+        return pair.primitive ? pair.bundleType.getDefaultValue() : "null";
+    }
+
+    private static TypeName getSegmentsType() {
+        return ParameterizedTypeName.get(List.class, String.class);
+    }
+
+    /*
+     * Every state is the set of routes whose first depth segments can match the segments read so far, a
+     * literal segment matches itself and a placeholder matches anything. As each state knows every route
+     * it can still end in, no state has to be revisited and matching never backtracks.
+     */
+    private List<State> createStates() {
+        final List<State> states = new ArrayList<>();
+        final Map<String, State> statesByRoutes = new HashMap<>();
+        final Queue<State> queue = new ArrayDeque<>();
+        queue.add(getState(0, routes, states, statesByRoutes));
+
+        while (!queue.isEmpty()) {
+            final State state = queue.remove();
+            final Map<String, List<Route>> literals = new TreeMap<>();
+            final List<Route> placeholders = new ArrayList<>();
+            for (Route route : state.routes) {
+                if (route.segments.size() == state.depth) {
+                    if (state.accepted == null || route.compareSpecificity(state.accepted) < 0) {
+                        state.accepted = route;
+                    }
+                    continue;
+                }
+                final String segment = route.segments.get(state.depth);
+                if (getPlaceholderKey(segment) != null) {
+                    placeholders.add(route);
+                } else if (!literals.containsKey(segment)) {
+                    literals.put(segment, new ArrayList<Route>());
+                }
+            }
+
+            /* A literal also leads to every route with a placeholder at that depth */
+            for (Route route : state.routes) {
+                if (route.segments.size() > state.depth) {
+                    final String segment = route.segments.get(state.depth);
+                    for (Map.Entry<String, List<Route>> literal : literals.entrySet()) {
+                        if (segment.equals(literal.getKey()) || getPlaceholderKey(segment) != null) {
+                            literal.getValue().add(route);
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<String, List<Route>> literal : literals.entrySet()) {
+                final int count = states.size();
+                final State next = getState(state.depth + 1, literal.getValue(), states, statesByRoutes);
+                state.literals.put(literal.getKey(), next);
+                if (states.size() > count) {
+                    queue.add(next);
+                }
+            }
+            if (!placeholders.isEmpty()) {
+                final int count = states.size();
+                state.other = getState(state.depth + 1, placeholders, states, statesByRoutes);
+                if (states.size() > count) {
+                    queue.add(state.other);
+                }
+            }
+        }
+        return states;
+    }
+
+    private static State getState(int depth, List<Route> routes, List<State> states, Map<String, State> statesByRoutes) {
+        final StringBuilder key = new StringBuilder().append(depth);
+        for (Route route : routes) {
+            key.append(',').append(route.index);
+        }
+        State state = statesByRoutes.get(key.toString());
+        if (state == null) {
+            state = new State(states.size(), depth, routes);
+            states.add(state);
+            statesByRoutes.put(key.toString(), state);
+        }
+        return state;
+    }
+
+    private static final class Route {
+        final int index;
+        final ActivityModel activity;
+        final String path;
+        final List<String> segments;
+
+        Route(int index, ActivityModel activity, String path, List<String> segments) {
+            this.index = index;
+            this.activity = activity;
+            this.path = path;
+            this.segments = segments;
+        }
+
+        String getMethodName() {
+            return ROUTE_METHOD_NAME + index;
+        }
+
+        /* Position of the placeholder with the key, -1 when the param isn't in the path */
+        int getPosition(String key) {
+            for (int i = 0; i < segments.size(); i++) {
+                if (key.equals(getPlaceholderKey(segments.get(i)))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        String getShape() {
+            final StringBuilder shape = new StringBuilder();
+            for (String segment : segments) {
+                shape.append('/').append(getPlaceholderKey(segment) != null ? "{}" : segment);
+            }
+            return shape.toString();
+        }
+
+        /* Of two routes matching the same path, the one with the first literal where the other has a placeholder wins */
+        int compareSpecificity(Route other) {
+            for (int i = 0; i < segments.size(); i++) {
+                final boolean placeholder = getPlaceholderKey(segments.get(i)) != null;
+                if (placeholder != (getPlaceholderKey(other.segments.get(i)) != null)) {
+                    return placeholder ? 1 : -1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static final class State {
+        final int id;
+        final int depth;
+        final List<Route> routes;
+        final Map<String, State> literals = new TreeMap<>();
+        /* Where a segment which isn't one of the literals leads, null when it doesn't match */
+        State other;
+        /* The most specific route ending in this state */
+        Route accepted;
+
+        State(int id, int depth, List<Route> routes) {
+            this.id = id;
+            this.depth = depth;
+            this.routes = routes;
+        }
+    }
+}
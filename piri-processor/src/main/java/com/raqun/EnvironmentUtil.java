@@ -3,73 +3,149 @@ package com.raqun;
 import com.squareup.javapoet.JavaFile;
 
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
-import javax.lang.model.type.TypeKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
 
 /**
  * Created by tyln on 19/05/2017.
+ *
+ * Every processor instance has its own, compilations running in parallel in one JVM share nothing but
+ * the loaded classes. The methods which don't need the environment are static.
  */
 
 public final class EnvironmentUtil {
-    private static ProcessingEnvironment processingEnvironment;
+    private final ProcessingEnvironment processingEnvironment;
+    private final TypeClassifier typeClassifier;
 
-    private EnvironmentUtil() {}
-
-    public static void init(ProcessingEnvironment environment) {
+    public EnvironmentUtil(ProcessingEnvironment environment) {
         processingEnvironment = environment;
+        typeClassifier = new TypeClassifier(environment);
     }
 
-    public static ProcessingEnvironment getProcessingEnvironment() {
+    public ProcessingEnvironment getProcessingEnvironment() {
         return processingEnvironment;
     }
 
-    public static void logError(String message, Element element) {
+    public void logError(String message, Element element) {
         processingEnvironment.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
     }
 
-    public static void logWarning(String message, Element element) {
+    public void logWarning(String message, Element element) {
         processingEnvironment.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
     }
 
-    public static void generateFile(final Generatable generatable) throws IOException {
-        JavaFile.builder(generatable.getPackage(), generatable.getTypeSpec())
-                .build()
-                .writeTo(processingEnvironment.getFiler());
+    public void generateFile(final Generatable generatable) throws IOException {
+        writeFile(createJavaFile(generatable));
+    }
+
+    /* Doesn't touch the processing environment, so it can be called from any thread */
+    static JavaFile createJavaFile(Generatable generatable) {
+        return JavaFile.builder(generatable.getPackage(), generatable.getTypeSpec()).build();
+    }
+
+    /* Like createJavaFile, the text is built right away so it can be written later */
+    static GeneratedSource createSource(Generatable generatable) {
+        final JavaFile javaFile = createJavaFile(generatable);
+        return new GeneratedSource(getQualifiedName(javaFile), javaFile.toString());
+    }
+
+    private static String getQualifiedName(JavaFile javaFile) {
+        return javaFile.packageName.isEmpty()
+                ? javaFile.typeSpec.name
+                : javaFile.packageName + "." + javaFile.typeSpec.name;
+    }
+
+    /**
+     * Writes the file like JavaFile.writeTo(Filer) does. The Filer isn't thread safe, files are only
+     * written from the processing thread.
+     *
+     * @return the number of UTF-8 bytes written
+     */
+    long writeFile(JavaFile javaFile) throws IOException {
+        final List<Element> originatingElements = javaFile.typeSpec.originatingElements;
+        final JavaFileObject sourceFile = processingEnvironment.getFiler().createSourceFile(
+                getQualifiedName(javaFile), originatingElements.toArray(new Element[originatingElements.size()]));
+
+        final CountingWriter writer = new CountingWriter(sourceFile.openWriter());
+        try {
+            javaFile.writeTo(writer);
+        } catch (IOException e) {
+            writer.close();
+            sourceFile.delete();
+            throw e;
+        }
+        writer.close();
+        return writer.getBytes();
+    }
+
+    /**
+     * Writes a source built on another thread, on the processing thread only.
+     *
+     * @return the number of UTF-8 bytes written
+     */
+    long writeSource(GeneratedSource source, Element... originatingElements) throws IOException {
+        final JavaFileObject sourceFile = processingEnvironment.getFiler()
+                .createSourceFile(source.name, originatingElements);
+
+        final CountingWriter writer = new CountingWriter(sourceFile.openWriter());
+        try {
+            writer.write(source.source);
+        } catch (IOException e) {
+            writer.close();
+            sourceFile.delete();
+            throw e;
+        }
+        writer.close();
+        return writer.getBytes();
     }
 
-    public static boolean isActivity(TypeMirror typeMirror) {
-        final TypeMirror activity = processingEnvironment.getElementUtils()
-                .getTypeElement("android.app.Activity").asType();
-        return processingEnvironment.getTypeUtils().isAssignable(typeMirror, activity);
+    public static AnnotationMirror getAnnotationMirror(Element element, Class<? extends Annotation> annotationClass) {
+        final String annotationName = annotationClass.getCanonicalName();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final TypeElement annotationElement = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
     }
 
-    public static boolean isLong(TypeMirror typeMirror) {
-        final TypeMirror longType = processingEnvironment.getElementUtils()
-                .getTypeElement("java.lang.Long").asType();
-        final TypeMirror primitiveLong = processingEnvironment.getTypeUtils().getPrimitiveType(TypeKind.LONG);
-        return (processingEnvironment.getTypeUtils().isSameType(typeMirror, longType) || processingEnvironment.getTypeUtils().isSameType(typeMirror, primitiveLong));
+    /* Returns the explicitly set value, or null when the annotation uses the default */
+    public static AnnotationValue getAnnotationValue(AnnotationMirror mirror, String name) {
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
     }
 
-    public static boolean isInt(TypeMirror typeMirror) {
-        final TypeMirror integerType = processingEnvironment.getElementUtils()
-                .getTypeElement("java.lang.Integer").asType();
-        final TypeMirror primitiveInt = processingEnvironment.getTypeUtils().getPrimitiveType(TypeKind.INT);
-        return (processingEnvironment.getTypeUtils().isSameType(typeMirror, integerType) || processingEnvironment.getTypeUtils().isSameType(typeMirror, primitiveInt));
+    public boolean isActivity(TypeMirror typeMirror) {
+        return typeClassifier.isActivity(typeMirror);
     }
 
-    public static boolean isString(TypeMirror typeMirror) {
-        final TypeMirror stringType = processingEnvironment.getElementUtils()
-                .getTypeElement("java.lang.String").asType();
-        return processingEnvironment.getTypeUtils().isSameType(typeMirror, stringType);
+    /**
+     * @return how the given type is put into and read from an Intent, or null if it can't be
+     */
+    TypeClassifier.Classification classify(TypeMirror typeMirror) {
+        return typeClassifier.classify(typeMirror);
     }
 
-    public static boolean isSerializable(TypeMirror typeMirror) {
-        TypeMirror serializable = processingEnvironment.getElementUtils()
-                .getTypeElement("java.io.Serializable").asType();
-        return processingEnvironment.getTypeUtils().isAssignable(typeMirror, serializable);
+    TypeClassifier.Classification classifyPacked(TypeMirror typeMirror) {
+        return typeClassifier.classifyPacked(typeMirror);
     }
 }
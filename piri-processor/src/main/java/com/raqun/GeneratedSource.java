@@ -0,0 +1,16 @@
+package com.raqun;
+
+/**
+ * The text of a generated source file, built on any thread and written on the processing thread.
+ */
+
+final class GeneratedSource {
+    /* Qualified name of the top level class, e.g. com.example.MainActivityBinder */
+    final String name;
+    final String source;
+
+    GeneratedSource(String name, String source) {
+        this.name = name;
+        this.source = source;
+    }
+}
@@ -1,19 +1,50 @@
 package com.raqun;
 
-import javax.lang.model.element.Element;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
 
 /**
  * Created by tyln on 19/05/2017.
+ *
+ * Plain data read from a PiriParam field. It holds no javac types, so code can be generated from it
+ * on any thread.
  */
 
 final class KeyElementPair {
     final String key;
     final boolean required;
-    final Element element;
+    /* Name and type of the annotated field */
+    final String name;
+    final TypeName type;
+    final boolean primitive;
+    final BundleType bundleType;
+    /* How the bundleType was found, only read by ProcessingStats */
+    final String classificationPath;
+    /* The generated Parcelable wrapper for PiriParcelable models, null otherwise */
+    final ClassName parcelWrapper;
+    /* Sent through PiriHandoff, the extra only holds a long token */
+    final boolean inMemory;
+    /* A list of boxed primitives sent as the primitive array of the bundle type, see PrimitivePacking */
+    final boolean packed;
+    /* Decoded on a background Executor by bindAsync() */
+    final boolean heavy;
+    /* Size hints of the annotation, only read by PayloadSize */
+    final PayloadSize.Bounds bounds;
 
-    KeyElementPair(String key, Boolean required, Element element) {
+    KeyElementPair(String key, Boolean required, String name, TypeName type, boolean primitive, BundleType bundleType,
+                   String classificationPath, ClassName parcelWrapper, boolean inMemory, boolean packed, boolean heavy,
+                   PayloadSize.Bounds bounds) {
         this.key = key;
         this.required = required;
-        this.element = element;
+        this.name = name;
+        this.type = type;
+        this.primitive = primitive;
+        this.bundleType = bundleType;
+        this.classificationPath = classificationPath;
+        this.parcelWrapper = parcelWrapper;
+        this.inMemory = inMemory;
+        this.packed = packed;
+        this.heavy = heavy;
+        this.bounds = bounds;
     }
 }
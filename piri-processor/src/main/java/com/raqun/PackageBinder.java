@@ -0,0 +1,201 @@
+package com.raqun;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Data class for the Piri class of a package. It only delegates to the binders of the activities, so a
+ * binder is loaded when its activity is bound for the first time. It has a bind, rebind, save and restore method
+ * for every activity. They're public, so the BinderRegistry and activities of other packages can call them.
+ *
+ * With the piri.prewarm option it also lists the generated classes of every activity of the package, and
+ * prewarm(Executor, Class...) loads and initializes them on the executor, so the first navigation to an
+ * activity doesn't pay for it on the main thread. The BinderRegistry calls the prewarm of every package.
+ */
+
+public class PackageBinder implements Generatable {
+    private static final String CLASS_NAME = "Piri";
+    static final String PREWARM_METHOD_NAME = "prewarm";
+    private static final TypeName anyClassType =
+            ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+
+    private final String packageName;
+    private final List<TypeElement> activities = new ArrayList<>();
+    private final List<MethodSpec> bindMethods = new ArrayList<>();
+    /* One row per activity, the activity followed by its generated classes */
+    private final CodeBlock.Builder prewarmBuilder = CodeBlock.builder();
+
+    public PackageBinder(String packageName) {
+        this.packageName = packageName;
+    }
+
+    static ClassName getClassName(String packageName) {
+        return ClassName.get(packageName, CLASS_NAME);
+    }
+
+    public void addActivity(ActivityModel activity, ClassName binderClassName) {
+        final ClassName activityName = activity.className;
+
+        addOriginatingElement(activity);
+        bindMethods.add(MethodSpec.methodBuilder(ActivityBinder.BIND_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(activityName, "activity")
+                .addStatement("$T.$L(activity)", binderClassName, ActivityBinder.BIND_METHOD_NAME)
+                .build());
+        bindMethods.add(MethodSpec.methodBuilder(ActivityBinder.REBIND_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ActivityBinder.changedSetType)
+                .addParameter(activityName, "activity")
+                .addParameter(PiriProcessor.intentClass, "intent")
+                .addStatement("return $T.$L(activity, intent)", binderClassName, ActivityBinder.REBIND_METHOD_NAME)
+                .build());
+        bindMethods.add(MethodSpec.methodBuilder(ActivityBinder.SAVE_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(activityName, "activity")
+                .addParameter(PiriProcessor.bundleClass, "outState")
+                .addStatement("$T.$L(activity, outState)", binderClassName, ActivityBinder.SAVE_METHOD_NAME)
+                .build());
+        bindMethods.add(MethodSpec.methodBuilder(ActivityBinder.RESTORE_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(activityName, "activity")
+                .addParameter(PiriProcessor.bundleClass, "savedState")
+                .addStatement("$T.$L(activity, savedState)", binderClassName, ActivityBinder.RESTORE_METHOD_NAME)
+                .build());
+        if (ActivityBinder.hasHeavyParams(activity)) {
+            bindMethods.add(MethodSpec.methodBuilder(ActivityBinder.BIND_ASYNC_METHOD_NAME)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(PiriProcessor.bindingClass)
+                    .addParameter(activityName, "activity")
+                    .addParameter(Executor.class, "executor")
+                    .addParameter(PiriProcessor.bindingClass.nestedClass("Listener"), "listener")
+                    .addStatement("return $T.$L(activity, executor, listener)",
+                            binderClassName, ActivityBinder.BIND_ASYNC_METHOD_NAME)
+                    .build());
+        }
+    }
+
+    /* Every activity can be prewarmed, also lazy ones and ones without params which aren't bound by Piri */
+    public void addPrewarmClasses(ActivityModel activity) {
+        addOriginatingElement(activity);
+
+        final Set<ClassName> classes = new LinkedHashSet<>();
+        classes.add(activity.className);
+        if (!Utils.isNullOrEmpty(activity.params)) {
+            classes.add(activity.lazy ? ActivityArgs.getClassName(activity) : ActivityBinder.getClassName(activity));
+            if (activity.packedArgs) {
+                classes.add(ActivityPackedArgs.getClassName(activity));
+            }
+        }
+        classes.add(ActivityIntentCreator.getClassName(activity));
+        for (KeyElementPair pair : activity.params) {
+            if (pair.parcelWrapper != null) {
+                classes.add(pair.parcelWrapper);
+            }
+        }
+
+        prewarmBuilder.add("{");
+        boolean first = true;
+        for (ClassName className : classes) {
+            prewarmBuilder.add(first ? "$T.class" : ", $T.class", className);
+            first = false;
+        }
+        prewarmBuilder.add("},\n");
+    }
+
+    private void addOriginatingElement(ActivityModel activity) {
+        if (!activities.contains(activity.element)) {
+            activities.add(activity.element);
+        }
+    }
+
+    @Override
+    public String getPackage() {
+        return packageName;
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        final TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(CLASS_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethods(bindMethods);
+        final CodeBlock prewarmClasses = prewarmBuilder.build();
+        if (!prewarmClasses.isEmpty()) {
+            typeSpecBuilder.addMethod(createPrewarmMethod(prewarmClasses))
+                    .addMethod(createPrewarmClassesMethod());
+        }
+        for (TypeElement activity : activities) {
+            typeSpecBuilder.addOriginatingElement(activity);
+        }
+        return typeSpecBuilder.build();
+    }
+
+    /*
+     * The classes are only referenced in run(), so the Piri class itself doesn't load them. Activities passed as
+     * first are warmed in their order before the rest of the package.
+     */
+    private static MethodSpec createPrewarmMethod(CodeBlock prewarmClasses) {
+        final MethodSpec runMethod = MethodSpec.methodBuilder("run")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addCode("final $T classes = {\n$>", ArrayTypeName.of(ArrayTypeName.of(anyClassType)))
+                .addCode(prewarmClasses)
+                .addCode("$<};\n")
+                .addStatement("final boolean[] warmed = new boolean[classes.length]")
+                .beginControlFlow("for ($T activity : first)", anyClassType)
+                .beginControlFlow("for (int i = 0; i < classes.length; i++)")
+                .beginControlFlow("if (!warmed[i] && classes[i][0] == activity)")
+                .addStatement("warmed[i] = true")
+                .addStatement("$L(classes[i])", PREWARM_METHOD_NAME)
+                .endControlFlow()
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("for (int i = 0; i < classes.length; i++)")
+                .beginControlFlow("if (!warmed[i])")
+                .addStatement("$L(classes[i])", PREWARM_METHOD_NAME)
+                .endControlFlow()
+                .endControlFlow()
+                .build();
+        return MethodSpec.methodBuilder(PREWARM_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Executor.class, "executor")
+                .addParameter(ParameterSpec.builder(ArrayTypeName.of(anyClassType), "first", Modifier.FINAL).build())
+                .varargs()
+                .addStatement("executor.execute($L)", TypeSpec.anonymousClassBuilder("")
+                        .addSuperinterface(Runnable.class)
+                        .addMethod(runMethod)
+                        .build())
+                .build();
+    }
+
+    /* The activity is only loaded, its static state is up to the app */
+    private static MethodSpec createPrewarmClassesMethod() {
+        return MethodSpec.methodBuilder(PREWARM_METHOD_NAME)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(ArrayTypeName.of(anyClassType), "classes")
+                .beginControlFlow("for (int i = 1; i < classes.length; i++)")
+                .beginControlFlow("try")
+                .addStatement("$T.forName(classes[i].getName(), true, classes[i].getClassLoader())", Class.class)
+                .nextControlFlow("catch ($T ignored)", ClassNotFoundException.class)
+                .addComment("Only a broken class path can get here, the class was already loaded")
+                .endControlFlow()
+                .endControlFlow()
+                .build();
+    }
+}
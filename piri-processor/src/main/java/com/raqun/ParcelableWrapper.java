@@ -0,0 +1,398 @@
+package com.raqun;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import static com.raqun.PiriProcessor.parcelableClass;
+
+/**
+ * Data class for the Parcelable wrapper of a PiriParcelable model. The wrapper writes the model
+ * field by field, which is a lot cheaper than Java serialization.
+ */
+
+public class ParcelableWrapper implements Generatable {
+    private static final String CLASS_NAME_WRAPPER_SUFFIX = "ParcelWrapper";
+    static final String GET_METHOD_NAME = "get";
+    static final String WRITE_METHOD_NAME = "write";
+    static final String READ_METHOD_NAME = "read";
+
+    private static final ClassName parcelClass = ClassName.get("android.os", "Parcel");
+    private static final ClassName creatorClass = ClassName.get("android.os", "Parcelable", "Creator");
+
+    private final EnvironmentUtil environment;
+    private final String packageName;
+    private final ClassName className;
+    private final TypeSpec.Builder typeSpecBuilder;
+
+    /* Set when the model can't be written, the error is already logged */
+    private boolean invalid;
+    /* Set when a field reads a value of an unknown class, which needs the class loader */
+    private boolean readsWithLoader;
+
+    public ParcelableWrapper(EnvironmentUtil environment, TypeElement element) {
+        this.environment = environment;
+        this.packageName = environment.getProcessingEnvironment().getElementUtils().getPackageOf(element).toString();
+        this.className = getClassName(packageName, element);
+
+        final TypeName modelType = TypeName.get(element.asType());
+        final MethodSpec.Builder writeBuilder = MethodSpec.methodBuilder(WRITE_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(parcelClass, "dest")
+                .addParameter(modelType, "value")
+                .addParameter(TypeName.INT, "flags")
+                .beginControlFlow("if (value == null)")
+                .addStatement("dest.writeInt(0)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("dest.writeInt(1)");
+        final MethodSpec.Builder readBuilder = MethodSpec.methodBuilder(READ_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(parcelClass, "in")
+                .returns(modelType)
+                .beginControlFlow("if (in.readInt() == 0)")
+                .addStatement("return null")
+                .endControlFlow();
+        final CodeBlock.Builder readStatements = CodeBlock.builder();
+
+        if (!hasAccessibleConstructor(element)) {
+            logError("PiriParcelable models need a non-private no-arg constructor!", element);
+        }
+
+        for (VariableElement field : getFields(element)) {
+            addField(element, field, writeBuilder, readStatements);
+        }
+
+        /* Only look up the class loader if a field reads a value of an unknown class */
+        if (readsWithLoader) {
+            readBuilder.addStatement("final $T loader = $T.class.getClassLoader()", ClassLoader.class, className);
+        }
+        readBuilder.addStatement("final $T value = new $T()", modelType, modelType)
+                .addCode(readStatements.build())
+                .addStatement("return value");
+
+        final TypeName creatorType = ParameterizedTypeName.get(creatorClass, className);
+        final TypeSpec creator = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(creatorType)
+                .addMethod(MethodSpec.methodBuilder("createFromParcel")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(parcelClass, "in")
+                        .returns(className)
+                        .addStatement("return new $T($L(in))", className, READ_METHOD_NAME)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("newArray")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(TypeName.INT, "size")
+                        .returns(ArrayTypeName.of(className))
+                        .addStatement("return new $T[size]", className)
+                        .build())
+                .build();
+
+        this.typeSpecBuilder = TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(parcelableClass)
+                .addOriginatingElement(element)
+                .addField(FieldSpec.builder(creatorType, "CREATOR", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", creator)
+                        .build())
+                .addField(modelType, "value", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(modelType, "value")
+                        .addStatement("this.value = value")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder(GET_METHOD_NAME)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(modelType)
+                        .addStatement("return value")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("describeContents")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.INT)
+                        .addStatement("return 0")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("writeToParcel")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(parcelClass, "dest")
+                        .addParameter(TypeName.INT, "flags")
+                        .addStatement("$L(dest, value, flags)", WRITE_METHOD_NAME)
+                        .build())
+                .addMethod(writeBuilder.build())
+                .addMethod(readBuilder.build());
+    }
+
+    static ClassName getClassName(String packageName, TypeElement element) {
+        return ClassName.get(packageName, element.getSimpleName() + CLASS_NAME_WRAPPER_SUFFIX);
+    }
+
+    /**
+     * @return the wrapper of the given type if it's a PiriParcelable model, null otherwise
+     */
+    static ClassName findWrapperClassName(EnvironmentUtil environment, TypeMirror typeMirror) {
+        if (typeMirror.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final TypeElement element = (TypeElement) ((DeclaredType) typeMirror).asElement();
+        if (EnvironmentUtil.getAnnotationMirror(element, PiriParcelable.class) == null) {
+            return null;
+        }
+        final String packageName = environment.getProcessingEnvironment().getElementUtils().getPackageOf(element).toString();
+        return getClassName(packageName, element);
+    }
+
+    boolean isValid() {
+        return !invalid;
+    }
+
+    @Override
+    public String getPackage() {
+        return packageName;
+    }
+
+    @Override
+    public TypeSpec getTypeSpec() {
+        return typeSpecBuilder.build();
+    }
+
+    private void addField(TypeElement model, VariableElement field, MethodSpec.Builder writeBuilder, CodeBlock.Builder readStatements) {
+        final String name = field.getSimpleName().toString();
+        final TypeMirror type = field.asType();
+        final TypeName typeName = TypeName.get(type);
+
+        /* Use the field directly when the wrapper can see it, go through its accessors otherwise */
+        final CodeBlock getter;
+        final String setterFormat;
+        if (isAccessible(model, field)) {
+            getter = CodeBlock.of("value.$L", name);
+            setterFormat = "value." + name + " = $L";
+        } else {
+            final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            final String getterName = findAccessor(model, type.getKind() == TypeKind.BOOLEAN ? "is" + capitalized : null, "get" + capitalized, 0);
+            final String setterName = findAccessor(model, null, "set" + capitalized, 1);
+            if (getterName == null || setterName == null) {
+                logError("Private PiriParcelable field " + name + " needs a getter and a setter!", field);
+                return;
+            }
+            getter = CodeBlock.of("value.$L()", getterName);
+            setterFormat = "value." + setterName + "($L)";
+        }
+
+        final ClassName wrapper = findWrapperClassName(environment, type);
+        if (wrapper != null) {
+            /* Nested models are written inline by their own wrapper */
+            writeBuilder.addStatement("$T.$L(dest, $L, flags)", wrapper, WRITE_METHOD_NAME, getter);
+            readStatements.addStatement(setterFormat, CodeBlock.of("$T.$L(in)", wrapper, READ_METHOD_NAME));
+            return;
+        }
+
+        final TypeClassifier.Classification classification = environment.classify(type);
+        if (classification == null) {
+            logError("PiriParcelable field type " + type + " can't be written to a Parcel!", field);
+            return;
+        }
+        final BundleType bundleType = classification.bundleType;
+
+        final boolean boxed = bundleType.isPrimitive() && !type.getKind().isPrimitive();
+        final CodeBlock read;
+        if (boxed) {
+            /* Boxed values may be null, writeValue keeps that */
+            writeBuilder.addStatement("dest.writeValue($L)", getter);
+            read = readWithLoader("($T) in.readValue(loader)", typeName);
+        } else {
+            read = addPrimitiveOrObject(bundleType, type, typeName, getter, writeBuilder);
+        }
+        readStatements.addStatement(setterFormat, read);
+    }
+
+    /* Adds the write statement and returns the matching read expression */
+    private CodeBlock addPrimitiveOrObject(BundleType bundleType, TypeMirror type, TypeName typeName,
+                                           CodeBlock getter, MethodSpec.Builder writeBuilder) {
+        switch (bundleType) {
+            case BOOLEAN:
+                writeBuilder.addStatement("dest.writeInt($L ? 1 : 0)", getter);
+                return CodeBlock.of("in.readInt() != 0");
+            case BYTE:
+                writeBuilder.addStatement("dest.writeByte($L)", getter);
+                return CodeBlock.of("in.readByte()");
+            case CHAR:
+                writeBuilder.addStatement("dest.writeInt($L)", getter);
+                return CodeBlock.of("(char) in.readInt()");
+            case SHORT:
+                writeBuilder.addStatement("dest.writeInt($L)", getter);
+                return CodeBlock.of("(short) in.readInt()");
+            case INT:
+                writeBuilder.addStatement("dest.writeInt($L)", getter);
+                return CodeBlock.of("in.readInt()");
+            case LONG:
+                writeBuilder.addStatement("dest.writeLong($L)", getter);
+                return CodeBlock.of("in.readLong()");
+            case FLOAT:
+                writeBuilder.addStatement("dest.writeFloat($L)", getter);
+                return CodeBlock.of("in.readFloat()");
+            case DOUBLE:
+                writeBuilder.addStatement("dest.writeDouble($L)", getter);
+                return CodeBlock.of("in.readDouble()");
+            case STRING:
+                writeBuilder.addStatement("dest.writeString($L)", getter);
+                return CodeBlock.of("in.readString()");
+            case BUNDLE:
+                writeBuilder.addStatement("dest.writeBundle($L)", getter);
+                return readWithLoader("in.readBundle(loader)");
+            case PARCELABLE:
+                writeBuilder.addStatement("dest.writeParcelable($L, flags)", getter);
+                return readWithLoader("($T) in.readParcelable(loader)", typeName);
+            case SERIALIZABLE:
+                writeBuilder.addStatement("dest.writeSerializable($L)", getter);
+                return CodeBlock.of("($T) in.readSerializable()", typeName);
+            case BOOLEAN_ARRAY:
+            case BYTE_ARRAY:
+            case CHAR_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case STRING_ARRAY:
+                /* Parcel has typed methods for these, e.g. writeIntArray and createIntArray */
+                final String arrayName = getParcelArrayName(bundleType);
+                writeBuilder.addStatement("dest.write$L($L)", arrayName, getter);
+                return CodeBlock.of("in.create$L()", arrayName);
+            case STRING_ARRAY_LIST:
+                writeBuilder.addStatement("dest.writeStringList($L)", getter);
+                return CodeBlock.of("in.createStringArrayList()");
+            case PARCELABLE_ARRAY: {
+                final TypeMirror component = ((ArrayType) type).getComponentType();
+                if (!TypeName.get(component).equals(parcelableClass)) {
+                    writeBuilder.addStatement("dest.writeTypedArray($L, flags)", getter);
+                    return CodeBlock.of("in.createTypedArray($T.CREATOR)", TypeName.get(component));
+                }
+                break;
+            }
+            case PARCELABLE_ARRAY_LIST: {
+                final TypeMirror element = ((DeclaredType) type).getTypeArguments().get(0);
+                if (element.getKind() == TypeKind.DECLARED) {
+                    writeBuilder.addStatement("dest.writeTypedList($L)", getter);
+                    return CodeBlock.of("in.createTypedArrayList($T.CREATOR)", TypeName.get(element));
+                }
+                break;
+            }
+            default:
+                break;
+        }
+
+        /* Everything else has no typed Parcel method, writeValue still avoids Java serialization */
+        writeBuilder.addStatement("dest.writeValue($L)", getter);
+        return readWithLoader("($T) in.readValue(loader)", typeName);
+    }
+
+    private CodeBlock readWithLoader(String format, Object... args) {
+        readsWithLoader = true;
+        return CodeBlock.of(format, args);
+    }
+
+    static String getParcelArrayName(BundleType bundleType) {
+        switch (bundleType) {
+            case BOOLEAN_ARRAY:
+                return "BooleanArray";
+            case BYTE_ARRAY:
+                return "ByteArray";
+            case CHAR_ARRAY:
+                return "CharArray";
+            case INT_ARRAY:
+                return "IntArray";
+            case LONG_ARRAY:
+                return "LongArray";
+            case FLOAT_ARRAY:
+                return "FloatArray";
+            case DOUBLE_ARRAY:
+                return "DoubleArray";
+            default:
+                return "StringArray";
+        }
+    }
+
+    /* Instance fields of the model and its super classes, super class fields first */
+    private static List<VariableElement> getFields(TypeElement element) {
+        final List<VariableElement> fields = new ArrayList<>();
+        final TypeMirror superclass = element.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            fields.addAll(getFields((TypeElement) ((DeclaredType) superclass).asElement()));
+        }
+
+        for (Element enclosed : element.getEnclosedElements()) {
+            final Set<Modifier> modifiers = enclosed.getModifiers();
+            if (enclosed.getKind() == ElementKind.FIELD
+                    && !modifiers.contains(Modifier.STATIC)
+                    && !modifiers.contains(Modifier.TRANSIENT)) {
+                fields.add((VariableElement) enclosed);
+            }
+        }
+        return fields;
+    }
+
+    private static boolean hasAccessibleConstructor(TypeElement element) {
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) enclosed).getParameters().isEmpty()
+                    && !enclosed.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* The wrapper lives in the model's package, so it sees everything but private fields of that package */
+    private boolean isAccessible(TypeElement model, VariableElement field) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        final String modelPackage = environment.getProcessingEnvironment().getElementUtils().getPackageOf(model).toString();
+        final String fieldPackage = environment.getProcessingEnvironment().getElementUtils().getPackageOf(field).toString();
+        return modifiers.contains(Modifier.PUBLIC) || modelPackage.equals(fieldPackage);
+    }
+
+    private String findAccessor(TypeElement model, String preferredName, String name, int parameterCount) {
+        for (Element member : environment.getProcessingEnvironment().getElementUtils().getAllMembers(model)) {
+            if (member.getKind() != ElementKind.METHOD
+                    || member.getModifiers().contains(Modifier.PRIVATE)
+                    || member.getModifiers().contains(Modifier.STATIC)
+                    || ((ExecutableElement) member).getParameters().size() != parameterCount) {
+                continue;
+            }
+            final String memberName = member.getSimpleName().toString();
+            if (memberName.equals(preferredName) || memberName.equals(name)) {
+                return memberName;
+            }
+        }
+        return null;
+    }
+
+    private void logError(String message, Element element) {
+        invalid = true;
+        environment.logError(message, element);
+    }
+}
@@ -0,0 +1,186 @@
+package com.raqun;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estimates how many bytes the extras of an Intent to an activity take when they're parcelled, e.g. to be
+ * sent to the system in startActivity. Follows how a Bundle writes itself: a header, then every extra as
+ * its key, a type tag and the value. Heavy params are written the same way into a Bundle of their own.
+ *
+ * Only primitives and tokens have a fixed size. Strings, arrays and lists are bounded by the maxLength and
+ * maxSize of their PiriParam, any other value only by its maxBytes. A param without the bounds its type needs
+ * is unbounded and isn't part of the estimate.
+ */
+
+final class PayloadSize {
+    static final int UNBOUNDED = -1;
+
+    /* Length and magic of the Bundle, and its number of extras */
+    private static final int BUNDLE_HEADER = 12;
+    private static final int TYPE_TAG = 4;
+    /* A CharSequence also writes its kind and the end of its spans */
+    private static final int CHAR_SEQUENCE_OVERHEAD = 8;
+    /* PackedArgs write their schema hash and length before the values */
+    private static final int PACKED_ARGS_HEADER = 8;
+
+    private PayloadSize() {}
+
+    /* Bounds of a PiriParam, UNBOUNDED when not set */
+    static final class Bounds {
+        static final Bounds NONE = new Bounds(UNBOUNDED, UNBOUNDED, UNBOUNDED);
+
+        final int maxLength;
+        final int maxSize;
+        final int maxBytes;
+
+        Bounds(int maxLength, int maxSize, int maxBytes) {
+            this.maxLength = maxLength;
+            this.maxSize = maxSize;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    static final class Estimate {
+        /* Class.getName() of the activity */
+        final String destination;
+        /* Of the bounded params */
+        final long bytes;
+        /* Keys of the params which aren't part of bytes */
+        final List<String> unboundedKeys;
+
+        Estimate(String destination, long bytes, List<String> unboundedKeys) {
+            this.destination = destination;
+            this.bytes = bytes;
+            this.unboundedKeys = Collections.unmodifiableList(unboundedKeys);
+        }
+    }
+
+    static Estimate estimate(ActivityModel activity) {
+        final List<String> unboundedKeys = new ArrayList<>();
+        long bytes = BUNDLE_HEADER;
+        if (activity.packedArgs) {
+            /* One Parcelable extra, the values are written without keys and tags */
+            bytes += getStringSize(ActivityPackedArgs.EXTRA_KEY.length()) + TYPE_TAG
+                    + getStringSize(ActivityPackedArgs.getClassName(activity).reflectionName().length())
+                    + PACKED_ARGS_HEADER;
+        } else if (ActivityBinder.hasHeavyParams(activity)) {
+            bytes += getStringSize(ActivityBinder.HEAVY_EXTRAS_KEY.length()) + TYPE_TAG + BUNDLE_HEADER;
+        }
+
+        for (KeyElementPair pair : activity.params) {
+            final long valueSize = getValueSize(pair);
+            if (valueSize == UNBOUNDED) {
+                unboundedKeys.add(pair.key);
+            } else if (activity.packedArgs) {
+                bytes += valueSize;
+            } else {
+                bytes += getStringSize(pair.key.length()) + TYPE_TAG + valueSize;
+            }
+        }
+        return new Estimate(activity.binaryName, bytes, unboundedKeys);
+    }
+
+    static long getValueSize(KeyElementPair pair) {
+        if (pair.inMemory) {
+            /* Only the long token */
+            return 8;
+        }
+
+        final Bounds bounds = pair.bounds;
+        if (bounds.maxBytes != UNBOUNDED) {
+            return bounds.maxBytes;
+        }
+
+        final int length = bounds.maxLength;
+        final int size = bounds.maxSize;
+        switch (pair.bundleType) {
+            case BOOLEAN:
+            case BYTE:
+            case CHAR:
+            case SHORT:
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case STRING:
+                return length == UNBOUNDED ? UNBOUNDED : getStringSize(length);
+            case CHAR_SEQUENCE:
+                return length == UNBOUNDED ? UNBOUNDED : CHAR_SEQUENCE_OVERHEAD + getStringSize(length);
+            case BYTE_ARRAY:
+                return size == UNBOUNDED ? UNBOUNDED : 4 + pad(size);
+            case BOOLEAN_ARRAY:
+            case CHAR_ARRAY:
+            case SHORT_ARRAY:
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+                /* Small primitives take an int each */
+                return size == UNBOUNDED ? UNBOUNDED : 4 + 4L * size;
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                return size == UNBOUNDED ? UNBOUNDED : 4 + 8L * size;
+            case INTEGER_ARRAY_LIST:
+                /* Every element is written with its type tag */
+                return size == UNBOUNDED ? UNBOUNDED : 4 + (long) (TYPE_TAG + 4) * size;
+            case STRING_ARRAY:
+                return size == UNBOUNDED || length == UNBOUNDED ? UNBOUNDED : 4 + size * getStringSize(length);
+            case STRING_ARRAY_LIST:
+                return size == UNBOUNDED || length == UNBOUNDED ? UNBOUNDED
+                        : 4 + size * (TYPE_TAG + getStringSize(length));
+            case CHAR_SEQUENCE_ARRAY:
+                return size == UNBOUNDED || length == UNBOUNDED ? UNBOUNDED
+                        : 4 + size * (CHAR_SEQUENCE_OVERHEAD + getStringSize(length));
+            case CHAR_SEQUENCE_ARRAY_LIST:
+                return size == UNBOUNDED || length == UNBOUNDED ? UNBOUNDED
+                        : 4 + size * (TYPE_TAG + CHAR_SEQUENCE_OVERHEAD + getStringSize(length));
+            default:
+                /* Bundles, Parcelables and Serializables can be of any size */
+                return UNBOUNDED;
+        }
+    }
+
+    /* A Parcel writes a String as its length and its UTF-16 chars with a terminating zero, padded to 4 bytes */
+    private static long getStringSize(int length) {
+        return 4 + pad(2L * (length + 1));
+    }
+
+    private static long pad(long bytes) {
+        return (bytes + 3) & ~3L;
+    }
+
+    /**
+     * Writes a tab separated table of the estimates, sorted by destination so it can be diffed between builds
+     */
+    static void writeTable(Collection<Estimate> estimates, File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        final StringBuilder table = new StringBuilder("destination\tbytes\tunbounded\n");
+        for (Estimate estimate : estimates) {
+            table.append(estimate.destination).append('\t').append(estimate.bytes).append('\t');
+            for (int i = 0; i < estimate.unboundedKeys.size(); i++) {
+                table.append(i == 0 ? "" : ",").append(estimate.unboundedKeys.get(i));
+            }
+            table.append('\n');
+        }
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(table.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
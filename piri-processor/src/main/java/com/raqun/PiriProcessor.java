@@ -1,41 +1,121 @@
 package com.raqun;
 
 import com.squareup.javapoet.ClassName;
-import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.ParameterSpec;
-import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeName;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
-import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
 
 @SupportedAnnotationTypes({
         "com.raqun.PiriParam",
+        "com.raqun.PiriParcelable",
+        "com.raqun.PiriActivity",
+        "com.raqun.PiriDeepLink",
 })
 public final class PiriProcessor extends AbstractProcessor {
-    private final Map<TypeElement, List<KeyElementPair>> activityParamMap = new HashMap<>();
-    private final Map<String, TypeSpec.Builder> packageBinderMap = new HashMap<>();
+    /* When set, only per-activity files are generated so Gradle can process PiriParams incrementally */
+    static final String OPTION_ISOLATING = "piri.isolating";
+    /* Number of threads that build the generated code, all available processors by default */
+    static final String OPTION_THREADS = "piri.threads";
+    /* Path of a JSON report of what processing cost, not written when unset */
+    static final String OPTION_STATS = "piri.stats";
+    /* Generates calls to PiriInstrumentation of piri-runtime in create() and bind() */
+    static final String OPTION_INSTRUMENTATION = "piri.instrumentation";
+    /* Generated classes share code in piri-runtime, for fewer methods and smaller classes */
+    static final String OPTION_COMPACT = "piri.compact";
+    /* Generates Piri.prewarm(), which initializes the generated classes of a package on an Executor */
+    static final String OPTION_PREWARM = "piri.prewarm";
+    /* Qualified name of the generated deep link router */
+    static final String OPTION_DEEP_LINK_ROUTER = "piri.deepLinkRouter";
+    private static final String DEFAULT_DEEP_LINK_ROUTER = "com.raqun.PiriDeepLinkRouter";
+    /* Qualified name of the generated registry of every bound activity, see BinderRegistry */
+    static final String OPTION_REGISTRY = "piri.registry";
+    private static final String DEFAULT_REGISTRY = "com.raqun.PiriRegistry";
+    /* Warns about activities whose extras may take more bytes than this in a parcel, see PayloadSize */
+    static final String OPTION_SIZE_BUDGET = "piri.sizeBudget";
+    /* Makes exceeding piri.sizeBudget an error */
+    static final String OPTION_SIZE_BUDGET_ERROR = "piri.sizeBudgetError";
+    /* Path of a table of the estimated payload size of every activity, not written when unset */
+    static final String OPTION_SIZE_REPORT = "piri.sizeReport";
+
+    /* Activities handed to the pool per thread at once, bounds how much generated code is held in memory */
+    private static final int BATCH_SIZE_PER_THREAD = 8;
+
+    /* Options Gradle reads to decide how a "dynamic" incremental processor behaves */
+    private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
+    private final Map<TypeElement, List<KeyElementPair>> activityParamMap = new LinkedHashMap<>();
+    private final Set<TypeElement> invalidClasses = new HashSet<>();
+    private final Map<String, PackageBinder> packageBinderMap = new HashMap<>();
 
     public static final ClassName intentClass = ClassName.get("android.content", "Intent");
+    public static final ClassName bundleClass = ClassName.get("android.os", "Bundle");
+    public static final ClassName parcelableClass = ClassName.get("android.os", "Parcelable");
+    public static final ClassName handoffClass = ClassName.get("com.raqun", "PiriHandoff");
+    public static final ClassName instrumentationClass = ClassName.get("com.raqun", "PiriInstrumentation");
+    public static final ClassName bindingClass = ClassName.get("com.raqun", "PiriBinding");
+    public static final ClassName intentCreatorClass = ClassName.get("com.raqun", "PiriIntentCreator");
+    public static final ClassName bindersClass = ClassName.get("com.raqun", "PiriBinders");
     public static final ClassName contextClass = ClassName.get("android.content", "Context");
     public static final ClassName nonNullAnnotation = ClassName.get("android.support.annotation", "NonNull");
 
     public static final ParameterSpec nonNullContextParam = ParameterSpec.builder(contextClass, "context").addAnnotation(nonNullAnnotation).build();
 
+    private EnvironmentUtil environment;
+    private boolean isolating;
+    private boolean instrumented;
+    private boolean compact;
+    private boolean prewarm;
+    private int threads;
+    private ClassName deepLinkRouterName;
+    private ClassName registryName;
+    /* Registry of the activities bound in this round, null when there are none */
+    private BinderRegistry registry;
+    /* Router of the deep links found in this round, null when there are none */
+    private DeepLinkRouter deepLinkRouter;
+    private long sizeBudget = PayloadSize.UNBOUNDED;
+    private boolean sizeBudgetError;
+    private File sizeReportFile;
+    /* By destination, so the report is sorted and keeps the activities of earlier rounds */
+    private final Map<String, PayloadSize.Estimate> sizeEstimates = new TreeMap<>();
+    private File statsFile;
+    private ProcessingStats stats;
+    /* Stats of the current round, null when no report is written */
+    private ProcessingStats.Round round;
+
     @Override
     public SourceVersion getSupportedSourceVersion() {
         return SourceVersion.latestSupported();
@@ -44,123 +124,625 @@ public final class PiriProcessor extends AbstractProcessor {
     @Override
     public synchronized void init(ProcessingEnvironment processingEnvironment) {
         super.init(processingEnvironment);
-        EnvironmentUtil.init(processingEnvironment);
+        environment = new EnvironmentUtil(processingEnvironment);
+        isolating = Boolean.parseBoolean(processingEnvironment.getOptions().get(OPTION_ISOLATING));
+        instrumented = Boolean.parseBoolean(processingEnvironment.getOptions().get(OPTION_INSTRUMENTATION));
+        compact = Boolean.parseBoolean(processingEnvironment.getOptions().get(OPTION_COMPACT));
+        prewarm = Boolean.parseBoolean(processingEnvironment.getOptions().get(OPTION_PREWARM));
+        threads = getThreads(processingEnvironment.getOptions().get(OPTION_THREADS));
+        deepLinkRouterName = getClassNameOption(OPTION_DEEP_LINK_ROUTER, DEFAULT_DEEP_LINK_ROUTER);
+        registryName = getClassNameOption(OPTION_REGISTRY, DEFAULT_REGISTRY);
+
+        sizeBudget = getSizeBudget(processingEnvironment.getOptions().get(OPTION_SIZE_BUDGET));
+        sizeBudgetError = Boolean.parseBoolean(processingEnvironment.getOptions().get(OPTION_SIZE_BUDGET_ERROR));
+        final String sizeReportPath = processingEnvironment.getOptions().get(OPTION_SIZE_REPORT);
+        if (!Utils.isNullOrEmpty(sizeReportPath)) {
+            sizeReportFile = new File(sizeReportPath);
+        }
+
+        final String statsPath = processingEnvironment.getOptions().get(OPTION_STATS);
+        if (!Utils.isNullOrEmpty(statsPath)) {
+            statsFile = new File(statsPath);
+            stats = new ProcessingStats(isolating, threads);
+        }
+    }
+
+    private int getThreads(String option) {
+        if (option == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(option));
+        } catch (NumberFormatException e) {
+            environment.logWarning("Ignoring " + OPTION_THREADS + "=" + option + ", it's not a number", null);
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    private long getSizeBudget(String option) {
+        if (option == null) {
+            return PayloadSize.UNBOUNDED;
+        }
+        try {
+            final long budget = Long.parseLong(option);
+            if (budget >= 0) {
+                return budget;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        environment.logWarning("Ignoring " + OPTION_SIZE_BUDGET + "=" + option + ", it's not a number of bytes", null);
+        return PayloadSize.UNBOUNDED;
+    }
+
+    private ClassName getClassNameOption(String name, String defaultValue) {
+        final String option = processingEnv.getOptions().get(name);
+        if (!Utils.isNullOrEmpty(option)) {
+            try {
+                return ClassName.bestGuess(option);
+            } catch (IllegalArgumentException e) {
+                environment.logWarning("Ignoring " + name + "=" + option + ", it's not a class name", null);
+            }
+        }
+        return ClassName.bestGuess(defaultValue);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        final Set<String> options = new HashSet<>();
+        options.add(OPTION_ISOLATING);
+        options.add(OPTION_THREADS);
+        options.add(OPTION_STATS);
+        options.add(OPTION_INSTRUMENTATION);
+        options.add(OPTION_COMPACT);
+        options.add(OPTION_PREWARM);
+        options.add(OPTION_DEEP_LINK_ROUTER);
+        options.add(OPTION_REGISTRY);
+        options.add(OPTION_SIZE_BUDGET);
+        options.add(OPTION_SIZE_BUDGET_ERROR);
+        options.add(OPTION_SIZE_REPORT);
+        /* The package wide Piri class is built from many activities, so it needs the aggregating mode */
+        options.add(isolating ? GRADLE_ISOLATING : GRADLE_AGGREGATING);
+        return Collections.unmodifiableSet(options);
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
-        /* Get every element that is annotated with PiriActivity */
+        if (stats == null) {
+            return processRound(roundEnvironment);
+        }
+
+        final long start = System.nanoTime();
+        round = stats.startRound();
+        try {
+            return processRound(roundEnvironment);
+        } finally {
+            round.wallNanos = System.nanoTime() - start;
+            round = null;
+            try {
+                stats.writeTo(statsFile);
+            } catch (IOException e) {
+                environment.logWarning("Could not write Piri stats to " + statsFile + ": " + e, null);
+            }
+        }
+    }
+
+    private boolean processRound(RoundEnvironment roundEnvironment) {
+        /* Generate the Parcelable wrappers of models first, activities refer to them by name only */
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(PiriParcelable.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                environment.logError("PiriParcelable can only be used on classes!", element);
+                continue;
+            }
+
+            final long start = System.nanoTime();
+            final ParcelableWrapper parcelableWrapper = new ParcelableWrapper(environment, (TypeElement) element);
+            final JavaFile wrapperFile = parcelableWrapper.isValid() ? EnvironmentUtil.createJavaFile(parcelableWrapper) : null;
+            if (round != null) {
+                round.parcelWrapperNanos += System.nanoTime() - start;
+            }
+            if (wrapperFile != null) {
+                try {
+                    writeFile(wrapperFile);
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+        }
+
+        /* Get every element that is annotated with PiriParam */
         final Set<? extends Element> elements = roundEnvironment.getElementsAnnotatedWith(PiriParam.class);
+        final Set<? extends Element> deepLinkElements = roundEnvironment.getElementsAnnotatedWith(PiriDeepLink.class);
 
-        if (Utils.isNullOrEmpty(elements)) {
+        if (Utils.isNullOrEmpty(elements) && Utils.isNullOrEmpty(deepLinkElements)) {
             return true;
         }
 
+        final long discoveryStart = System.nanoTime();
+
+        /* Group the fields by their activity in a single pass */
         for (Element element : elements) {
-            Element enclosingElement = element.getEnclosingElement();
-            boolean alreadyAddedActivity = false;
-            for (TypeElement typeElement : activityParamMap.keySet()) {
-                if (EnvironmentUtil.getProcessingEnvironment().getTypeUtils().isSameType(enclosingElement.asType(), typeElement.asType())) {
-                    alreadyAddedActivity = true;
-                    break;
+            final Element enclosingElement = element.getEnclosingElement();
+
+            if (element.getKind() != ElementKind.FIELD) {
+                environment.logError("PiriParams can only be used on fields!", element);
+                continue;
+            }
+
+            final TypeElement activity = (TypeElement) enclosingElement;
+            List<KeyElementPair> pairs = activityParamMap.get(activity);
+            if (pairs == null) {
+                /* Check once per class that it inherits from Activity */
+                if (invalidClasses.contains(activity)) {
+                    continue;
+                }
+                if (!environment.isActivity(activity.asType())) {
+                    environment.logError("PiriParams can only be used in Activity classes!", activity);
+                    invalidClasses.add(activity);
+                    continue;
                 }
+                pairs = new ArrayList<>();
+                activityParamMap.put(activity, pairs);
             }
 
-            if (alreadyAddedActivity) {
-                break;
+            final KeyElementPair pair = createKeyElementPair(element);
+            if (pair != null) {
+                pairs.add(pair);
             }
+        }
 
-            /* Check if this element is a class AND inherits from Activity */
-            if ((element.getKind() != ElementKind.FIELD) || !EnvironmentUtil.isActivity(enclosingElement.asType())) {
-                EnvironmentUtil.logError("PiriParams can only be used in Activity classes!", enclosingElement);
+        /* An activity without PiriParams can still be opened by a deep link */
+        for (Element element : deepLinkElements) {
+            if (element.getKind() != ElementKind.CLASS || !environment.isActivity(element.asType())) {
+                environment.logError("PiriDeepLinks can only be used on Activity classes!", element);
                 continue;
             }
+            if (!activityParamMap.containsKey(element)) {
+                activityParamMap.put((TypeElement) element, new ArrayList<KeyElementPair>());
+            }
+        }
+
+        /* Read everything code is generated from on this thread, javac's model isn't thread safe */
+        final List<ActivityModel> activities = new ArrayList<>(activityParamMap.size());
+        for (Map.Entry<TypeElement, List<KeyElementPair>> entry : activityParamMap.entrySet()) {
+            activities.add(createActivityModel(entry.getKey(), entry.getValue()));
+        }
+        /* Everything is in the models now, the grouped elements can go */
+        activityParamMap.clear();
+
+        if (round != null) {
+            round.discoveryNanos += System.nanoTime() - discoveryStart;
+            round.activities += activities.size();
+            for (ActivityModel activity : activities) {
+                for (KeyElementPair pair : activity.params) {
+                    round.addParam(activity.binaryName, pair);
+                }
+            }
+        }
 
-            activityParamMap.put((TypeElement) enclosingElement, findPiriParamFields(enclosingElement));
+        if (sizeBudget != PayloadSize.UNBOUNDED || sizeReportFile != null) {
+            checkPayloadSizes(activities);
         }
 
-        for (TypeElement element : activityParamMap.keySet()) {
+        try {
+            generateActivityFiles(activities);
+        } catch (IOException e) {
+            return false;
+        }
+
+        for (PackageBinder packageBinder : packageBinderMap.values()) {
             try {
-                generateIntentCreatorForActivity(element, activityParamMap.get(element));
+                writeFile(EnvironmentUtil.createJavaFile(packageBinder));
             } catch (IOException e) {
                 return false;
             }
         }
 
-        for (final String packageName : packageBinderMap.keySet()) {
-            final Generatable tempGeneratable = new Generatable() {
-                @Override
-                public String getPackage() {
-                    return packageName;
-                }
-
-                @Override
-                public TypeSpec getTypeSpec() {
-                    return packageBinderMap.get(packageName).build();
-                }
-            };
+        if (registry != null) {
+            addSubclassesToRegistry(roundEnvironment.getRootElements());
+            try {
+                writeFile(EnvironmentUtil.createJavaFile(registry));
+            } catch (IOException e) {
+                return false;
+            }
+        }
 
+        if (deepLinkRouter != null) {
             try {
-                EnvironmentUtil.generateFile(tempGeneratable);
+                writeFile(EnvironmentUtil.createJavaFile(deepLinkRouter));
             } catch (IOException e) {
                 return false;
             }
         }
 
+        /* Everything of this round is generated, a later round must not write the same files again */
+        packageBinderMap.clear();
+        registry = null;
+        deepLinkRouter = null;
+        invalidClasses.clear();
+
         return true;
     }
 
-    private void generateIntentCreatorForActivity(final TypeElement element, List<KeyElementPair> piriParamList) throws IOException {
-        final ActivityIntentCreator activityIntentCreator = new ActivityIntentCreator(element, piriParamList);
-        String activityPackage = EnvironmentUtil.getProcessingEnvironment().getElementUtils().getPackageOf(element).toString();
+    /*
+     * Builds the files of the activities in parallel, a batch at a time, and writes them on this thread
+     * in order. A written batch is released, so only one batch of generated code is held at once.
+     */
+    private void generateActivityFiles(List<ActivityModel> activities) throws IOException {
+        final ForkJoinPool pool = threads > 1 && activities.size() > 1 ? new ForkJoinPool(threads) : null;
+        final int batchSize = threads * BATCH_SIZE_PER_THREAD;
+        try {
+            for (int start = 0; start < activities.size(); start += batchSize) {
+                final int end = Math.min(start + batchSize, activities.size());
+                final List<Callable<GeneratedFiles>> tasks = new ArrayList<>(end - start);
+                for (final ActivityModel activity : activities.subList(start, end)) {
+                    tasks.add(new Callable<GeneratedFiles>() {
+                        @Override
+                        public GeneratedFiles call() {
+                            return createSources(activity);
+                        }
+                    });
+                }
+
+                final List<Future<GeneratedFiles>> futures = invokeAll(pool, tasks);
+                for (int i = 0; i < futures.size(); i++) {
+                    final ActivityModel activity = activities.get(start + i);
+                    final GeneratedFiles generatedFiles = getFiles(futures.get(i));
+                    if (round != null) {
+                        round.binderNanos += generatedFiles.binderNanos;
+                        round.intentCreatorNanos += generatedFiles.intentCreatorNanos;
+                    }
+                    for (GeneratedSource source : generatedFiles.sources) {
+                        writeSource(source, activity);
+                    }
+                }
+
+                for (int i = start; i < end; i++) {
+                    addToPackageBinder(activities.get(i));
+                    addToDeepLinkRouter(activities.get(i));
+                    activities.set(i, null);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /* Only uses the plain data of the model, so it can run on any thread */
+    private static GeneratedFiles createSources(ActivityModel activity) {
+        final GeneratedFiles generatedFiles = new GeneratedFiles();
+        long start = System.nanoTime();
+        if (!Utils.isNullOrEmpty(activity.params)) {
+            /* Lazy activities read their params through the Args class, they have nothing to bind */
+            generatedFiles.sources.add(EnvironmentUtil.createSource(
+                    activity.lazy ? new ActivityArgs(activity) : new ActivityBinder(activity)));
+            if (activity.packedArgs) {
+                generatedFiles.sources.add(EnvironmentUtil.createSource(new ActivityPackedArgs(activity)));
+            }
+        }
+        generatedFiles.binderNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        generatedFiles.sources.add(EnvironmentUtil.createSource(new ActivityIntentCreator(activity)));
+        generatedFiles.intentCreatorNanos = System.nanoTime() - start;
+        return generatedFiles;
+    }
+
+    private void writeFile(JavaFile file) throws IOException {
+        final long start = System.nanoTime();
+        final long bytes = environment.writeFile(file);
+        if (round != null) {
+            round.generateFileNanos += System.nanoTime() - start;
+            round.addFile(file.packageName + "." + file.typeSpec.name, bytes);
+        }
+    }
+
+    private void writeSource(GeneratedSource source, ActivityModel activity) throws IOException {
+        final long start = System.nanoTime();
+        final long bytes = environment.writeSource(source, activity.element);
+        if (round != null) {
+            round.generateFileNanos += System.nanoTime() - start;
+            round.addFile(source.name, bytes);
+        }
+    }
+
+    private static List<Future<GeneratedFiles>> invokeAll(ForkJoinPool pool, List<Callable<GeneratedFiles>> tasks) {
+        if (pool != null) {
+            return pool.invokeAll(tasks);
+        }
 
-        if (!Utils.isNullOrEmpty(piriParamList)) {
-            if (packageBinderMap.get(activityPackage) == null) {
-                packageBinderMap.put(activityPackage, TypeSpec.classBuilder("Piri"));
+        final List<Future<GeneratedFiles>> futures = new ArrayList<>(tasks.size());
+        for (Callable<GeneratedFiles> task : tasks) {
+            final FutureTask<GeneratedFiles> future = new FutureTask<>(task);
+            future.run();
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    private static GeneratedFiles getFiles(Future<GeneratedFiles> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating files");
+        } catch (ExecutionException e) {
+            /* A generator failing is a bug, let it surface like it would on a single thread */
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void addToPackageBinder(ActivityModel activity) {
+        /* In isolating mode activities call their own binder, as the Piri class would have many origins */
+        final boolean bound = !activity.lazy && !Utils.isNullOrEmpty(activity.params);
+        if (isolating || (!bound && !prewarm)) {
+            return;
+        }
 
-            MethodSpec.Builder bindBuilder = MethodSpec.methodBuilder("bind")
-                    .addModifiers(Modifier.STATIC)
-                    .addParameter(ClassName.get(element.asType()), "activity")
-                    .addStatement("$T intent = activity.getIntent()", intentClass);
+        PackageBinder packageBinder = packageBinderMap.get(activity.packageName);
+        if (packageBinder == null) {
+            packageBinder = new PackageBinder(activity.packageName);
+            packageBinderMap.put(activity.packageName, packageBinder);
+        }
+        if (registry == null) {
+            registry = new BinderRegistry(registryName);
+        }
+        if (bound) {
+            packageBinder.addActivity(activity, ActivityBinder.getClassName(activity));
+            registry.addActivity(activity);
+        }
+        if (prewarm) {
+            packageBinder.addPrewarmClasses(activity);
+            registry.addPrewarmedActivity(activity);
+        }
+    }
 
-            for (KeyElementPair pair : piriParamList) {
-                TypeMirror elementType = pair.element.asType();
-                String elementName = pair.element.getSimpleName().toString();
-                if (EnvironmentUtil.isInt(elementType)) {
-                    bindBuilder.addStatement("activity.$L = intent.getIntExtra($S, -1)", elementName, pair.key);
-                } else if (EnvironmentUtil.isLong(elementType)) {
-                    bindBuilder.addStatement("activity.$L = intent.getLongExtra($S, -1)", elementName, pair.key);
-                } else if (EnvironmentUtil.isString(elementType)) {
-                    bindBuilder.addStatement("activity.$L = intent.getStringExtra($S)", elementName, pair.key);
-                } else if (EnvironmentUtil.isSerializable(elementType)) {
-                    bindBuilder.addStatement("activity.$L = ($T) intent.getSerializableExtra($S)", elementName, pair.element, pair.key);
+    /*
+     * Sub classes compiled with their activity get a case of their own, so the registry finds them without walking
+     * up their super classes. Only the elements are read, the closest bound super class binds the sub class.
+     */
+    private void addSubclassesToRegistry(Set<? extends Element> rootElements) {
+        final Elements elements = environment.getProcessingEnvironment().getElementUtils();
+        for (Element element : rootElements) {
+            if (element.getKind() != ElementKind.CLASS || registry.isBound(ClassName.get((TypeElement) element))) {
+                continue;
+            }
+            TypeMirror superclass = ((TypeElement) element).getSuperclass();
+            while (superclass.getKind() == TypeKind.DECLARED) {
+                final TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+                final ClassName superName = ClassName.get(superElement);
+                if (registry.isBound(superName)) {
+                    registry.addSubclass((TypeElement) element,
+                            elements.getBinaryName((TypeElement) element).toString(), superName);
+                    break;
                 }
+                superclass = superElement.getSuperclass();
             }
+        }
+    }
 
-            packageBinderMap.get(activityPackage).addMethod(bindBuilder.build());
+    private void addToDeepLinkRouter(ActivityModel activity) {
+        if (activity.deepLinks.isEmpty()) {
+            return;
+        }
+        /* Like the Piri class, the router is built from many activities */
+        if (isolating) {
+            environment.logWarning("PiriDeepLinks are only routed when " + OPTION_ISOLATING + " isn't set", activity.element);
+            return;
         }
 
-        /* And generate it */
-        EnvironmentUtil.generateFile(activityIntentCreator);
+        if (deepLinkRouter == null) {
+            deepLinkRouter = new DeepLinkRouter(deepLinkRouterName);
+        }
+        for (String path : activity.deepLinks) {
+            final String conflict = deepLinkRouter.addRoute(activity, path);
+            if (conflict != null) {
+                environment.logError("PiriDeepLink " + path + " matches the same URIs as " + conflict + "!",
+                        activity.element);
+            }
+        }
     }
 
-    private List<KeyElementPair> findPiriParamFields(Element piriClass) {
-        /* Grab a list of all the elements of this activity */
-        final List<? extends Element> piriClassElements = piriClass.getEnclosedElements();
-        final List<KeyElementPair> pairs = new ArrayList<>();
+    private ActivityModel createActivityModel(TypeElement element, List<KeyElementPair> piriParamList) {
+        final Elements elements = environment.getProcessingEnvironment().getElementUtils();
+        final boolean lazy = isLazy(element);
+        final boolean packedArgs = isPackedArgs(element);
+        checkHeavyParams(element, lazy, packedArgs, piriParamList);
+        if (packedArgs) {
+            checkPackedArgsNames(element, piriParamList);
+        }
+        return new ActivityModel(element,
+                elements.getPackageOf(element).toString(),
+                ClassName.get(element),
+                elements.getBinaryName(element).toString(),
+                lazy,
+                packedArgs,
+                instrumented,
+                compact,
+                piriParamList,
+                getDeepLinks(element, piriParamList));
+    }
 
-        /* Loop through all the elements and find any that are PiriParam annotated */
-        for (Element element : piriClassElements) {
-            final PiriParam piriAnnotation = element.getAnnotation(PiriParam.class);
+    /* Heavy params are read from their own extras, after the others */
+    private void checkHeavyParams(TypeElement element, boolean lazy, boolean packedArgs,
+                                  List<KeyElementPair> piriParamList) {
+        for (KeyElementPair pair : piriParamList) {
+            if (!pair.heavy) {
+                continue;
+            }
+            if (packedArgs) {
+                environment.logError("PiriParams of a packedArgs activity can't be heavy, the args are decoded at once!",
+                        element);
+            } else if (lazy) {
+                environment.logWarning("Heavy PiriParams of a lazy activity are decoded by their accessors, "
+                        + "heavy has no effect", element);
+            }
+            return;
+        }
+    }
 
-            /* Check if it's PiriParam annotated. If so, also ensure we are dealing with a field */
-            if ((piriAnnotation != null) && (element.getKind() == ElementKind.FIELD)) {
-                /* Add to our list of PiriParam KeyElementPairs */
-                pairs.add(new KeyElementPair(element.getSimpleName().toString(), piriAnnotation.required(), element));
+    /* The PackedArgs hold every param in a field of the same name, next to their own members */
+    private void checkPackedArgsNames(TypeElement element, List<KeyElementPair> piriParamList) {
+        for (KeyElementPair pair : piriParamList) {
+            if (ActivityPackedArgs.MEMBER_NAMES.contains(pair.name)) {
+                environment.logError("PiriParam " + pair.name + " of a packedArgs activity can't be named like a member"
+                        + " of its PackedArgs, " + ActivityPackedArgs.MEMBER_NAMES + " are taken!", element);
             }
         }
+    }
+
+    private List<String> getDeepLinks(TypeElement element, List<KeyElementPair> piriParamList) {
+        final AnnotationValue value = EnvironmentUtil.getAnnotationValue(
+                EnvironmentUtil.getAnnotationMirror(element, PiriDeepLink.class), "value");
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        final List<String> deepLinks = new ArrayList<>();
+        for (Object path : (List<?>) value.getValue()) {
+            final String deepLink = (String) ((AnnotationValue) path).getValue();
+            final String error = DeepLinkRouter.validate(deepLink, piriParamList);
+            if (error != null) {
+                environment.logError(error, element);
+            } else {
+                deepLinks.add(deepLink);
+            }
+        }
+        return deepLinks;
+    }
+
+    private static boolean isLazy(TypeElement element) {
+        final AnnotationValue lazy = EnvironmentUtil.getAnnotationValue(
+                EnvironmentUtil.getAnnotationMirror(element, PiriActivity.class), "lazy");
+        return lazy != null && (Boolean) lazy.getValue();
+    }
+
+    private boolean isPackedArgs(TypeElement element) {
+        final AnnotationValue packedArgs = EnvironmentUtil.getAnnotationValue(
+                EnvironmentUtil.getAnnotationMirror(element, PiriActivity.class), "packedArgs");
+        if (packedArgs == null || !(Boolean) packedArgs.getValue()) {
+            return false;
+        }
+        /* Lazy Args read every param by its key */
+        if (isLazy(element)) {
+            environment.logError("PiriActivity can't be both lazy and packedArgs!", element);
+            return false;
+        }
+        return true;
+    }
+
+    private void checkPayloadSizes(List<ActivityModel> activities) {
+        for (ActivityModel activity : activities) {
+            /* Deep link only activities get no extras */
+            if (activity.params.isEmpty()) {
+                continue;
+            }
+
+            final PayloadSize.Estimate estimate = PayloadSize.estimate(activity);
+            sizeEstimates.put(estimate.destination, estimate);
+            /* Unbounded params alone don't fail the budget, there's no number to compare */
+            if (sizeBudget != PayloadSize.UNBOUNDED && estimate.bytes > sizeBudget) {
+                final String message = "The extras of " + activity.binaryName + " may take " + estimate.bytes
+                        + " bytes, more than the " + OPTION_SIZE_BUDGET + " of " + sizeBudget + " bytes"
+                        + (estimate.unboundedKeys.isEmpty() ? "" : ", without the unbounded " + estimate.unboundedKeys);
+                if (sizeBudgetError) {
+                    environment.logError(message, activity.element);
+                } else {
+                    environment.logWarning(message, activity.element);
+                }
+            }
+        }
+
+        if (sizeReportFile != null) {
+            try {
+                PayloadSize.writeTable(sizeEstimates.values(), sizeReportFile);
+            } catch (IOException e) {
+                environment.logWarning("Could not write the Piri size report to " + sizeReportFile + ": " + e, null);
+            }
+        }
+    }
+
+    private KeyElementPair createKeyElementPair(Element element) {
+        /* Read the annotation values from the mirror rather than through a proxy of the annotation */
+        final AnnotationMirror piriAnnotation = EnvironmentUtil.getAnnotationMirror(element, PiriParam.class);
+        final AnnotationValue required = EnvironmentUtil.getAnnotationValue(piriAnnotation, "required");
+        final AnnotationValue transport = EnvironmentUtil.getAnnotationValue(piriAnnotation, "transport");
+        final boolean inMemory = transport != null
+                && ((Element) transport.getValue()).getSimpleName().contentEquals(PiriParam.Transport.IN_MEMORY.name());
+        final AnnotationValue packPrimitives = EnvironmentUtil.getAnnotationValue(piriAnnotation, "packPrimitives");
+        final boolean packed = packPrimitives != null && (Boolean) packPrimitives.getValue();
+        final AnnotationValue heavy = EnvironmentUtil.getAnnotationValue(piriAnnotation, "heavy");
+
+        final ClassName parcelWrapper;
+        final TypeClassifier.Classification classification;
+        if (inMemory) {
+            /* Any object can be kept in memory, the Intent only carries its token */
+            if (element.asType().getKind().isPrimitive()) {
+                environment.logError("Primitive PiriParams can't use the IN_MEMORY transport!", element);
+                return null;
+            }
+            if (packed) {
+                environment.logError("PiriParams with the IN_MEMORY transport can't pack primitives!", element);
+                return null;
+            }
+            parcelWrapper = null;
+            classification = new TypeClassifier.Classification(BundleType.LONG, "in-memory");
+        } else if (packed) {
+            parcelWrapper = null;
+            classification = environment.classifyPacked(element.asType());
+            if (classification == null) {
+                environment.logError("Only a List, ArrayList or Collection of boxed primitives can be packed, not "
+                        + element.asType() + "!", element);
+                return null;
+            }
+        } else {
+            /* PiriParcelable models are sent through their generated Parcelable wrapper */
+            parcelWrapper = ParcelableWrapper.findWrapperClassName(environment, element.asType());
+            classification = parcelWrapper != null
+                    ? new TypeClassifier.Classification(BundleType.PARCELABLE, "parcel-wrapper")
+                    : environment.classify(element.asType());
+            if (classification == null) {
+                environment.logError("PiriParam type " + element.asType() + " can't be put into an Intent!", element);
+                return null;
+            }
+        }
+
+        final PayloadSize.Bounds bounds = new PayloadSize.Bounds(getIntValue(piriAnnotation, "maxLength"),
+                getIntValue(piriAnnotation, "maxSize"), getIntValue(piriAnnotation, "maxBytes"));
+        if (bounds.maxLength < PayloadSize.UNBOUNDED || bounds.maxSize < PayloadSize.UNBOUNDED
+                || bounds.maxBytes < PayloadSize.UNBOUNDED) {
+            environment.logError("The maxLength, maxSize and maxBytes of a PiriParam can't be negative!", element);
+            return null;
+        }
+
+        return new KeyElementPair(element.getSimpleName().toString(),
+                required != null && (Boolean) required.getValue(),
+                element.getSimpleName().toString(),
+                TypeName.get(element.asType()),
+                element.asType().getKind().isPrimitive(),
+                classification.bundleType,
+                classification.path,
+                parcelWrapper,
+                inMemory,
+                packed,
+                heavy != null && (Boolean) heavy.getValue(),
+                bounds);
+    }
+
+    /* Defaults aren't part of the mirror */
+    private static int getIntValue(AnnotationMirror annotation, String name) {
+        final AnnotationValue value = EnvironmentUtil.getAnnotationValue(annotation, name);
+        return value != null ? (Integer) value.getValue() : PayloadSize.UNBOUNDED;
+    }
 
-        return pairs;
+    /* The files of one activity and how long building them took */
+    private static final class GeneratedFiles {
+        final List<GeneratedSource> sources = new ArrayList<>(3);
+        long binderNanos;
+        long intentCreatorNanos;
     }
 }
@@ -0,0 +1,120 @@
+package com.raqun;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Methods of the generated code which carry a list of boxed primitives as a primitive array, e.g. a
+ * List<Long> as a long[]. The array is parcelled as a block of values, where every element of a
+ * Serializable list would be written as an object.
+ */
+
+final class PrimitivePacking {
+    /* Other methods of the IntentCreator and args are named after the params, the $ is left to generated code */
+    private static final String PACK_METHOD_PREFIX = "$pack";
+    private static final String UNPACK_METHOD_PREFIX = "$unpack";
+    private static final ClassName collectionClass = ClassName.get(Collection.class);
+    private static final ClassName arrayListClass = ClassName.get(ArrayList.class);
+
+    private PrimitivePacking() {}
+
+    /* e.g. $packLongs(this.ids) */
+    static String getPackMethodName(KeyElementPair pair) {
+        return PACK_METHOD_PREFIX + getElementName(pair);
+    }
+
+    static String getUnpackMethodName(KeyElementPair pair) {
+        return UNPACK_METHOD_PREFIX + getElementName(pair);
+    }
+
+    /* The primitive array a packed param is sent as, e.g. long[] */
+    static TypeName getPackedType(KeyElementPair pair) {
+        return ArrayTypeName.of(getPrimitive(pair));
+    }
+
+    /* Adds one pack method per element type of the packed params */
+    static void addPackMethods(TypeSpec.Builder builder, List<KeyElementPair> params) {
+        final Set<BundleType> added = new HashSet<>();
+        for (KeyElementPair pair : params) {
+            if (pair.packed && added.add(pair.bundleType)) {
+                final TypeName primitive = getPrimitive(pair);
+                builder.addMethod(MethodSpec.methodBuilder(getPackMethodName(pair))
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(ArrayTypeName.of(primitive))
+                        .addParameter(ParameterizedTypeName.get(collectionClass, primitive.box()), "values")
+                        .addStatement("final $T packed = new $T[values.size()]", ArrayTypeName.of(primitive), primitive)
+                        .addStatement("int i = 0")
+                        .beginControlFlow("for ($T value : values)", primitive.box())
+                        .addStatement("packed[i++] = value")
+                        .endControlFlow()
+                        .addStatement("return packed")
+                        .build());
+            }
+        }
+    }
+
+    /* Adds one unpack method per element type of the packed params */
+    static void addUnpackMethods(TypeSpec.Builder builder, List<KeyElementPair> params) {
+        final Set<BundleType> added = new HashSet<>();
+        for (KeyElementPair pair : params) {
+            if (pair.packed && added.add(pair.bundleType)) {
+                final TypeName primitive = getPrimitive(pair);
+                final TypeName listType = ParameterizedTypeName.get(arrayListClass, primitive.box());
+                builder.addMethod(MethodSpec.methodBuilder(getUnpackMethodName(pair))
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(listType)
+                        .addParameter(ArrayTypeName.of(primitive), "packed")
+                        .beginControlFlow("if (packed == null)")
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("final $T values = new $T(packed.length)", listType, listType)
+                        .beginControlFlow("for ($T value : packed)", primitive)
+                        .addStatement("values.add(value)")
+                        .endControlFlow()
+                        .addStatement("return values")
+                        .build());
+            }
+        }
+    }
+
+    /* e.g. Longs for a long[] */
+    private static String getElementName(KeyElementPair pair) {
+        final String primitive = getPrimitive(pair).toString();
+        return Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1) + "s";
+    }
+
+    private static TypeName getPrimitive(KeyElementPair pair) {
+        switch (pair.bundleType) {
+            case BOOLEAN_ARRAY:
+                return TypeName.BOOLEAN;
+            case BYTE_ARRAY:
+                return TypeName.BYTE;
+            case CHAR_ARRAY:
+                return TypeName.CHAR;
+            case SHORT_ARRAY:
+                return TypeName.SHORT;
+            case INT_ARRAY:
+                return TypeName.INT;
+            case LONG_ARRAY:
+                return TypeName.LONG;
+            case FLOAT_ARRAY:
+                return TypeName.FLOAT;
+            case DOUBLE_ARRAY:
+                return TypeName.DOUBLE;
+            default:
+                throw new IllegalArgumentException(pair.bundleType + " isn't a primitive array");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.raqun;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What processing cost, written as JSON when the piri.stats option is set. Times are in microseconds,
+ * the build times are summed over the threads that built the code.
+ */
+
+final class ProcessingStats {
+    private static final int VERSION = 1;
+
+    private final String mode;
+    private final int threads;
+    private final List<Round> rounds = new ArrayList<>();
+
+    ProcessingStats(boolean isolating, int threads) {
+        this.mode = isolating ? "isolating" : "aggregating";
+        this.threads = threads;
+    }
+
+    Round startRound() {
+        final Round round = new Round(rounds.size() + 1);
+        rounds.add(round);
+        return round;
+    }
+
+    /* Rewritten after every round, so the file is complete whichever round is the last */
+    void writeTo(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    String toJson() {
+        final StringBuilder json = new StringBuilder("{\n")
+                .append("  \"version\": ").append(VERSION).append(",\n")
+                .append("  \"mode\": ").append(quote(mode)).append(",\n")
+                .append("  \"threads\": ").append(threads).append(",\n")
+                .append("  \"rounds\": [");
+        for (int i = 0; i < rounds.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            rounds.get(i).appendTo(json);
+        }
+        return json.append(rounds.isEmpty() ? "]\n" : "\n  ]\n").append("}\n").toString();
+    }
+
+    private static String quote(String value) {
+        final StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    static final class Round {
+        private final int number;
+        private final List<String> files = new ArrayList<>();
+        private final List<String> params = new ArrayList<>();
+
+        long wallNanos;
+        long discoveryNanos;
+        long parcelWrapperNanos;
+        long intentCreatorNanos;
+        long binderNanos;
+        long generateFileNanos;
+        int activities;
+
+        private Round(int number) {
+            this.number = number;
+        }
+
+        void addFile(String name, long bytes) {
+            files.add("{\"name\": " + quote(name) + ", \"bytes\": " + bytes + "}");
+        }
+
+        void addParam(String activity, KeyElementPair pair) {
+            params.add("{\"activity\": " + quote(activity)
+                    + ", \"field\": " + quote(pair.name)
+                    + ", \"type\": " + quote(pair.type.toString())
+                    + ", \"bundleType\": " + quote(pair.bundleType.name())
+                    + ", \"path\": " + quote(pair.classificationPath) + "}");
+        }
+
+        private void appendTo(StringBuilder json) {
+            json.append("    {\n")
+                    .append("      \"round\": ").append(number).append(",\n")
+                    .append("      \"wallMicros\": ").append(micros(wallNanos)).append(",\n")
+                    .append("      \"activities\": ").append(activities).append(",\n")
+                    .append("      \"params\": ").append(params.size()).append(",\n")
+                    .append("      \"discoveryMicros\": ").append(micros(discoveryNanos)).append(",\n")
+                    .append("      \"parcelWrapperMicros\": ").append(micros(parcelWrapperNanos)).append(",\n")
+                    .append("      \"intentCreatorMicros\": ").append(micros(intentCreatorNanos)).append(",\n")
+                    .append("      \"binderMicros\": ").append(micros(binderNanos)).append(",\n")
+                    .append("      \"generateFileMicros\": ").append(micros(generateFileNanos)).append(",\n");
+            appendList(json, "generatedFiles", files);
+            json.append(",\n");
+            appendList(json, "paramTypes", params);
+            json.append("\n    }");
+        }
+
+        private static void appendList(StringBuilder json, String name, List<String> items) {
+            json.append("      ").append(quote(name)).append(": [");
+            for (int i = 0; i < items.size(); i++) {
+                json.append(i == 0 ? "\n        " : ",\n        ").append(items.get(i));
+            }
+            json.append(items.isEmpty() ? "]" : "\n      ]");
+        }
+    }
+}
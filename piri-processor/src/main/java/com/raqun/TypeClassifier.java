@@ -0,0 +1,253 @@
+package com.raqun;
+
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Types;
+
+/**
+ * Finds the BundleType of a field. The well known types are resolved once per processing environment.
+ */
+
+final class TypeClassifier {
+    /* A BundleType and the branch of the classification which decided it, the later ones check assignability */
+    static final class Classification {
+        final BundleType bundleType;
+        final String path;
+
+        Classification(BundleType bundleType, String path) {
+            this.bundleType = bundleType;
+            this.path = path;
+        }
+    }
+
+    private final Types types;
+
+    private final TypeMirror activityType;
+    private final TypeMirror stringType;
+    private final TypeMirror charSequenceType;
+    private final TypeMirror integerType;
+    private final TypeMirror serializableType;
+    private final TypeMirror bundleType;
+    private final TypeMirror parcelableType;
+    private final TypeMirror arrayListType;
+    private final TypeMirror listType;
+    private final TypeMirror collectionType;
+
+    TypeClassifier(ProcessingEnvironment environment) {
+        this.types = environment.getTypeUtils();
+        this.activityType = getType(environment, "android.app.Activity");
+        this.stringType = getType(environment, "java.lang.String");
+        this.charSequenceType = getType(environment, "java.lang.CharSequence");
+        this.integerType = getType(environment, "java.lang.Integer");
+        this.serializableType = getType(environment, "java.io.Serializable");
+        this.bundleType = getType(environment, "android.os.Bundle");
+        this.parcelableType = getType(environment, "android.os.Parcelable");
+        this.arrayListType = types.erasure(getType(environment, "java.util.ArrayList"));
+        this.listType = types.erasure(getType(environment, "java.util.List"));
+        this.collectionType = types.erasure(getType(environment, "java.util.Collection"));
+    }
+
+    private static TypeMirror getType(ProcessingEnvironment environment, String name) {
+        final TypeElement element = environment.getElementUtils().getTypeElement(name);
+        return element == null ? null : element.asType();
+    }
+
+    boolean isActivity(TypeMirror typeMirror) {
+        return activityType != null && types.isAssignable(typeMirror, activityType);
+    }
+
+    /**
+     * @return the most efficient BundleType for the given type, or null if an Intent can't carry it
+     */
+    Classification classify(TypeMirror typeMirror) {
+        switch (typeMirror.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case CHAR:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return classification(classifyPrimitive(typeMirror.getKind()), "primitive");
+            case ARRAY:
+                return classification(classifyArray((ArrayType) typeMirror), "array");
+            case DECLARED:
+                return classifyDeclared((DeclaredType) typeMirror);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the primitive array BundleType a list of boxed primitives is packed into, or null if the
+     * type isn't such a list
+     */
+    Classification classifyPacked(TypeMirror typeMirror) {
+        if (typeMirror.getKind() != TypeKind.DECLARED || !isList((DeclaredType) typeMirror)) {
+            return null;
+        }
+
+        final List<? extends TypeMirror> typeArguments = ((DeclaredType) typeMirror).getTypeArguments();
+        if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final PrimitiveType primitiveType;
+        try {
+            primitiveType = types.unboxedType(typeArguments.get(0));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return classification(classifyArray(types.getArrayType(primitiveType)), "packed");
+    }
+
+    private static Classification classification(BundleType bundleType, String path) {
+        return bundleType == null ? null : new Classification(bundleType, path);
+    }
+
+    private BundleType classifyPrimitive(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return BundleType.BOOLEAN;
+            case BYTE:
+                return BundleType.BYTE;
+            case CHAR:
+                return BundleType.CHAR;
+            case SHORT:
+                return BundleType.SHORT;
+            case INT:
+                return BundleType.INT;
+            case LONG:
+                return BundleType.LONG;
+            case FLOAT:
+                return BundleType.FLOAT;
+            case DOUBLE:
+                return BundleType.DOUBLE;
+            default:
+                return null;
+        }
+    }
+
+    private BundleType classifyArray(ArrayType arrayType) {
+        final TypeMirror component = arrayType.getComponentType();
+        switch (component.getKind()) {
+            case BOOLEAN:
+                return BundleType.BOOLEAN_ARRAY;
+            case BYTE:
+                return BundleType.BYTE_ARRAY;
+            case CHAR:
+                return BundleType.CHAR_ARRAY;
+            case SHORT:
+                return BundleType.SHORT_ARRAY;
+            case INT:
+                return BundleType.INT_ARRAY;
+            case LONG:
+                return BundleType.LONG_ARRAY;
+            case FLOAT:
+                return BundleType.FLOAT_ARRAY;
+            case DOUBLE:
+                return BundleType.DOUBLE_ARRAY;
+            default:
+                break;
+        }
+
+        if (isSameType(component, stringType)) {
+            return BundleType.STRING_ARRAY;
+        } else if (isSameType(component, charSequenceType)) {
+            return BundleType.CHAR_SEQUENCE_ARRAY;
+        } else if (isAssignable(component, parcelableType)) {
+            return BundleType.PARCELABLE_ARRAY;
+        }
+        /* Every other array is Serializable */
+        return BundleType.SERIALIZABLE;
+    }
+
+    private Classification classifyDeclared(DeclaredType declaredType) {
+        final BundleType boxed = classifyBoxed(declaredType);
+        if (boxed != null) {
+            return new Classification(boxed, "boxed");
+        }
+
+        if (isSameType(declaredType, stringType)) {
+            return new Classification(BundleType.STRING, "known-type");
+        } else if (isSameType(declaredType, charSequenceType)) {
+            return new Classification(BundleType.CHAR_SEQUENCE, "known-type");
+        } else if (isSameType(declaredType, bundleType)) {
+            return new Classification(BundleType.BUNDLE, "known-type");
+        }
+
+        final BundleType arrayList = classifyArrayList(declaredType);
+        if (arrayList != null) {
+            return new Classification(arrayList, "array-list");
+        }
+
+        /* Parcelable always wins over Serializable, it doesn't need reflection */
+        if (isAssignable(declaredType, parcelableType)) {
+            return new Classification(BundleType.PARCELABLE, "assignable");
+        } else if (isAssignable(declaredType, serializableType)) {
+            return new Classification(BundleType.SERIALIZABLE, "assignable");
+        }
+        return null;
+    }
+
+    private BundleType classifyBoxed(DeclaredType declaredType) {
+        final PrimitiveType primitiveType;
+        try {
+            primitiveType = types.unboxedType(declaredType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return classifyPrimitive(primitiveType.getKind());
+    }
+
+    private BundleType classifyArrayList(DeclaredType declaredType) {
+        if (!isList(declaredType)) {
+            return null;
+        }
+
+        final List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+        if (typeArguments.size() != 1) {
+            return null;
+        }
+
+        TypeMirror element = typeArguments.get(0);
+        if (element.getKind() == TypeKind.WILDCARD) {
+            /* ArrayList<? extends Parcelable> is what putParcelableArrayListExtra accepts */
+            final TypeMirror bound = ((WildcardType) element).getExtendsBound();
+            return bound != null && isAssignable(bound, parcelableType) ? BundleType.PARCELABLE_ARRAY_LIST : null;
+        }
+
+        if (isSameType(element, integerType)) {
+            return BundleType.INTEGER_ARRAY_LIST;
+        } else if (isSameType(element, stringType)) {
+            return BundleType.STRING_ARRAY_LIST;
+        } else if (isSameType(element, charSequenceType)) {
+            return BundleType.CHAR_SEQUENCE_ARRAY_LIST;
+        } else if (isAssignable(element, parcelableType)) {
+            return BundleType.PARCELABLE_ARRAY_LIST;
+        }
+        return null;
+    }
+
+    /* An ArrayList or one of the interfaces the generated code can copy into an ArrayList */
+    private boolean isList(DeclaredType declaredType) {
+        final TypeMirror erasure = types.erasure(declaredType);
+        return isSameType(erasure, arrayListType) || isSameType(erasure, listType) || isSameType(erasure, collectionType);
+    }
+
+    private boolean isSameType(TypeMirror typeMirror, TypeMirror knownType) {
+        return knownType != null && types.isSameType(typeMirror, knownType);
+    }
+
+    private boolean isAssignable(TypeMirror typeMirror, TypeMirror knownType) {
+        return knownType != null && types.isAssignable(typeMirror, knownType);
+    }
+}
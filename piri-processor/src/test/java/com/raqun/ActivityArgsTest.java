@@ -0,0 +1,74 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityArgsTest {
+
+    @Test
+    public void lazyActivitiesGetArgsInsteadOfABinder() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.LazyActivity", "package com.example;"
+                        + " import com.raqun.PiriActivity;"
+                        + " import com.raqun.PiriParam;"
+                        + " @PiriActivity(lazy = true)"
+                        + " public class LazyActivity extends android.app.Activity {"
+                        + " @PiriParam(required = true) protected long id;"
+                        + " @PiriParam protected java.util.HashMap<String, Integer> counts;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String args = result.generated.get("com/example/LazyActivityArgs.java");
+        assertTrue(result.generated.keySet().toString(), args != null);
+        assertFalse(result.generated.containsKey("com/example/LazyActivityBinder.java"));
+        assertFalse(result.generated.containsKey("com/example/Piri.java"));
+
+        assertTrue(args, args.contains("private volatile int decodedMask;"));
+        assertTrue(args, args.contains("public long id() {\n"
+                + "    if ((decodedMask & 0x1) == 0) {\n"
+                + "      synchronized (this) {\n"
+                + "        if ((decodedMask & 0x1) == 0) {\n"
+                + "          this.id = intent.getLongExtra(\"id\", -1L);\n"
+                + "          decodedMask |= 0x1;"));
+        assertTrue(args, args.contains("@SuppressWarnings(\"unchecked\")\n  public HashMap<String, Integer> counts() {"));
+        assertTrue(args, args.contains("return new LazyActivityArgs(activity.getIntent());"));
+    }
+
+    @Test
+    public void paramsCanTakeTheNameOfTheIntent() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.IntentActivity", "package com.example;"
+                        + " @com.raqun.PiriActivity(lazy = true)"
+                        + " public class IntentActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected String intent;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String args = result.generated.get("com/example/IntentActivityArgs.java");
+        assertTrue(args, args.contains("private final Intent intent_;"));
+        assertTrue(args, args.contains("this.intent_ = intent;"));
+        assertTrue(args, args.contains("private String intent;"));
+        assertTrue(args, args.contains("this.intent = intent_.getStringExtra(\"intent\");"));
+    }
+
+    @Test
+    public void paramsCanTakeTheNameOfAMask() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.MaskActivity", "package com.example;"
+                        + " @com.raqun.PiriActivity(lazy = true)"
+                        + " public class MaskActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected int decodedMask;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String args = result.generated.get("com/example/MaskActivityArgs.java");
+        assertTrue(args, args.contains("private volatile int decodedMask_;"));
+        assertTrue(args, args.contains("private int decodedMask;"));
+        assertTrue(args, args.contains("          this.decodedMask = intent.getIntExtra(\"decodedMask\", -1);\n"
+                + "          decodedMask_ |= 0x1;"));
+    }
+}
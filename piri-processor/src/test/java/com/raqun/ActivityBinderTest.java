@@ -0,0 +1,311 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityBinderTest {
+
+    @Test
+    public void rebindOnlyAssignsChangedParams() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.PlayerActivity", "package com.example;"
+                + " public class PlayerActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam(required = true) protected long trackId;"
+                + " @com.raqun.PiriParam protected String title;"
+                + " @com.raqun.PiriParam protected java.util.HashMap<String, Integer> stats;"
+                + " }");
+        /* The stub Intent has no extras, this one reads them from a map */
+        sources.put("com.example.MapIntent", "package com.example;"
+                + " public class MapIntent extends android.content.Intent {"
+                + " private final java.util.Map<String, Object> extras;"
+                + " public MapIntent(java.util.Map<String, Object> extras) { super(null, null); this.extras = extras; }"
+                + " @Override public boolean hasExtra(String name) { return extras.containsKey(name); }"
+                + " @Override public long getLongExtra(String name, long defaultValue) {"
+                + " return extras.containsKey(name) ? (Long) extras.get(name) : defaultValue; }"
+                + " @Override public String getStringExtra(String name) { return (String) extras.get(name); }"
+                + " @Override public java.io.Serializable getSerializableExtra(String name) {"
+                + " return (java.io.Serializable) extras.get(name); }"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String binder = result.generated.get("com/example/PlayerActivityBinder.java");
+        assertTrue(binder, binder.contains("if (intent.hasExtra(\"stats\")) {\n"
+                + "      HashMap<String, Integer> statsValue = (HashMap<String, Integer>) intent.getSerializableExtra(\"stats\");\n"
+                + "      if (!isEqual(activity.stats, statsValue)) {\n"));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> activityClass = classLoader.loadClass("com.example.PlayerActivity");
+        final Method rebind = classLoader.loadClass("com.example.Piri").getDeclaredMethod("rebind",
+                activityClass, classLoader.loadClass("android.content.Intent"));
+        rebind.setAccessible(true);
+        final Constructor<?> intentConstructor = classLoader.loadClass("com.example.MapIntent").getConstructor(Map.class);
+        final Field trackId = activityClass.getDeclaredField("trackId");
+        trackId.setAccessible(true);
+        final Field title = activityClass.getDeclaredField("title");
+        title.setAccessible(true);
+        final Field stats = activityClass.getDeclaredField("stats");
+        stats.setAccessible(true);
+
+        final Object activity = activityClass.newInstance();
+        trackId.setLong(activity, 1L);
+        title.set(activity, "Intro");
+        final HashMap<String, Integer> currentStats = new HashMap<>();
+        currentStats.put("plays", 3);
+        stats.set(activity, currentStats);
+
+        /* Equal values aren't assigned, missing extras leave their params alone */
+        final Map<String, Object> extras = new HashMap<>();
+        extras.put("trackId", 1L);
+        extras.put("stats", new HashMap<>(currentStats));
+        assertEquals(Collections.emptySet(), rebind.invoke(null, activity, intentConstructor.newInstance(extras)));
+        assertTrue(stats.get(activity) == currentStats);
+        assertEquals("Intro", title.get(activity));
+
+        extras.put("trackId", 2L);
+        extras.put("title", "Outro");
+        assertEquals(new HashSet<>(Arrays.asList("trackId", "title")),
+                rebind.invoke(null, activity, intentConstructor.newInstance(extras)));
+        assertEquals(2L, trackId.getLong(activity));
+        assertEquals("Outro", title.get(activity));
+        assertTrue(stats.get(activity) == currentStats);
+    }
+
+    @Test
+    public void bindAsyncDeliversHeavyParamsUntilCancelled() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.ReportActivity", "package com.example;"
+                + " public class ReportActivity extends android.app.Activity {"
+                + " public android.content.Intent intent; public boolean destroyed;"
+                + " @com.raqun.PiriParam(required = true) protected long id;"
+                + " @com.raqun.PiriParam(heavy = true) protected String report;"
+                + " @com.raqun.PiriParam(heavy = true) protected String[] pages;"
+                + " @Override public android.content.Intent getIntent() { return intent; }"
+                + " @Override public boolean isDestroyed() { return destroyed; }"
+                + " }");
+        /* Records the extras that are read */
+        sources.put("com.example.MapIntent", "package com.example;"
+                + " public class MapIntent extends android.content.Intent {"
+                + " private final java.util.Map<String, Object> extras;"
+                + " public final java.util.List<String> reads = new java.util.ArrayList<>();"
+                + " public MapIntent(java.util.Map<String, Object> extras) { super(null, null); this.extras = extras; }"
+                + " @Override public boolean hasExtra(String name) { return extras.containsKey(name); }"
+                + " @Override public long getLongExtra(String name, long defaultValue) {"
+                + " reads.add(name); return extras.containsKey(name) ? (Long) extras.get(name) : defaultValue; }"
+                + " @Override public android.os.Bundle getBundleExtra(String name) {"
+                + " reads.add(name); return (android.os.Bundle) extras.get(name); }"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* The heavy params are sent in a Bundle of their own */
+        final String creator = result.generated.get("com/example/ReportActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("int size = 2;\n"));
+        assertTrue(creator, creator.contains("Bundle heavyExtras = new Bundle(2);\n"));
+        assertTrue(creator, creator.contains("heavyExtras.putString(\"report\", this.report);"));
+        assertTrue(creator, creator.contains("extras.putBundle(\"" + ActivityBinder.HEAVY_EXTRAS_KEY + "\", heavyExtras);\n"
+                + "    intent.putExtras(extras);"));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> activityClass = classLoader.loadClass("com.example.ReportActivity");
+        final Class<?> listenerClass = classLoader.loadClass("com.raqun.PiriBinding$Listener");
+        final Method bindAsync = classLoader.loadClass("com.example.Piri").getDeclaredMethod("bindAsync",
+                activityClass, Executor.class, listenerClass);
+        bindAsync.setAccessible(true);
+        final Method cancel = classLoader.loadClass("com.raqun.PiriBinding").getMethod("cancel");
+        final Field id = activityClass.getDeclaredField("id");
+        id.setAccessible(true);
+        final Field report = activityClass.getDeclaredField("report");
+        report.setAccessible(true);
+        final Field pages = activityClass.getDeclaredField("pages");
+        pages.setAccessible(true);
+
+        final Class<?> bundleClass = classLoader.loadClass("android.os.Bundle");
+        final Object heavyExtras = bundleClass.newInstance();
+        bundleClass.getMethod("putString", String.class, String.class).invoke(heavyExtras, "report", "Q3");
+        bundleClass.getMethod("putStringArray", String.class, String[].class)
+                .invoke(heavyExtras, "pages", (Object) new String[]{"1", "2"});
+        final List<?> heavyReads = (List<?>) bundleClass.getField("reads").get(heavyExtras);
+        final Map<String, Object> extras = new HashMap<>();
+        extras.put("id", 7L);
+        extras.put(ActivityBinder.HEAVY_EXTRAS_KEY, heavyExtras);
+        final Class<?> intentClass = classLoader.loadClass("com.example.MapIntent");
+        final Object intent = intentClass.getConstructor(Map.class).newInstance(extras);
+        final List<?> intentReads = (List<?>) intentClass.getField("reads").get(intent);
+        final List<String> ready = new ArrayList<>();
+        final Map<String, RuntimeException> failed = new HashMap<>();
+        final Object listener = Proxy.newProxyInstance(classLoader, new Class<?>[]{listenerClass},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("onParamFailed")) {
+                            failed.put((String) args[0], (RuntimeException) args[1]);
+                        } else {
+                            ready.add((String) args[0]);
+                        }
+                        return null;
+                    }
+                });
+        final List<Runnable> tasks = new ArrayList<>();
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+
+        /* The light params are bound right away, no heavy one is decoded before the task runs */
+        final Object activity = activityClass.newInstance();
+        activityClass.getField("intent").set(activity, intent);
+        bindAsync.invoke(null, activity, executor, listener);
+        assertEquals(7L, id.getLong(activity));
+        assertNull(report.get(activity));
+        assertEquals(Arrays.asList("id", ActivityBinder.HEAVY_EXTRAS_KEY), intentReads);
+        assertTrue(heavyReads.toString(), heavyReads.isEmpty());
+        assertEquals(1, tasks.size());
+
+        /* The task only reads the Bundle of the heavy params */
+        tasks.remove(0).run();
+        assertEquals("Q3", report.get(activity));
+        assertTrue(Arrays.equals(new String[]{"1", "2"}, (String[]) pages.get(activity)));
+        assertEquals(Arrays.asList("report", "pages"), ready);
+        assertEquals(Arrays.asList("report", "pages"), heavyReads);
+        assertEquals(Arrays.asList("id", ActivityBinder.HEAVY_EXTRAS_KEY), intentReads);
+
+        /* Nothing is assigned after cancel() or onDestroy() */
+        ready.clear();
+        final Object cancelledActivity = activityClass.newInstance();
+        activityClass.getField("intent").set(cancelledActivity, intent);
+        cancel.invoke(bindAsync.invoke(null, cancelledActivity, executor, listener));
+        tasks.remove(0).run();
+        assertNull(report.get(cancelledActivity));
+
+        final Object destroyedActivity = activityClass.newInstance();
+        activityClass.getField("intent").set(destroyedActivity, intent);
+        bindAsync.invoke(null, destroyedActivity, executor, listener);
+        activityClass.getField("destroyed").setBoolean(destroyedActivity, true);
+        tasks.remove(0).run();
+        assertNull(report.get(destroyedActivity));
+        assertTrue(ready.isEmpty());
+
+        /* A param that can't be decoded is reported, the ones after it aren't decoded */
+        bundleClass.getMethod("putInt", String.class, int.class).invoke(heavyExtras, "report", 3);
+        final Object failingActivity = activityClass.newInstance();
+        activityClass.getField("intent").set(failingActivity, intent);
+        bindAsync.invoke(null, failingActivity, executor, listener);
+        tasks.remove(0).run();
+        assertEquals(Collections.singleton("report"), failed.keySet());
+        assertTrue(failed.get("report") instanceof ClassCastException);
+        assertNull(pages.get(failingActivity));
+        assertTrue(ready.isEmpty());
+    }
+
+    @Test
+    public void restorePrefersTheSavedStateOverTheIntent() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.EditorActivity", "package com.example;"
+                + " public class EditorActivity extends android.app.Activity {"
+                + " public android.content.Intent intent;"
+                + " @com.raqun.PiriParam(required = true) protected long noteId;"
+                + " @com.raqun.PiriParam protected String draft;"
+                + " @com.raqun.PiriParam protected Integer cursor;"
+                + " @Override public android.content.Intent getIntent() { return intent; }"
+                + " }");
+        /* Counts how often an extra is read */
+        sources.put("com.example.MapIntent", "package com.example;"
+                + " public class MapIntent extends android.content.Intent {"
+                + " private final java.util.Map<String, Object> extras;"
+                + " public int reads;"
+                + " public MapIntent(java.util.Map<String, Object> extras) { super(null, null); this.extras = extras; }"
+                + " @Override public long getLongExtra(String name, long defaultValue) { reads++;"
+                + " return extras.containsKey(name) ? (Long) extras.get(name) : defaultValue; }"
+                + " @Override public int getIntExtra(String name, int defaultValue) { reads++;"
+                + " return extras.containsKey(name) ? (Integer) extras.get(name) : defaultValue; }"
+                + " @Override public String getStringExtra(String name) { reads++; return (String) extras.get(name); }"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> activityClass = classLoader.loadClass("com.example.EditorActivity");
+        final Class<?> bundleClass = classLoader.loadClass("android.os.Bundle");
+        final Class<?> piriClass = classLoader.loadClass("com.example.Piri");
+        final Method save = piriClass.getDeclaredMethod("save", activityClass, bundleClass);
+        save.setAccessible(true);
+        final Method restore = piriClass.getDeclaredMethod("restore", activityClass, bundleClass);
+        restore.setAccessible(true);
+        final Field noteId = activityClass.getDeclaredField("noteId");
+        noteId.setAccessible(true);
+        final Field draft = activityClass.getDeclaredField("draft");
+        draft.setAccessible(true);
+        final Field cursor = activityClass.getDeclaredField("cursor");
+        cursor.setAccessible(true);
+
+        final Map<String, Object> extras = new HashMap<>();
+        extras.put("noteId", 1L);
+        extras.put("draft", "Hello");
+        extras.put("cursor", 5);
+        final Class<?> intentClass = classLoader.loadClass("com.example.MapIntent");
+        final Field reads = intentClass.getField("reads");
+
+        /* Without saved state the params are bound from the Intent */
+        final Object intent = intentClass.getConstructor(Map.class).newInstance(extras);
+        final Object activity = activityClass.newInstance();
+        activityClass.getField("intent").set(activity, intent);
+        restore.invoke(null, activity, null);
+        assertEquals(1L, noteId.getLong(activity));
+        assertEquals("Hello", draft.get(activity));
+        assertEquals(3, reads.getInt(intent));
+
+        /* Values changed by the screen are restored, a null too, without reading the Intent */
+        noteId.setLong(activity, 2L);
+        draft.set(activity, null);
+        cursor.set(activity, 9);
+        final Object outState = bundleClass.newInstance();
+        save.invoke(null, activity, outState);
+        reads.setInt(intent, 0);
+        final Object recreated = activityClass.newInstance();
+        activityClass.getField("intent").set(recreated, intent);
+        restore.invoke(null, recreated, outState);
+        assertEquals(2L, noteId.getLong(recreated));
+        assertNull(draft.get(recreated));
+        assertEquals(9, cursor.get(recreated));
+        assertEquals(0, reads.getInt(intent));
+
+        /* A saved value missing from the state is bound from the Intent */
+        final Object partialState = bundleClass.newInstance();
+        final Object partial = bundleClass.newInstance();
+        bundleClass.getMethod("putLong", String.class, long.class).invoke(partial, "noteId", 3L);
+        bundleClass.getMethod("putBundle", String.class, bundleClass).invoke(partialState, "com.raqun.piri.state", partial);
+        final Object partiallyRestored = activityClass.newInstance();
+        activityClass.getField("intent").set(partiallyRestored, intent);
+        restore.invoke(null, partiallyRestored, partialState);
+        assertEquals(3L, noteId.getLong(partiallyRestored));
+        assertEquals("Hello", draft.get(partiallyRestored));
+        assertEquals(5, cursor.get(partiallyRestored));
+    }
+}
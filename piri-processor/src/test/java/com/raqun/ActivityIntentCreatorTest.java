@@ -0,0 +1,193 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityIntentCreatorTest {
+
+    @Test
+    public void primitiveParamsAreNotBoxed() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class PrimitiveActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected long id;"
+                + " @PiriParam protected int position;"
+                + " @PiriParam protected Integer boxed;"
+                + " }");
+
+        assertTrue(creator, creator.contains("private final long id;"));
+        assertTrue(creator, creator.contains("private int position;"));
+        assertTrue(creator, creator.contains("PrimitiveActivityIntentCreator(@NonNull Context context, long id)"));
+        assertTrue(creator, creator.contains("setMask |= 0x1;"));
+        assertTrue(creator, creator.contains("if ((setMask & 0x1) != 0) {"));
+        assertFalse(creator, creator.contains("java.lang.Long"));
+
+        /* A declared boxed type still uses null for "unset" */
+        assertTrue(creator, creator.contains("private Integer boxed = null;"));
+    }
+
+    @Test
+    public void everyThirtyTwoOptionalPrimitivesShareAMask() throws Exception {
+        final StringBuilder source = new StringBuilder("package com.example;"
+                + " public class ManyActivity extends android.app.Activity {");
+        for (int i = 0; i < 40; i++) {
+            source.append(" @com.raqun.PiriParam protected int param").append(i).append(';');
+        }
+        final String creator = compileCreator(source.append(" }").toString());
+
+        assertTrue(creator, creator.contains("if ((setMask & 0x80000000) != 0) {\n      extras.putInt(\"param31\", this.param31);"));
+        assertTrue(creator, creator.contains("if ((setMask1 & 0x1) != 0) {\n      extras.putInt(\"param32\", this.param32);"));
+        assertTrue(creator, creator.contains("size += Integer.bitCount(setMask);\n    size += Integer.bitCount(setMask1);"));
+    }
+
+    @Test
+    public void maskDoesntTakeTheNameOfAParam() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class MaskActivity extends android.app.Activity {"
+                + " @PiriParam protected int setMask;"
+                + " @PiriParam protected boolean setMask_;"
+                + " }");
+
+        assertTrue(creator, creator.contains("private int setMask;"));
+        assertTrue(creator, creator.contains("private boolean setMask_;"));
+        assertTrue(creator, creator.contains("private int setMask__;"));
+        assertTrue(creator, creator.contains("this.setMask = setMask;\n    setMask__ |= 0x1;"));
+        assertTrue(creator, creator.contains("size += Integer.bitCount(setMask__);"));
+    }
+
+    @Test
+    public void extrasArePutIntoOnePresizedBundle() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class SizedActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected long id;"
+                + " @PiriParam protected String name;"
+                + " @PiriParam protected int position;"
+                + " }");
+
+        assertTrue(creator, creator.contains("int size = 1;\n"
+                + "    if (this.name != null) {\n"
+                + "      size++;\n"
+                + "    }\n"
+                + "    size += Integer.bitCount(setMask);\n"
+                + "    Bundle extras = new Bundle(size);\n"));
+        assertTrue(creator, creator.contains("intent.putExtras(extras);\n    return intent;"));
+        assertFalse(creator, creator.contains("intent.putExtra("));
+    }
+
+    @Test
+    public void createIntentTakesEveryParam() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class FastActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected long id;"
+                + " @PiriParam protected String name;"
+                + " @PiriParam protected int position;"
+                + " }");
+
+        assertTrue(creator, creator.contains("public static Intent createIntent(@NonNull Context context, long id, String name, int position) {\n"
+                + "    Intent intent = new Intent(context, FastActivity.class);\n"
+                + "    Bundle extras = new Bundle(3);\n"
+                + "    extras.putLong(\"id\", id);\n"
+                + "    if (name != null) {\n"
+                + "      extras.putString(\"name\", name);\n"
+                + "    }\n"
+                + "    extras.putInt(\"position\", position);\n"
+                + "    intent.putExtras(extras);\n"));
+    }
+
+    @Test
+    public void paramsCanTakeTheNamesOfLocals() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class ClashActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected String context;"
+                + " @PiriParam protected String extras;"
+                + " @PiriParam protected int intent;"
+                + " }");
+
+        assertTrue(creator, creator.contains("private int intent_;"));
+        assertTrue(creator, creator.contains("ClashActivityIntentCreator(@NonNull Context context_, @NonNull String context) {\n"
+                + "    this.intent = new Intent(context_, ClashActivity.class);\n"
+                + "    this.context = context;\n"));
+        assertTrue(creator, creator.contains("ClashActivityIntentCreator intent(int intent) {\n"
+                + "    this.intent_ = intent;\n"));
+        assertTrue(creator, creator.contains("public static Intent createIntent(@NonNull Context context_,"
+                + " @NonNull String context,\n      String extras, int intent) {\n"
+                + "    Intent intent_ = new Intent(context_, ClashActivity.class);\n"
+                + "    Bundle extras_ = new Bundle(3);\n"
+                + "    extras_.putString(\"context\", context);\n"
+                + "    if (extras != null) {\n"
+                + "      extras_.putString(\"extras\", extras);\n"
+                + "    }\n"
+                + "    extras_.putInt(\"intent\", intent);\n"
+                + "    intent_.putExtras(extras_);\n"
+                + "    return intent_;\n"));
+    }
+
+    @Test
+    public void inMemoryParamsOnlyPutAToken() throws Exception {
+        final String creator = compileCreator("package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " import java.util.List;"
+                + " public class HandoffActivity extends android.app.Activity {"
+                + " @PiriParam(required = true, transport = PiriParam.Transport.IN_MEMORY) protected List<Object> items;"
+                + " @PiriParam(transport = PiriParam.Transport.IN_MEMORY) protected Object extra;"
+                + " }");
+
+        assertTrue(creator, creator.contains("extras.putLong(\"items\", PiriHandoff.put(this.items));"));
+        assertTrue(creator, creator.contains("if (this.extra != null) {\n"
+                + "      extras.putLong(\"extra\", PiriHandoff.put(this.extra));"));
+    }
+
+    @Test
+    public void primitiveParamsCantBeKeptInMemory() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.BadActivity", "package com.example;"
+                        + " import com.raqun.PiriParam;"
+                        + " public class BadActivity extends android.app.Activity {"
+                        + " @PiriParam(transport = PiriParam.Transport.IN_MEMORY) protected int count;"
+                        + " }"));
+
+        assertFalse(result.diagnostics.toString(), result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString().contains("IN_MEMORY"));
+    }
+
+    @Test
+    public void compactCodeSharesTheRuntimeClasses() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_COMPACT + "=true"),
+                Collections.singletonMap("com.example.CompactActivity", "package com.example;"
+                        + " import com.raqun.PiriParam;"
+                        + " public class CompactActivity extends android.app.Activity {"
+                        + " @PiriParam(required = true) protected long id;"
+                        + " @PiriParam protected String name;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String creator = result.generated.get("com/example/CompactActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("public final class CompactActivityIntentCreator"
+                + " extends PiriIntentCreator<CompactActivityIntentCreator> {"));
+        assertTrue(creator, creator.contains("super(context, CompactActivity.class);"));
+        assertFalse(creator, creator.contains("addFlags"));
+        assertFalse(creator, creator.contains("Intent intent;"));
+
+        final String binder = result.generated.get("com/example/CompactActivityBinder.java");
+        assertTrue(binder, binder.contains("if (!PiriBinders.isEqual(activity.name, nameValue)) {"));
+        assertTrue(binder, binder.contains("changed = PiriBinders.addChanged(changed, \"name\");"));
+        assertFalse(binder, binder.contains("private static"));
+    }
+
+    private static String compileCreator(String source) throws Exception {
+        final String className = source.substring(source.indexOf("class ") + 6, source.indexOf(" extends"));
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example." + className, source));
+        assertTrue(result.diagnostics.toString(), result.success);
+        return result.generated.get("com/example/" + className + "IntentCreator.java");
+    }
+}
@@ -0,0 +1,188 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityPackedArgsTest {
+
+    @Test
+    public void paramsAreSentAsOneExtra() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.Book", "package com.example;"
+                + " @com.raqun.PiriParcelable public class Book { public String name; }");
+        sources.put("com.example.PackedActivity", "package com.example;"
+                + " import com.raqun.PiriActivity;"
+                + " import com.raqun.PiriParam;"
+                + " @PiriActivity(packedArgs = true)"
+                + " public class PackedActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected long id;"
+                + " @PiriParam protected int position;"
+                + " @PiriParam protected String query;"
+                + " @PiriParam protected Book book;"
+                + " @PiriParam(packPrimitives = true) protected java.util.List<Long> ids;"
+                + " @PiriParam(transport = PiriParam.Transport.IN_MEMORY) protected Object big;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String args = result.generated.get("com/example/PackedActivityPackedArgs.java");
+        assertNotNull(result.generated.keySet().toString(), args);
+        assertTrue(args, args.contains("public static final String EXTRA_KEY = \"com.raqun.piri.args\";"));
+        /* Params are written in order, without their keys, behind the hash and the length */
+        assertTrue(args, args.contains("dest.writeInt(this.schemaHash);\n"
+                + "    final int lengthPosition = dest.dataPosition();\n"
+                + "    dest.writeInt(0);\n"
+                + "    dest.writeLong(this.id);\n"
+                + "    dest.writeInt(this.position);\n"
+                + "    dest.writeString(this.query);\n"
+                + "    BookParcelWrapper.write(dest, this.book, flags);\n"
+                + "    dest.writeLongArray(this.ids);\n"
+                + "    dest.writeLong(this.big);\n"));
+        assertTrue(args, args.contains("if (this.schemaHash != SCHEMA_HASH) {\n"
+                + "      in.setDataPosition(in.dataPosition() + length);\n"
+                + "      return;\n"));
+        assertFalse(args, args.contains("\"id\""));
+        /* None of the params reads a value of an unknown class */
+        assertFalse(args, args.contains("getClassLoader()"));
+
+        final String creator = result.generated.get("com/example/PackedActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("intent.putExtra(PackedActivityPackedArgs.EXTRA_KEY, new PackedActivityPackedArgs(this.id,\n"
+                + "            (setMask & 0x1) != 0 ? this.position : -1,\n"
+                + "            this.query,\n"
+                + "            this.book,\n"
+                + "            this.ids != null ? $packLongs(this.ids) : null,\n"
+                + "            this.big != null ? PiriHandoff.put(this.big) : PiriHandoff.NO_TOKEN));"));
+        assertFalse(creator, creator.contains("Bundle"));
+
+        final String binder = result.generated.get("com/example/PackedActivityBinder.java");
+        assertTrue(binder, binder.contains("PackedActivityPackedArgs args = intent.getParcelableExtra(PackedActivityPackedArgs.EXTRA_KEY);"));
+        assertTrue(binder, binder.contains("if (args.schemaHash != PackedActivityPackedArgs.SCHEMA_HASH) {\n"
+                + "      Log.w(\"Piri\", \"com.example.PackedActivity was started with the PackedArgs of a build with other"
+                + " PiriParams, they aren't bound\");\n"
+                + "      return;\n"));
+        assertFalse(binder, binder.contains("IllegalStateException"));
+        assertTrue(binder, binder.contains("activity.ids = $unpackLongs(args.ids);\n"
+                + "    activity.big = PiriHandoff.get(args.big);\n"));
+        assertTrue(result.generated.get("com/example/Piri.java").contains("PackedActivityBinder.bind"));
+    }
+
+    @Test
+    public void unsavedParamsAreRestoredFromTheArgs() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.RestoredActivity", "package com.example;"
+                        + " import com.raqun.PiriParam;"
+                        + " @com.raqun.PiriActivity(packedArgs = true)"
+                        + " public class RestoredActivity extends android.app.Activity {"
+                        + " @PiriParam protected String query;"
+                        + " @PiriParam(transport = PiriParam.Transport.IN_MEMORY) protected Object big;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* An IN_MEMORY token isn't saved, a packed Intent only has it in the Args */
+        final String binder = result.generated.get("com/example/RestoredActivityBinder.java");
+        final String restore = binder.substring(binder.indexOf("static void restore("));
+        assertTrue(restore, restore.contains("} else {\n"
+                + "      Intent intent = activity.getIntent();\n"
+                + "      RestoredActivityPackedArgs args = intent.getParcelableExtra(RestoredActivityPackedArgs.EXTRA_KEY);\n"
+                + "      if (args != null) {\n"
+                + "        if (args.schemaHash != RestoredActivityPackedArgs.SCHEMA_HASH) {\n"));
+        assertTrue(restore, restore.contains("        } else {\n"
+                + "          activity.big = PiriHandoff.get(args.big);\n"
+                + "        }\n"
+                + "      }\n"
+                + "    }\n"));
+        assertFalse(restore, restore.contains("getLongExtra"));
+    }
+
+    @Test
+    public void argsOfAnotherBuildAreNotBound() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.ArgsIntent", "package com.example;"
+                + " public class ArgsIntent extends android.content.Intent {"
+                + " public android.os.Parcelable args;"
+                + " public ArgsIntent() { super(null, null); }"
+                + " @SuppressWarnings(\"unchecked\") @Override"
+                + " public <T extends android.os.Parcelable> T getParcelableExtra(String name) { return (T) args; }"
+                + " }");
+        sources.put("com.example.UpdatedActivity", "package com.example;"
+                + " @com.raqun.PiriActivity(packedArgs = true)"
+                + " public class UpdatedActivity extends android.app.Activity {"
+                + " public final ArgsIntent intent = new ArgsIntent();"
+                + " @com.raqun.PiriParam public String query = \"kept\";"
+                + " @Override public android.content.Intent getIntent() { return intent; }"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> activityClass = classLoader.loadClass("com.example.UpdatedActivity");
+        final Class<?> argsClass = classLoader.loadClass("com.example.UpdatedActivityPackedArgs");
+        final Constructor<?> argsConstructor = argsClass.getDeclaredConstructor(String.class);
+        argsConstructor.setAccessible(true);
+        final Field schemaHash = argsClass.getDeclaredField("schemaHash");
+        schemaHash.setAccessible(true);
+        final Method bind = classLoader.loadClass("com.example.UpdatedActivityBinder").getDeclaredMethod("bind", activityClass);
+        bind.setAccessible(true);
+        final Field intent = activityClass.getField("intent");
+        final Field args = classLoader.loadClass("com.example.ArgsIntent").getField("args");
+        final Field query = activityClass.getField("query");
+
+        /* Like an Intent without the args, the field keeps its value instead of the activity crashing */
+        final Object updated = activityClass.newInstance();
+        final Object staleArgs = argsConstructor.newInstance("sent");
+        schemaHash.setInt(staleArgs, schemaHash.getInt(staleArgs) + 1);
+        args.set(intent.get(updated), staleArgs);
+        bind.invoke(null, updated);
+        assertEquals("kept", query.get(updated));
+
+        final Object current = activityClass.newInstance();
+        args.set(intent.get(current), argsConstructor.newInstance("sent"));
+        bind.invoke(null, current);
+        assertEquals("sent", query.get(current));
+    }
+
+    @Test
+    public void paramsCantTakeTheNamesOfMembers() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.HashActivity", "package com.example;"
+                        + " @com.raqun.PiriActivity(packedArgs = true)"
+                        + " public class HashActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected int schemaHash;"
+                        + " @com.raqun.PiriParam protected android.os.Bundle options;"
+                        + " }"));
+
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString().contains(
+                "PiriParam schemaHash of a packedArgs activity can't be named like a member of its PackedArgs,"
+                        + " [EXTRA_KEY, SCHEMA_HASH, schemaHash, CREATOR] are taken!"));
+    }
+
+    @Test
+    public void lazyActivitiesCantUsePackedArgs() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.BothActivity", "package com.example;"
+                        + " @com.raqun.PiriActivity(lazy = true, packedArgs = true)"
+                        + " public class BothActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected String query;"
+                        + " }"));
+
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(),
+                result.diagnostics.toString().contains("PiriActivity can't be both lazy and packedArgs!"));
+    }
+}
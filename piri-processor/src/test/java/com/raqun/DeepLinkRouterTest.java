@@ -0,0 +1,108 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeepLinkRouterTest {
+
+    @Test
+    public void pathsAreMatchedThroughTheTrie() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.UserActivity", "package com.example;"
+                + " @com.raqun.PiriDeepLink({\"/users/{id}\", \"/users/{id}/posts/{postId}\", \"/{section}/settings\"})"
+                + " public class UserActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam(required = true) protected long id;"
+                + " @com.raqun.PiriParam protected Integer postId;"
+                + " @com.raqun.PiriParam protected String section;"
+                + " }");
+        /* Has no PiriParams, it's only opened by its deep links */
+        sources.put("com.example.HomeActivity", "package com.example;"
+                + " @com.raqun.PiriDeepLink({\"/\", \"/users/new\"})"
+                + " public class HomeActivity extends android.app.Activity {}");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String router = result.generated.get("com/raqun/PiriDeepLinkRouter.java");
+        assertFalse(router, router.contains("Pattern"));
+        assertTrue(router, router.contains("return UserActivityIntentCreator.createIntent(context,\n"
+                + "              Long.parseLong(segments.get(1)),\n"
+                + "              Integer.valueOf(segments.get(3)),\n"));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> routerClass = classLoader.loadClass("com.raqun.PiriDeepLinkRouter");
+        final Method match = routerClass.getDeclaredMethod("match", List.class);
+        match.setAccessible(true);
+        final Class<?> uriClass = classLoader.loadClass("android.net.Uri");
+        final Method parse = uriClass.getMethod("parse", String.class);
+        final Method getPathSegments = uriClass.getMethod("getPathSegments");
+
+        /* Routes are numbered in the order of the activities and their paths */
+        final String[][] expectations = {
+                {"/users/42", "0"}, {"/users/42/posts/7", "1"}, {"/account/settings", "2"}, {"/", "3"},
+                {"/users/new", "4"}, {"/users/settings", "0"}, {"/users", "-1"}, {"/users/42/posts", "-1"},
+                {"/unknown", "-1"}, {"/users/42/edit", "-1"},
+        };
+        for (String[] expectation : expectations) {
+            final Object segments = getPathSegments.invoke(parse.invoke(null, expectation[0]));
+            assertEquals(expectation[0], Integer.parseInt(expectation[1]), match.invoke(null, segments));
+        }
+
+        final Object context = classLoader.loadClass("android.content.Context").newInstance();
+        final Method route = routerClass.getMethod("route", context.getClass(), uriClass);
+        assertNotNull(route.invoke(null, context, parse.invoke(null, "/users/42?postId=7")));
+        assertNotNull(route.invoke(null, context, parse.invoke(null, "/account/settings?id=42")));
+        /* A param which can't be converted or a missing required param doesn't match */
+        assertNull(route.invoke(null, context, parse.invoke(null, "/users/abc")));
+        assertNull(route.invoke(null, context, parse.invoke(null, "/users/42?postId=x")));
+        assertNull(route.invoke(null, context, parse.invoke(null, "/account/settings")));
+    }
+
+    @Test
+    public void pathsMatchingTheSameUrisAreRejected() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.FirstActivity", "package com.example;"
+                + " @com.raqun.PiriDeepLink(\"/users/{id}\")"
+                + " public class FirstActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected String id;"
+                + " }");
+        sources.put("com.example.SecondActivity", "package com.example;"
+                + " @com.raqun.PiriDeepLink(\"/users/{name}\")"
+                + " public class SecondActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected String name;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString()
+                .contains("PiriDeepLink /users/{name} matches the same URIs as /users/{id} of com.example.FirstActivity!"));
+    }
+
+    @Test
+    public void placeholdersMustBeConvertibleParams() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Collections.<String>emptyList(),
+                Collections.singletonMap("com.example.BadActivity", "package com.example;"
+                        + " @com.raqun.PiriDeepLink({\"/items/{items}\", \"/missing/{nothing}\"})"
+                        + " public class BadActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected int[] items;"
+                        + " }"));
+
+        assertFalse(result.success);
+        final String diagnostics = result.diagnostics.toString();
+        assertTrue(diagnostics, diagnostics.contains("PiriDeepLink /items/{items} can't convert a segment to int[] items!"));
+        assertTrue(diagnostics, diagnostics.contains("PiriDeepLink /missing/{nothing} has no PiriParam with the key nothing!"));
+    }
+}
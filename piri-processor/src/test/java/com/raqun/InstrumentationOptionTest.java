@@ -0,0 +1,55 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentationOptionTest {
+    private static final String SOURCE = "package com.example;"
+            + " import com.raqun.PiriParam;"
+            + " public class TracedActivity extends android.app.Activity {"
+            + " @PiriParam(required = true) protected long id;"
+            + " @PiriParam protected String name;"
+            + " }";
+
+    @Test
+    public void instrumentedCodeReportsCreateAndBind() throws Exception {
+        final Map<String, String> generated = compile("-A" + PiriProcessor.OPTION_INSTRUMENTATION + "=true");
+        final String creator = generated.get("com/example/TracedActivityIntentCreator.java");
+        final String binder = generated.get("com/example/TracedActivityBinder.java");
+
+        assertTrue(creator, creator.contains("public Intent create() {\n"
+                + "    final long piriStart = PiriInstrumentation.begin(\"Piri create TracedActivity\");\n"
+                + "    try {\n"));
+        assertTrue(creator, creator.contains("    } finally {\n"
+                + "      PiriInstrumentation.endCreate(piriStart, \"com.example.TracedActivity\", intent);\n"
+                + "    }\n"));
+        assertTrue(creator, creator.contains("PiriInstrumentation.begin(\"Piri createIntent TracedActivity\");\n"
+                + "    Intent intent = new Intent(context, TracedActivity.class);\n"
+                + "    try {\n"));
+        assertTrue(binder, binder.contains("PiriInstrumentation.begin(\"Piri bind TracedActivity\");\n"
+                + "    try {\n"
+                + "      Intent intent = activity.getIntent();\n"));
+        assertTrue(binder, binder.contains("PiriInstrumentation.endBind(piriStart, \"com.example.TracedActivity\");"));
+    }
+
+    @Test
+    public void nothingIsReportedByDefault() throws Exception {
+        for (String file : compile().values()) {
+            assertFalse(file, file.contains("PiriInstrumentation"));
+        }
+    }
+
+    private static Map<String, String> compile(String... options) throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Arrays.asList(options),
+                Collections.singletonMap("com.example.TracedActivity", SOURCE));
+        assertTrue(result.diagnostics.toString(), result.success);
+        return result.generated;
+    }
+}
@@ -0,0 +1,189 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackageBinderTest {
+
+    @Test
+    public void registryBindsActivitiesOfEveryPackage() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        /* The stub Intent returns the default value, so a bound count is -1 */
+        sources.put("com.app.base.BaseActivity", "package com.app.base;"
+                + " public class BaseActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected int count = 5;"
+                + " @Override public android.content.Intent getIntent() { return new android.content.Intent(this, getClass()); }"
+                + " }");
+        sources.put("com.app.feature.ChildActivity", "package com.app.feature;"
+                + " public class ChildActivity extends com.app.base.BaseActivity {}");
+        sources.put("com.app.feature.PlainActivity", "package com.app.feature;"
+                + " public class PlainActivity extends android.app.Activity {"
+                + " public static class NestedActivity extends com.app.base.BaseActivity {}"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* A sub class compiled with its activity is found without walking up its super classes */
+        final String registry = result.generated.get("com/raqun/PiriRegistry.java");
+        assertTrue(result.generated.keySet().toString(), registry != null);
+        assertTrue(registry, registry.contains("switch (type.getName()) {\n"
+                + "        case \"com.app.base.BaseActivity\":\n"
+                + "        case \"com.app.feature.ChildActivity\":\n"
+                + "          Piri.bind((BaseActivity) activity);\n"
+                + "          return;"));
+        assertTrue(result.generated.get("com/app/base/Piri.java").contains("public final class Piri {"));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Class<?> activityClass = classLoader.loadClass("android.app.Activity");
+        final Method bind = classLoader.loadClass("com.raqun.PiriRegistry").getMethod("bind", activityClass);
+        final Field count = classLoader.loadClass("com.app.base.BaseActivity").getDeclaredField("count");
+        count.setAccessible(true);
+
+        final Object child = classLoader.loadClass("com.app.feature.ChildActivity").newInstance();
+        bind.invoke(null, child);
+        assertEquals(-1, count.getInt(child));
+
+        /* Nested classes aren't listed, they're bound by the binder of their super class */
+        final Object nested = classLoader.loadClass("com.app.feature.PlainActivity$NestedActivity").newInstance();
+        bind.invoke(null, nested);
+        assertEquals(-1, count.getInt(nested));
+
+        /* An activity without a binder is an error, not silently left unbound */
+        try {
+            bind.invoke(null, classLoader.loadClass("com.app.feature.PlainActivity").newInstance());
+            fail();
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals("com.app.feature.PlainActivity has no PiriParams bound by PiriRegistry", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void isolatingModeHasNoRegistry() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_ISOLATING + "=true"),
+                Collections.singletonMap("com.example.BaseActivity", "package com.example;"
+                        + " public class BaseActivity extends android.app.Activity {"
+                        + " @com.raqun.PiriParam protected int count;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+        assertFalse(result.generated.containsKey("com/example/Piri.java"));
+        assertFalse(result.generated.containsKey("com/raqun/PiriRegistry.java"));
+    }
+
+    @Test
+    public void prewarmListsTheGeneratedClassesOfEveryActivity() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.DetailActivity", "package com.example;"
+                + " public class DetailActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected int count;"
+                + " }");
+        sources.put("com.example.ListActivity", "package com.example;"
+                + " @com.raqun.PiriActivity(lazy = true)"
+                + " public class ListActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected String query;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_PREWARM + "=true"), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* Lazy activities aren't bound by Piri, but their classes are prewarmed too */
+        final String piri = result.generated.get("com/example/Piri.java");
+        assertTrue(piri, piri.contains("final Class<?>[][] classes = {\n"
+                + "          {DetailActivity.class, DetailActivityBinder.class, DetailActivityIntentCreator.class},\n"
+                + "          {ListActivity.class, ListActivityArgs.class, ListActivityIntentCreator.class},\n"
+                + "        };"));
+        assertFalse(piri, piri.contains("ListActivity activity"));
+        assertTrue(piri, piri.contains("public static void prewarm(Executor executor, final Class<?>... first) {"));
+
+        /* Apps call the public registry, which warms every package */
+        final String registry = result.generated.get("com/raqun/PiriRegistry.java");
+        assertTrue(registry, registry.contains("public static void prewarm(Executor executor, Class<?>... first) {\n"
+                + "    Piri.prewarm(executor, first);\n"
+                + "  }"));
+
+        /* The classes are only warmed by the task handed to the executor */
+        final ClassLoader classLoader = result.createClassLoader();
+        final Method prewarm = classLoader.loadClass("com.raqun.PiriRegistry").getMethod("prewarm",
+                Executor.class, Class[].class);
+        final List<Runnable> tasks = new ArrayList<>();
+        final Object first = Array.newInstance(Class.class, 1);
+        Array.set(first, 0, classLoader.loadClass("com.example.ListActivity"));
+        prewarm.invoke(null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, first);
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+    }
+
+    @Test
+    public void noPrewarmWithoutTheOption() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.ListActivity",
+                        "package com.example;"
+                                + " @com.raqun.PiriActivity(lazy = true)"
+                                + " public class ListActivity extends android.app.Activity {"
+                                + " @com.raqun.PiriParam protected String query;"
+                                + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+        assertFalse(result.generated.containsKey("com/example/Piri.java"));
+        assertFalse(result.generated.containsKey("com/raqun/PiriRegistry.java"));
+    }
+
+    @Test
+    public void registryPrewarmsEveryPackage() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.app.home.HomeActivity", "package com.app.home;"
+                + " public class HomeActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected int tab;"
+                + " }");
+        sources.put("com.app.feature.DetailActivity", "package com.app.feature;"
+                + " @com.raqun.PiriActivity(lazy = true)"
+                + " public class DetailActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected String query;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_PREWARM + "=true"), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* The lazy activity isn't bound, but its package is prewarmed too */
+        final String registry = result.generated.get("com/raqun/PiriRegistry.java");
+        assertTrue(registry, registry.contains("Piri.prewarm(executor, first);\n"
+                + "    com.app.feature.Piri.prewarm(executor, first);"));
+        assertFalse(registry, registry.contains("case \"com.app.feature.DetailActivity\":"));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Method prewarm = classLoader.loadClass("com.raqun.PiriRegistry").getMethod("prewarm",
+                Executor.class, Class[].class);
+        final List<Runnable> tasks = new ArrayList<>();
+        prewarm.invoke(null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, Array.newInstance(Class.class, 0));
+        assertEquals(2, tasks.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParcelableWrapperTest {
+
+    @Test
+    public void modelIsWrittenFieldByField() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.Book", "package com.example;"
+                + " @com.raqun.PiriParcelable"
+                + " public class Book implements java.io.Serializable {"
+                + " int bookId;"
+                + " private String bookName;"
+                + " private boolean available;"
+                + " private Author author;"
+                + " transient int cachedHash;"
+                + " public String getBookName() { return bookName; }"
+                + " public void setBookName(String bookName) { this.bookName = bookName; }"
+                + " public boolean isAvailable() { return available; }"
+                + " public void setAvailable(boolean available) { this.available = available; }"
+                + " public Author getAuthor() { return author; }"
+                + " public void setAuthor(Author author) { this.author = author; }"
+                + " }");
+        sources.put("com.example.Author", "package com.example;"
+                + " @com.raqun.PiriParcelable public class Author { public String name; }");
+        sources.put("com.example.BookActivity", "package com.example;"
+                + " public class BookActivity extends android.app.Activity {"
+                + " @com.raqun.PiriParam protected Book book; }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String wrapper = result.generated.get("com/example/BookParcelWrapper.java");
+        assertTrue(wrapper, wrapper.contains("public final class BookParcelWrapper implements Parcelable"));
+        assertTrue(wrapper, wrapper.contains("dest.writeInt(value.bookId);"));
+        assertTrue(wrapper, wrapper.contains("dest.writeString(value.getBookName());"));
+        assertTrue(wrapper, wrapper.contains("dest.writeInt(value.isAvailable() ? 1 : 0);"));
+        assertTrue(wrapper, wrapper.contains("AuthorParcelWrapper.write(dest, value.getAuthor(), flags);"));
+        assertTrue(wrapper, wrapper.contains("value.setAuthor(AuthorParcelWrapper.read(in));"));
+        assertFalse(wrapper, wrapper.contains("cachedHash"));
+        assertFalse(wrapper, wrapper.contains("Serializable"));
+
+        /* The activity sends the model through its wrapper instead of Java serialization */
+        final String creator = result.generated.get("com/example/BookActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("extras.putParcelable(\"book\", new BookParcelWrapper(book));"));
+        final String binder = result.generated.get("com/example/BookActivityBinder.java");
+        assertTrue(binder, binder.contains("BookParcelWrapper bookWrapper = intent.getParcelableExtra(\"book\");"));
+        assertFalse(binder, binder.contains("getSerializableExtra"));
+    }
+
+    @Test
+    public void classLoaderIsOnlyLookedUpForUnknownClasses() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.Plain", "package com.example;"
+                + " @com.raqun.PiriParcelable public class Plain { public int count; public String name; }");
+        sources.put("com.example.Boxed", "package com.example;"
+                + " @com.raqun.PiriParcelable public class Boxed { public Integer count; }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String plain = result.generated.get("com/example/PlainParcelWrapper.java");
+        assertFalse(plain, plain.contains("getClassLoader()"));
+        final String boxed = result.generated.get("com/example/BoxedParcelWrapper.java");
+        assertTrue(boxed, boxed.contains("final ClassLoader loader = BoxedParcelWrapper.class.getClassLoader();"));
+        assertTrue(boxed, boxed.contains("value.count = (Integer) in.readValue(loader);"));
+    }
+
+    @Test
+    public void privateFieldWithoutAccessorsIsAnError() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.Hidden",
+                        "package com.example; @com.raqun.PiriParcelable public class Hidden { private int secret; }"));
+
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString().contains("needs a getter and a setter"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.raqun;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadSizeTest {
+    private static final String WARNING = "The extras of com.example.DetailActivity may take 172 bytes,"
+            + " more than the piri.sizeBudget of 100 bytes, without the unbounded [options]";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void budgetWarnsAndReportListsEveryActivity() throws Exception {
+        final File report = new File(temporaryFolder.getRoot(), "sizes/report.tsv");
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Arrays.asList(
+                "-A" + PiriProcessor.OPTION_SIZE_BUDGET + "=100",
+                "-A" + PiriProcessor.OPTION_SIZE_REPORT + "=" + report.getPath()), createSources());
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        /* Only DetailActivity is over the budget */
+        final List<String> warnings = getMessages(result, Diagnostic.Kind.WARNING);
+        assertEquals(Collections.singletonList(WARNING), warnings);
+
+        /*
+         * Bundle header 12
+         * id: key 12 + tag 4 + long 8
+         * title: key 16 + tag 4 + 20 chars 48
+         * counts: key 20 + tag 4 + 10 ints 44
+         */
+        assertEquals("destination\tbytes\tunbounded\n"
+                + "com.example.DetailActivity\t172\toptions\n"
+                + "com.example.ListActivity\t36\t\n",
+                new String(Files.readAllBytes(report.toPath()), Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void budgetErrorFailsTheBuild() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(), Arrays.asList(
+                "-A" + PiriProcessor.OPTION_SIZE_BUDGET + "=100",
+                "-A" + PiriProcessor.OPTION_SIZE_BUDGET_ERROR + "=true"), createSources());
+        assertFalse(result.diagnostics.toString(), result.success);
+        assertEquals(Collections.singletonList(WARNING), getMessages(result, Diagnostic.Kind.ERROR));
+    }
+
+    @Test
+    public void boundsCantBeNegative() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.NegativeActivity",
+                        "package com.example;"
+                                + " import com.raqun.PiriParam;"
+                                + " public class NegativeActivity extends android.app.Activity {"
+                                + " @PiriParam(maxLength = -2) protected String title;"
+                                + " }"));
+        assertFalse(result.diagnostics.toString(), result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString()
+                .contains("The maxLength, maxSize and maxBytes of a PiriParam can't be negative!"));
+    }
+
+    private static List<String> getMessages(TestCompiler.Result result, Diagnostic.Kind kind) {
+        final List<String> messages = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.diagnostics) {
+            if (diagnostic.getKind() == kind) {
+                messages.add(diagnostic.getMessage(null));
+            }
+        }
+        return messages;
+    }
+
+    private static Map<String, String> createSources() {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.DetailActivity", "package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class DetailActivity extends android.app.Activity {"
+                + " @PiriParam(required = true) protected long id;"
+                + " @PiriParam(maxLength = 20) protected String title;"
+                + " @PiriParam(maxSize = 10) protected int[] counts;"
+                + " @PiriParam protected android.os.Bundle options;"
+                + " }");
+        sources.put("com.example.ListActivity", "package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " public class ListActivity extends android.app.Activity {"
+                + " @PiriParam protected int page;"
+                + " }");
+        return sources;
+    }
+}
@@ -0,0 +1,111 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PiriProcessorConcurrencyTest {
+    private static final int MODULES = 8;
+    private static final int ROUNDS = 3;
+
+    /* Like the javac tasks of several modules in one build daemon, which share the processor classes */
+    @Test
+    public void concurrentCompilationsMatchSequentialOnes() throws Exception {
+        final List<String> expected = new ArrayList<>();
+        for (int module = 0; module < MODULES; module++) {
+            expected.add(compileModule(module));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(MODULES);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<String>> results = new ArrayList<>();
+                for (int module = 0; module < MODULES; module++) {
+                    final int index = module;
+                    results.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            start.await();
+                            return compileModule(index);
+                        }
+                    }));
+                }
+                start.countDown();
+                for (int module = 0; module < MODULES; module++) {
+                    assertEquals("module " + module, expected.get(module), results.get(module).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /* Returns what the compilation reported and generated, the output of another module would show up here */
+    private static String compileModule(int module) throws Exception {
+        /* Like the deep link router, every module names its own registry */
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_REGISTRY + "=com.example.module" + module + ".PiriRegistry"),
+                createModule(module));
+        final boolean broken = module % 3 == 2;
+        assertEquals(result.diagnostics.toString(), !broken, result.success);
+
+        final StringBuilder output = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.diagnostics) {
+            output.append(diagnostic.getKind()).append(' ')
+                    .append(diagnostic.getSource() != null ? diagnostic.getSource().getName() : null).append(':')
+                    .append(diagnostic.getLineNumber()).append(' ')
+                    .append(diagnostic.getMessage(null)).append('\n');
+        }
+        for (Map.Entry<String, String> file : result.generated.entrySet()) {
+            assertTrue(file.getKey(), file.getKey().startsWith("com/example/module" + module + "/"));
+            output.append(file.getKey()).append('\n').append(file.getValue());
+        }
+        assertFalse(result.generated.isEmpty());
+        return output.toString();
+    }
+
+    /* Every module has its own package, activities and params */
+    private static Map<String, String> createModule(int module) {
+        final String packageName = "com.example.module" + module;
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(packageName + ".Model", "package " + packageName + ";"
+                + " @com.raqun.PiriParcelable public class Model { int id" + module + "; String name; }");
+        for (int i = 0; i < 4 + module; i++) {
+            final StringBuilder source = new StringBuilder()
+                    .append("package ").append(packageName).append(";\n")
+                    .append("import com.raqun.PiriParam;\n")
+                    .append("public class Screen").append(i).append("Activity extends android.app.Activity {\n");
+            for (int field = 0; field <= (module + i) % 6; field++) {
+                final String[] types = {"long", "String", "Model", "int[]", "Integer"};
+                source.append("    @PiriParam")
+                        .append(field == i % 3 ? "(required = true)" : "")
+                        .append(" protected ").append(types[(module + field) % types.length])
+                        .append(" m").append(module).append("param").append(field).append(";\n");
+            }
+            source.append("}\n");
+            sources.put(packageName + ".Screen" + i + "Activity", source.toString());
+        }
+        if (module % 3 == 2) {
+            sources.put(packageName + ".Helper", "package " + packageName + ";"
+                    + " public class Helper { @com.raqun.PiriParam protected String value; }");
+        }
+        return sources;
+    }
+}
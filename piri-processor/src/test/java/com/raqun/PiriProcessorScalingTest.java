@@ -0,0 +1,173 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PiriProcessorScalingTest {
+    private static final int FIELDS_PER_ACTIVITY = 20;
+
+    @Test
+    public void everyAnnotatedFieldIsBound() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), createActivities(30));
+
+        assertTrue(result.diagnostics.toString(), result.success);
+        for (int i = 0; i < 30; i++) {
+            final String binder = result.generated.get("com/example/Screen" + i + "ActivityBinder.java");
+            for (int field = 0; field < FIELDS_PER_ACTIVITY; field++) {
+                assertTrue(binder.contains("activity.param" + field + " = "));
+            }
+            assertTrue(result.generated.containsKey("com/example/Screen" + i + "ActivityIntentCreator.java"));
+        }
+        /* Besides a binder and a creator per activity, the Piri class and the registry */
+        assertEquals(30 * 2 + 2, result.generated.size());
+    }
+
+    @Test
+    public void parallelGenerationMatchesSingleThreaded() throws Exception {
+        final TestCompiler.Result single = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_THREADS + "=1"), createActivities(70));
+        final TestCompiler.Result parallel = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_THREADS + "=4"), createActivities(70));
+
+        assertTrue(parallel.diagnostics.toString(), parallel.success);
+        /* 70 activities take more than one batch of 4 threads */
+        assertEquals(single.generated, parallel.generated);
+    }
+
+    @Test
+    public void requiredIsReadFromTheAnnotation() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), createActivities(1));
+
+        final String creator = result.generated.get("com/example/Screen0ActivityIntentCreator.java");
+        /* Every third param is required and becomes a constructor param */
+        assertTrue(creator, creator.contains("Screen0ActivityIntentCreator(@NonNull Context context, @NonNull Long param0,"));
+        assertTrue(creator, creator.contains("param1(int param1)"));
+    }
+
+    @Test
+    public void typeOperationsGrowLinearly() throws Exception {
+        final long small = countTypeOperations(100);
+        final long medium = countTypeOperations(200);
+        final long large = countTypeOperations(400);
+
+        /* Every activity costs the same, comparing it against the collected ones would cost more with each */
+        assertTrue("100 activities: " + small + ", 200: " + medium + ", 400: " + large, small > 0);
+        assertEquals(2 * (medium - small), large - medium);
+    }
+
+    private static long countTypeOperations(int activityCount) throws Exception {
+        final CountingProcessor processor = new CountingProcessor(new PiriProcessor());
+        final TestCompiler.Result result = TestCompiler.compile(processor,
+                Collections.<String>emptyList(), createActivities(activityCount));
+        assertTrue(result.diagnostics.toString(), result.success);
+        return processor.typeOperations.get();
+    }
+
+    private static Map<String, String> createActivities(int count) {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final StringBuilder source = new StringBuilder()
+                    .append("package com.example;\n")
+                    .append("import com.raqun.PiriParam;\n")
+                    .append("public class Screen").append(i).append("Activity extends android.app.Activity {\n");
+            for (int field = 0; field < FIELDS_PER_ACTIVITY; field++) {
+                final String[] types = {"Long", "int", "String", "java.util.Date"};
+                source.append("    @PiriParam")
+                        .append(field % 3 == 0 ? "(required = true)" : "")
+                        .append(" protected ").append(types[field % types.length])
+                        .append(" param").append(field).append(";\n");
+            }
+            source.append("}\n");
+            sources.put("com.example.Screen" + i + "Activity", source.toString());
+        }
+        return sources;
+    }
+
+    /* Counts the calls of the delegate processor to Types, which does the work per field */
+    private static final class CountingProcessor extends AbstractProcessor {
+        private final AbstractProcessor delegate;
+        final AtomicLong typeOperations = new AtomicLong();
+
+        CountingProcessor(AbstractProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void init(final ProcessingEnvironment processingEnvironment) {
+            super.init(processingEnvironment);
+            final Types types = forward(Types.class, processingEnvironment.getTypeUtils(), typeOperations);
+            delegate.init(forward(ProcessingEnvironment.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("getTypeUtils")) {
+                        return types;
+                    }
+                    return CountingProcessor.invoke(method, processingEnvironment, args);
+                }
+            }));
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+            return delegate.process(set, roundEnvironment);
+        }
+
+        private static <T> T forward(Class<T> type, final T target, final AtomicLong calls) {
+            return forward(type, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    calls.incrementAndGet();
+                    return CountingProcessor.invoke(method, target, args);
+                }
+            });
+        }
+
+        private static <T> T forward(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.raqun;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertTrue;
+
+public class ProcessingStatsTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void statsOptionWritesAReport() throws Exception {
+        final File statsFile = new File(temporaryFolder.getRoot(), "reports/piri.json");
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.singletonList("-A" + PiriProcessor.OPTION_STATS + "=" + statsFile.getPath()),
+                Collections.singletonMap("com.example.StatsActivity", "package com.example;"
+                        + " import com.raqun.PiriParam;"
+                        + " public class StatsActivity extends android.app.Activity {"
+                        + " @PiriParam(required = true) protected long id;"
+                        + " @PiriParam protected String name;"
+                        + " @PiriParam protected android.os.Parcelable state;"
+                        + " @PiriParam(packPrimitives = true) protected java.util.List<Long> ids;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String stats = new String(Files.readAllBytes(statsFile.toPath()), Charset.forName("UTF-8"));
+        assertTrue(stats, stats.contains("\"mode\": \"aggregating\""));
+        /* The files are generated in the first round, later rounds have nothing to do */
+        assertTrue(stats, stats.contains("\"round\": 1,"));
+        assertTrue(stats, stats.contains("\"round\": 2,"));
+        assertTrue(stats, stats.contains("\"activities\": 1,\n      \"params\": 4,"));
+
+        final int creatorBytes = result.generated.get("com/example/StatsActivityIntentCreator.java")
+                .getBytes(Charset.forName("UTF-8")).length;
+        assertTrue(stats, stats.contains("{\"name\": \"com.example.StatsActivityIntentCreator\", \"bytes\": " + creatorBytes + "}"));
+        assertTrue(stats, stats.contains("\"field\": \"id\", \"type\": \"long\", \"bundleType\": \"LONG\", \"path\": \"primitive\""));
+        assertTrue(stats, stats.contains("\"field\": \"name\", \"type\": \"java.lang.String\", \"bundleType\": \"STRING\", \"path\": \"known-type\""));
+        assertTrue(stats, stats.contains("\"bundleType\": \"PARCELABLE\", \"path\": \"assignable\""));
+        assertTrue(stats, stats.contains("\"bundleType\": \"LONG_ARRAY\", \"path\": \"packed\""));
+    }
+}
@@ -0,0 +1,349 @@
+package com.raqun;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles in-memory sources against stub Android classes and returns what Piri generated.
+ */
+
+final class TestCompiler {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* Name and type of every typed Intent accessor, e.g. Int for getIntExtra */
+    private static final String[][] PRIMITIVE_ACCESSORS = {
+            {"Boolean", "boolean"}, {"Byte", "byte"}, {"Char", "char"}, {"Short", "short"},
+            {"Int", "int"}, {"Long", "long"}, {"Float", "float"}, {"Double", "double"},
+    };
+    /* The boxes of the primitive accessors, in the same order */
+    private static final String[] PRIMITIVE_BOXES = {
+            "Boolean", "Byte", "Character", "Short", "Integer", "Long", "Float", "Double",
+    };
+    private static final String[][] OBJECT_ACCESSORS = {
+            {"String", "String"}, {"CharSequence", "CharSequence"}, {"Bundle", "android.os.Bundle"},
+            {"Serializable", "java.io.Serializable"},
+            {"BooleanArray", "boolean[]"}, {"ByteArray", "byte[]"}, {"CharArray", "char[]"}, {"ShortArray", "short[]"},
+            {"IntArray", "int[]"}, {"LongArray", "long[]"}, {"FloatArray", "float[]"}, {"DoubleArray", "double[]"},
+            {"StringArray", "String[]"}, {"CharSequenceArray", "CharSequence[]"},
+            {"ParcelableArray", "android.os.Parcelable[]"},
+    };
+    private static final String[][] ARRAY_LIST_ACCESSORS = {
+            {"IntegerArrayList", "Integer"}, {"StringArrayList", "String"}, {"CharSequenceArrayList", "CharSequence"},
+    };
+
+    private static final String[][] ANDROID_STUBS = {
+            {"android.content.Context", "package android.content; public class Context {}"},
+            {"android.os.Parcel", createParcelStub()},
+            {"android.os.Parcelable", "package android.os; public interface Parcelable {"
+                    + " int describeContents(); void writeToParcel(Parcel dest, int flags);"
+                    + " interface Creator<T> { T createFromParcel(Parcel in); T[] newArray(int size); } }"},
+            {"android.os.Bundle", createBundleStub()},
+            {"android.content.Intent", createIntentStub()},
+            {"android.app.Activity", "package android.app; public class Activity extends android.content.Context {"
+                    + " public android.content.Intent getIntent() { return null; }"
+                    + " public boolean isDestroyed() { return false; }"
+                    + " public final void runOnUiThread(Runnable action) { action.run(); } }"},
+            {"android.support.annotation.NonNull", "package android.support.annotation; public @interface NonNull {}"},
+            {"com.raqun.PiriHandoff", "package com.raqun; public final class PiriHandoff {"
+                    + " public static final long NO_TOKEN = 0L;"
+                    + " public static long put(Object value) { return 1L; }"
+                    + " public static <T> T get(long token) { return null; } }"},
+            {"com.raqun.PiriBinding", "package com.raqun; public final class PiriBinding {"
+                    + " private volatile boolean cancelled;"
+                    + " public interface Listener { void onParamReady(String key);"
+                    + " void onParamFailed(String key, RuntimeException error); }"
+                    + " public void cancel() { cancelled = true; }"
+                    + " public boolean isCancelled() { return cancelled; } }"},
+            {"com.raqun.PiriIntentCreator", "package com.raqun;"
+                    + " public abstract class PiriIntentCreator<T extends PiriIntentCreator<T>> {"
+                    + " protected final android.content.Intent intent;"
+                    + " protected PiriIntentCreator(android.content.Context context, Class<? extends android.app.Activity> cls) {"
+                    + " intent = new android.content.Intent(context, cls); }"
+                    + " @SuppressWarnings(\"unchecked\") public final T addFlags(int... flags) {"
+                    + " for (int flag : flags) intent.addFlags(flag); return (T) this; }"
+                    + " public abstract android.content.Intent create(); }"},
+            {"com.raqun.PiriBinders", "package com.raqun; public final class PiriBinders {"
+                    + " public static java.util.Set<String> addChanged(java.util.Set<String> changed, String key) {"
+                    + " if (changed == null) changed = new java.util.HashSet<>(); changed.add(key); return changed; }"
+                    + " public static boolean isEqual(Object a, Object b) { return a == b || a != null && a.equals(b); } }"},
+            {"android.net.Uri", "package android.net; import java.util.*; public final class Uri {"
+                    + " private final List<String> segments = new ArrayList<>();"
+                    + " private final Map<String, String> query = new HashMap<>();"
+                    + " public static Uri parse(String uri) { Uri parsed = new Uri(); String[] parts = uri.split(\"\\\\?\", 2);"
+                    + " for (String segment : parts[0].split(\"/\")) { if (!segment.isEmpty()) parsed.segments.add(segment); }"
+                    + " if (parts.length > 1) { for (String pair : parts[1].split(\"&\")) {"
+                    + " String[] keyValue = pair.split(\"=\", 2); parsed.query.put(keyValue[0], keyValue[1]); } }"
+                    + " return parsed; }"
+                    + " public List<String> getPathSegments() { return segments; }"
+                    + " public String getQueryParameter(String key) { return query.get(key); } }"},
+            {"android.util.Log", "package android.util; public final class Log {"
+                    + " public static int w(String tag, String msg) { return 0; } }"},
+            {"com.raqun.PiriInstrumentation", "package com.raqun; public final class PiriInstrumentation {"
+                    + " public static long begin(String section) { return 0L; }"
+                    + " public static void endCreate(long start, String destination, android.content.Intent intent) {}"
+                    + " public static void endBind(long start, String destination) {} }"},
+    };
+
+    private static String createParcelStub() {
+        final StringBuilder parcel = new StringBuilder("package android.os;"
+                + " public final class Parcel {"
+                + " public int dataPosition() { return 0; }"
+                + " public void setDataPosition(int position) {}"
+                + " public void writeParcelableArray(Parcelable[] value, int flags) {}"
+                + " public Parcelable[] readParcelableArray(ClassLoader loader) { return null; }"
+                + " public void writeValue(Object value) {}"
+                + " public Object readValue(ClassLoader loader) { return null; }"
+                + " public void writeSerializable(java.io.Serializable value) {}"
+                + " public java.io.Serializable readSerializable() { return null; }"
+                + " public void writeParcelable(Parcelable value, int flags) {}"
+                + " public <T extends Parcelable> T readParcelable(ClassLoader loader) { return null; }"
+                + " public void writeBundle(Bundle value) {}"
+                + " public Bundle readBundle(ClassLoader loader) { return null; }"
+                + " public void writeStringList(java.util.List<String> value) {}"
+                + " public java.util.ArrayList<String> createStringArrayList() { return null; }");
+        final String[][] values = {{"Int", "int"}, {"Long", "long"}, {"Byte", "byte"}, {"Float", "float"},
+                {"Double", "double"}, {"String", "String"}};
+        for (String[] value : values) {
+            parcel.append(" public void write").append(value[0]).append('(').append(value[1]).append(" value) {}")
+                    .append(" public ").append(value[1]).append(" read").append(value[0]).append("() { return ")
+                    .append("String".equals(value[1]) ? "null" : "0").append("; }");
+        }
+        final String[][] arrays = {{"BooleanArray", "boolean[]"}, {"ByteArray", "byte[]"}, {"CharArray", "char[]"},
+                {"IntArray", "int[]"}, {"LongArray", "long[]"}, {"FloatArray", "float[]"}, {"DoubleArray", "double[]"},
+                {"StringArray", "String[]"}};
+        for (String[] array : arrays) {
+            parcel.append(" public void write").append(array[0]).append('(').append(array[1]).append(" value) {}")
+                    .append(" public ").append(array[1]).append(" create").append(array[0]).append("() { return null; }");
+        }
+        return parcel.append(" }").toString();
+    }
+
+    /* Keeps what is put, so generated code can save into it and restore from it, and the keys that are read */
+    private static String createBundleStub() {
+        final StringBuilder bundle = new StringBuilder("package android.os;"
+                + " import java.util.ArrayList;"
+                + " public final class Bundle implements Parcelable {"
+                + " public static final Bundle EMPTY = new Bundle();"
+                + " private final java.util.Map<String, Object> values = new java.util.HashMap<>();"
+                + " public final java.util.List<String> reads = new ArrayList<>();"
+                + " public Bundle() {}"
+                + " public Bundle(int capacity) {}"
+                + " public int describeContents() { return 0; }"
+                + " public void writeToParcel(Parcel dest, int flags) {}"
+                + " public boolean containsKey(String key) { return values.containsKey(key); }"
+                + " public void putParcelable(String key, Parcelable value) { values.put(key, value); }"
+                + " @SuppressWarnings(\"unchecked\") public <T extends Parcelable> T getParcelable(String key) {"
+                + " reads.add(key); return (T) values.get(key); }"
+                + " public void putParcelableArrayList(String key, ArrayList<? extends Parcelable> value) { values.put(key, value); }"
+                + " @SuppressWarnings(\"unchecked\") public <T extends Parcelable> ArrayList<T> getParcelableArrayList(String key) {"
+                + " reads.add(key); return (ArrayList<T>) values.get(key); }");
+        for (int i = 0; i < PRIMITIVE_ACCESSORS.length; i++) {
+            final String[] accessor = PRIMITIVE_ACCESSORS[i];
+            bundle.append(" public void put").append(accessor[0]).append("(String key, ")
+                    .append(accessor[1]).append(" value) { values.put(key, value); }")
+                    .append(" public ").append(accessor[1]).append(" get").append(accessor[0]).append("(String key, ")
+                    .append(accessor[1]).append(" defaultValue) { reads.add(key); Object value = values.get(key);")
+                    .append(" return value instanceof ").append(PRIMITIVE_BOXES[i]).append(" ? (").append(PRIMITIVE_BOXES[i])
+                    .append(") value : defaultValue; }");
+        }
+        for (String[] accessor : OBJECT_ACCESSORS) {
+            bundle.append(" public void put").append(accessor[0]).append("(String key, ")
+                    .append(accessor[1]).append(" value) { values.put(key, value); }")
+                    .append(" public ").append(accessor[1]).append(" get").append(accessor[0])
+                    .append("(String key) { reads.add(key); return (").append(accessor[1]).append(") values.get(key); }");
+        }
+        for (String[] accessor : ARRAY_LIST_ACCESSORS) {
+            bundle.append(" public void put").append(accessor[0]).append("(String key, ArrayList<")
+                    .append(accessor[1]).append("> value) { values.put(key, value); }")
+                    .append(" @SuppressWarnings(\"unchecked\") public ArrayList<").append(accessor[1]).append("> get")
+                    .append(accessor[0]).append("(String key) { reads.add(key); return (ArrayList<").append(accessor[1])
+                    .append(">) values.get(key); }");
+        }
+        return bundle.append(" }").toString();
+    }
+
+    private static String createIntentStub() {
+        final StringBuilder intent = new StringBuilder("package android.content;"
+                + " import java.util.ArrayList;"
+                + " import android.os.Parcelable;"
+                + " public class Intent {"
+                + " public Intent(Context context, Class<?> cls) {}"
+                + " public Intent addFlags(int flags) { return this; }"
+                + " public Intent putExtras(android.os.Bundle extras) { return this; }"
+                + " public boolean hasExtra(String name) { return false; }"
+                + " public Intent putExtra(String name, Parcelable value) { return this; }"
+                + " public <T extends Parcelable> T getParcelableExtra(String name) { return null; }"
+                + " public Intent putParcelableArrayListExtra(String name, ArrayList<? extends Parcelable> value) { return this; }"
+                + " public <T extends Parcelable> ArrayList<T> getParcelableArrayListExtra(String name) { return null; }");
+        for (String[] accessor : PRIMITIVE_ACCESSORS) {
+            intent.append(" public Intent putExtra(String name, ").append(accessor[1]).append(" value) { return this; }")
+                    .append(" public ").append(accessor[1]).append(" get").append(accessor[0])
+                    .append("Extra(String name, ").append(accessor[1]).append(" defaultValue) { return defaultValue; }");
+        }
+        for (String[] accessor : OBJECT_ACCESSORS) {
+            intent.append(" public Intent putExtra(String name, ").append(accessor[1]).append(" value) { return this; }")
+                    .append(" public ").append(accessor[1]).append(" get").append(accessor[0])
+                    .append("Extra(String name) { return null; }");
+        }
+        for (String[] accessor : ARRAY_LIST_ACCESSORS) {
+            intent.append(" public Intent put").append(accessor[0]).append("Extra(String name, ArrayList<")
+                    .append(accessor[1]).append("> value) { return this; }")
+                    .append(" public ArrayList<").append(accessor[1]).append("> get").append(accessor[0])
+                    .append("Extra(String name) { return null; }");
+        }
+        return intent.append(" }").toString();
+    }
+
+    private TestCompiler() {}
+
+    /* The outputs are read into memory, so nothing is left in the temp directory */
+    static Result compile(Processor processor, List<String> options, Map<String, String> sources) throws IOException {
+        final File root = Files.createTempDirectory("piri-test").toFile();
+        try {
+            return compile(processor, options, sources, root);
+        } finally {
+            delete(root);
+        }
+    }
+
+    private static Result compile(Processor processor, List<String> options, Map<String, String> sources,
+                                  File root) throws IOException {
+        final File generatedDir = new File(root, "generated");
+        final File classesDir = new File(root, "classes");
+        if (!generatedDir.mkdirs() || !classesDir.mkdirs()) {
+            throw new IOException("Could not create output directories in " + root);
+        }
+
+        final List<JavaFileObject> units = new ArrayList<>();
+        for (String[] stub : ANDROID_STUBS) {
+            units.add(new SourceFile(stub[0], stub[1]));
+        }
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            units.add(new SourceFile(source.getKey(), source.getValue()));
+        }
+
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-s", generatedDir.getPath(),
+                "-d", classesDir.getPath()));
+        arguments.addAll(options);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8);
+        try {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, arguments, null, units);
+            task.setProcessors(Collections.singletonList(processor));
+            final boolean success = task.call();
+            final Map<String, String> generated = new TreeMap<>();
+            for (Map.Entry<String, byte[]> file : readFiles(generatedDir).entrySet()) {
+                generated.put(file.getKey(), new String(file.getValue(), UTF_8));
+            }
+            return new Result(success, diagnostics.getDiagnostics(), generated, readFiles(classesDir));
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /* Files by their path relative to the directory, e.g. com/example/Piri.java */
+    private static Map<String, byte[]> readFiles(File directory) throws IOException {
+        final Map<String, byte[]> files = new TreeMap<>();
+        final String rootPath = directory.getPath() + File.separator;
+        final List<File> pending = new ArrayList<>(Collections.singletonList(directory));
+        while (!pending.isEmpty()) {
+            final File file = pending.remove(pending.size() - 1);
+            final File[] children = file.listFiles();
+            if (children != null) {
+                pending.addAll(Arrays.asList(children));
+            } else if (file.isFile()) {
+                final String name = file.getPath().substring(rootPath.length()).replace(File.separatorChar, '/');
+                files.put(name, Files.readAllBytes(file.toPath()));
+            }
+        }
+        return files;
+    }
+
+    private static void delete(File file) throws IOException {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Could not delete " + file);
+        }
+    }
+
+    static final class Result {
+        final boolean success;
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        /* Generated sources by their path relative to the source output, e.g. com/example/Piri.java */
+        final Map<String, String> generated;
+        /* Class files by their path relative to the class output, e.g. com/example/Piri.class */
+        private final Map<String, byte[]> classes;
+
+        Result(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics, Map<String, String> generated,
+               Map<String, byte[]> classes) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.generated = generated;
+            this.classes = classes;
+        }
+
+        /* Loads the compiled stubs, sources and generated classes */
+        ClassLoader createClassLoader() {
+            return new MemoryClassLoader(classes, TestCompiler.class.getClassLoader());
+        }
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final byte[] bytes = classes.get(name.replace('.', '/') + ".class");
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String content;
+
+        SourceFile(String qualifiedName, String content) {
+            super(URI.create("string:///" + qualifiedName.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.raqun;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TypeClassifierTest {
+
+    @Test
+    public void everyTypeUsesItsTypedAccessor() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.User", "package com.example;"
+                + " public class User implements android.os.Parcelable, java.io.Serializable {"
+                + " public int describeContents() { return 0; }"
+                + " public void writeToParcel(android.os.Parcel dest, int flags) {} }");
+        sources.put("com.example.TypesActivity", "package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " import java.util.ArrayList;"
+                + " public class TypesActivity extends android.app.Activity {"
+                + " @PiriParam protected boolean flag;"
+                + " @PiriParam protected Short boxedShort;"
+                + " @PiriParam protected double ratio;"
+                + " @PiriParam protected CharSequence text;"
+                + " @PiriParam protected android.os.Bundle bundle;"
+                + " @PiriParam protected User user;"
+                + " @PiriParam protected User[] users;"
+                + " @PiriParam protected float[] floats;"
+                + " @PiriParam protected ArrayList<Integer> ids;"
+                + " @PiriParam protected ArrayList<User> userList;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String binder = result.generated.get("com/example/TypesActivityBinder.java");
+        assertTrue(binder, binder.contains("activity.flag = intent.getBooleanExtra(\"flag\", false);"));
+        assertTrue(binder, binder.contains("activity.boxedShort = intent.getShortExtra(\"boxedShort\", (short) 0);"));
+        assertTrue(binder, binder.contains("activity.ratio = intent.getDoubleExtra(\"ratio\", 0d);"));
+        assertTrue(binder, binder.contains("activity.text = intent.getCharSequenceExtra(\"text\");"));
+        assertTrue(binder, binder.contains("activity.bundle = intent.getBundleExtra(\"bundle\");"));
+        assertTrue(binder, binder.contains("activity.floats = intent.getFloatArrayExtra(\"floats\");"));
+        assertTrue(binder, binder.contains("activity.ids = intent.getIntegerArrayListExtra(\"ids\");"));
+        assertTrue(binder, binder.contains("activity.userList = intent.getParcelableArrayListExtra(\"userList\");"));
+        assertTrue(binder, binder.contains("Arrays.copyOf(usersArray, usersArray.length, User[].class)"));
+
+        /* User is Parcelable and Serializable, Parcelable has to win */
+        assertTrue(binder, binder.contains("activity.user = intent.getParcelableExtra(\"user\");"));
+        assertFalse(binder, binder.contains("getSerializableExtra"));
+        final String creator = result.generated.get("com/example/TypesActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("extras.putParcelable(\"user\", user);"));
+        assertTrue(creator, creator.contains("extras.putIntegerArrayList(\"ids\", ids);"));
+    }
+
+    @Test
+    public void listsAreCopiedAndBoxedPrimitivesArePacked() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.ListsActivity", "package com.example;"
+                        + " import com.raqun.PiriParam;"
+                        + " import java.util.*;"
+                        + " public class ListsActivity extends android.app.Activity {"
+                        + " @PiriParam protected List<String> names;"
+                        + " @PiriParam protected Collection<Integer> counts;"
+                        + " @PiriParam(required = true, packPrimitives = true) protected List<Long> ids;"
+                        + " @PiriParam(packPrimitives = true) protected ArrayList<Long> moreIds;"
+                        + " }"));
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String binder = result.generated.get("com/example/ListsActivityBinder.java");
+        assertTrue(binder, binder.contains("activity.names = intent.getStringArrayListExtra(\"names\");"));
+        assertTrue(binder, binder.contains("activity.ids = $unpackLongs(intent.getLongArrayExtra(\"ids\"));"));
+        assertTrue(binder, binder.contains("activity.moreIds = $unpackLongs(intent.getLongArrayExtra(\"moreIds\"));"));
+        assertFalse(binder, binder.contains("getSerializableExtra"));
+
+        final String creator = result.generated.get("com/example/ListsActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("extras.putStringArrayList(\"names\", names instanceof ArrayList"
+                + " ? (ArrayList<String>) names : new ArrayList<String>(names));"));
+        assertTrue(creator, creator.contains("extras.putLongArray(\"ids\", $packLongs(ids));"));
+        /* One pack method per element type */
+        assertEquals(creator.indexOf("private static long[] $packLongs("), creator.lastIndexOf("private static long[] $packLongs("));
+
+        final ClassLoader classLoader = result.createClassLoader();
+        final Method pack = classLoader.loadClass("com.example.ListsActivityIntentCreator")
+                .getDeclaredMethod("$packLongs", Collection.class);
+        pack.setAccessible(true);
+        final Method unpack = classLoader.loadClass("com.example.ListsActivityBinder")
+                .getDeclaredMethod("$unpackLongs", long[].class);
+        unpack.setAccessible(true);
+        final long[] packed = (long[]) pack.invoke(null, Arrays.asList(3L, -1L, Long.MAX_VALUE));
+        assertArrayEquals(new long[]{3L, -1L, Long.MAX_VALUE}, packed);
+        assertEquals(Arrays.asList(3L, -1L, Long.MAX_VALUE), unpack.invoke(null, (Object) packed));
+        assertNull(unpack.invoke(null, (Object) null));
+    }
+
+    @Test
+    public void paramsCanTakeTheNameOfAPackMethod() throws Exception {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("com.example.IdsActivity", "package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " import java.util.List;"
+                + " public class IdsActivity extends android.app.Activity {"
+                + " @PiriParam(packPrimitives = true) protected List<Long> packLongs;"
+                + " @PiriParam(packPrimitives = true) protected List<Long> unpackLongs;"
+                + " }");
+        sources.put("com.example.LazyIdsActivity", "package com.example;"
+                + " import com.raqun.PiriParam;"
+                + " import java.util.List;"
+                + " @com.raqun.PiriActivity(lazy = true)"
+                + " public class LazyIdsActivity extends android.app.Activity {"
+                + " @PiriParam(packPrimitives = true) protected List<Long> unpackLongs;"
+                + " }");
+
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), sources);
+        assertTrue(result.diagnostics.toString(), result.success);
+
+        final String creator = result.generated.get("com/example/IdsActivityIntentCreator.java");
+        assertTrue(creator, creator.contains("extras.putLongArray(\"packLongs\", $packLongs(packLongs));"));
+        final String binder = result.generated.get("com/example/IdsActivityBinder.java");
+        assertTrue(binder, binder.contains("activity.unpackLongs = $unpackLongs(intent.getLongArrayExtra(\"unpackLongs\"));"));
+        final String args = result.generated.get("com/example/LazyIdsActivityArgs.java");
+        assertTrue(args, args.contains("$unpackLongs(intent.getLongArrayExtra(\"unpackLongs\"))"));
+    }
+
+    @Test
+    public void onlyListsOfBoxedPrimitivesArePacked() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.PackedActivity",
+                        "package com.example; public class PackedActivity extends android.app.Activity {"
+                                + " @com.raqun.PiriParam(packPrimitives = true) protected java.util.List<String> names; }"));
+
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString()
+                .contains("Only a List, ArrayList or Collection of boxed primitives can be packed"));
+    }
+
+    @Test
+    public void unsupportedTypeIsAnError() throws Exception {
+        final TestCompiler.Result result = TestCompiler.compile(new PiriProcessor(),
+                Collections.<String>emptyList(), Collections.singletonMap("com.example.ObjectActivity",
+                        "package com.example; public class ObjectActivity extends android.app.Activity {"
+                                + " @com.raqun.PiriParam protected Object value; }"));
+
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString(), result.diagnostics.toString().contains("can't be put into an Intent"));
+    }
+}
@@ -0,0 +1,12 @@
+# PiriRegistry.bind(Activity) finds the binder of an activity by its class name, so activities with PiriParams keep
+# their names. This also covers base activities which aren't in the manifest.
+-if class * { @com.raqun.PiriParam <fields>; }
+-keepnames class <1>
+
+# Generated Parcelables are created through their CREATOR
+-keepclassmembers class * implements android.os.Parcelable {
+    public static final ** CREATOR;
+}
+
+# Nothing else is looked up by reflection. IntentCreators, binders, PiriIntentCreator and PiriBinders are
+# left to the shrinker: unused ones are removed, and the Piri overloads and small helpers can be inlined.
@@ -0,0 +1,28 @@
+package com.raqun;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Helpers the binders generated with the piri.compact option share, instead of each having a copy.
+ */
+
+public final class PiriBinders {
+    private PiriBinders() {}
+
+    /**
+     * Adds the key of a changed param to the set, which is only created for the first one
+     */
+    public static Set<String> addChanged(Set<String> changed, String key) {
+        if (changed == null) {
+            changed = new HashSet<>();
+        }
+        changed.add(key);
+        return changed;
+    }
+
+    /* java.util.Objects needs API 19 */
+    public static boolean isEqual(Object a, Object b) {
+        return a == b || a != null && a.equals(b);
+    }
+}
@@ -0,0 +1,39 @@
+package com.raqun;
+
+/**
+ * Handle of an asynchronous bind, returned by the generated bindAsync() of an activity with heavy
+ * PiriParams. The IntentCreator sends the heavy params in a Bundle of their own, which bindAsync() takes
+ * from the extras without decoding it. They're decoded one after another on the given Executor, and each
+ * one is assigned on the main thread right before {@link Listener#onParamReady(String)} is called with its key.
+ *
+ * Once the binding is cancelled or the activity is destroyed, params that aren't decoded yet are skipped,
+ * decoded ones are dropped without being assigned, and the listener isn't called anymore.
+ */
+
+public final class PiriBinding {
+    private volatile boolean cancelled;
+
+    public interface Listener {
+        /**
+         * Called on the main thread after the param with the given key was assigned
+         */
+        void onParamReady(String key);
+
+        /**
+         * Called on the main thread when the param with the given key couldn't be decoded, e.g. because of a
+         * BadParcelableException. The params after it aren't decoded.
+         */
+        void onParamFailed(String key, RuntimeException error);
+    }
+
+    /**
+     * Stops the binding, e.g. in onDestroy. Can be called on any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,80 @@
+package com.raqun;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * In-process store for PiriParams sent with {@link PiriParam.Transport#IN_MEMORY}. The IntentCreator
+ * puts the object here and only sends a token, the binder gets the object back by reference.
+ *
+ * The store holds at most {@link #getMaxSize()} objects and evicts the least recently used one first, so
+ * abandoned navigations can't leak memory. A token is not removed when it's read, an activity recreated
+ * after a configuration change binds the same object again.
+ *
+ * A token from a killed process, or one that was evicted, resolves to null.
+ */
+
+public final class PiriHandoff {
+    /* Sent for a null object, never resolves */
+    public static final long NO_TOKEN = 0L;
+
+    private static final int DEFAULT_MAX_SIZE = 16;
+
+    /* The high bits of every token identify this process, tokens of an earlier process never match */
+    private static final long PROCESS_BITS = ((long) (new Random().nextInt() | 1)) << 32;
+
+    /* Access ordered, a get moves the token to the end so it's evicted last */
+    private static final Map<Long, Object> objects = new LinkedHashMap<>(16, 0.75f, true);
+    private static int maxSize = DEFAULT_MAX_SIZE;
+    private static int sequence;
+
+    private PiriHandoff() {}
+
+    /**
+     * @return the token to send instead of the object
+     */
+    public static synchronized long put(Object value) {
+        if (value == null) {
+            return NO_TOKEN;
+        }
+        final long token = PROCESS_BITS | (++sequence & 0xffffffffL);
+        objects.put(token, value);
+        trimToSize();
+        return token;
+    }
+
+    /**
+     * @return the object of the token, or null if the token is stale
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <T> T get(long token) {
+        return (T) objects.get(token);
+    }
+
+    /* Releases an object before it's evicted, e.g. once the destination finished */
+    public static synchronized void remove(long token) {
+        objects.remove(token);
+    }
+
+    public static synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public static synchronized void setMaxSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("PiriHandoff needs room for at least one object");
+        }
+        maxSize = size;
+        trimToSize();
+    }
+
+    private static void trimToSize() {
+        final Iterator<Long> tokens = objects.keySet().iterator();
+        while (objects.size() > maxSize && tokens.hasNext()) {
+            tokens.next();
+            tokens.remove();
+        }
+    }
+}
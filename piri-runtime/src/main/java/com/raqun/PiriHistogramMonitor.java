@@ -0,0 +1,122 @@
+package com.raqun;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Default {@link PiriMonitor}, keeps a histogram of create and bind durations and of extras sizes for
+ * every destination in memory. Values are counted in power of two buckets, so percentiles are upper
+ * bounds within a factor of two.
+ *
+ * <pre>
+ * PiriHistogramMonitor histograms = new PiriHistogramMonitor();
+ * PiriInstrumentation.install(histograms, PiriInstrumentation.MEASURE_EXTRAS);
+ * ...
+ * Log.d("Piri", histograms.dump());
+ * </pre>
+ */
+
+public final class PiriHistogramMonitor implements PiriMonitor {
+    private final Map<String, Destination> destinations = new HashMap<>();
+
+    @Override
+    public synchronized void onCreate(String destination, long durationNanos, int extrasBytes) {
+        final Destination stats = getDestination(destination);
+        stats.createNanos.add(durationNanos);
+        if (extrasBytes >= 0) {
+            stats.extrasBytes.add(extrasBytes);
+        }
+    }
+
+    @Override
+    public synchronized void onBind(String destination, long durationNanos) {
+        getDestination(destination).bindNanos.add(durationNanos);
+    }
+
+    /**
+     * @return the largest extras size seen for the destination in bytes, or 0 if none was measured
+     */
+    public synchronized long getMaxExtrasBytes(String destination) {
+        final Destination stats = destinations.get(destination);
+        return stats == null ? 0 : stats.extrasBytes.max;
+    }
+
+    public synchronized void reset() {
+        destinations.clear();
+    }
+
+    /**
+     * @return one line per destination and measurement, destinations sorted by name
+     */
+    public synchronized String dump() {
+        final List<String> names = new ArrayList<>(destinations.keySet());
+        Collections.sort(names);
+
+        final StringBuilder dump = new StringBuilder();
+        for (String name : names) {
+            final Destination stats = destinations.get(name);
+            dump.append(name).append('\n');
+            stats.createNanos.appendTo(dump, "create", 1000, "us");
+            stats.bindNanos.appendTo(dump, "bind", 1000, "us");
+            stats.extrasBytes.appendTo(dump, "extras", 1, "B");
+        }
+        return dump.toString();
+    }
+
+    private Destination getDestination(String name) {
+        Destination stats = destinations.get(name);
+        if (stats == null) {
+            stats = new Destination();
+            destinations.put(name, stats);
+        }
+        return stats;
+    }
+
+    private static final class Destination {
+        final Histogram createNanos = new Histogram();
+        final Histogram bindNanos = new Histogram();
+        final Histogram extrasBytes = new Histogram();
+    }
+
+    private static final class Histogram {
+        /* Bucket i counts the values below 2^i, and at least 2^(i-1) */
+        private final long[] buckets = new long[Long.SIZE];
+        private long count;
+        private long sum;
+        private long max;
+
+        void add(long value) {
+            final long positive = Math.max(0, value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(positive)]++;
+            count++;
+            sum += positive;
+            max = Math.max(max, positive);
+        }
+
+        private long percentile(double fraction) {
+            final long rank = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    /* The upper bound of the bucket, but never more than the largest value */
+                    return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        void appendTo(StringBuilder dump, String name, long unit, String unitName) {
+            if (count == 0) {
+                return;
+            }
+            dump.append(String.format(Locale.US, "  %-7s count=%d mean=%d p50<=%d p90<=%d p99<=%d max=%d %s%n",
+                    name, count, sum / count / unit, percentile(0.5) / unit, percentile(0.9) / unit,
+                    percentile(0.99) / unit, max / unit, unitName));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.raqun;
+
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Trace;
+
+/**
+ * Entry point of the hooks generated with the piri.instrumentation processor option. Nothing is measured
+ * until a monitor is installed, until then a hook only reads a volatile field.
+ */
+
+public final class PiriInstrumentation {
+    /* Wraps create() and bind() in trace sections, on API 18 and up */
+    public static final int TRACE_SECTIONS = 1;
+    /* Parcels the extras of every created Intent to report their size, this costs as much as sending them */
+    public static final int MEASURE_EXTRAS = 1 << 1;
+
+    /* Returned by begin when nothing is measured */
+    private static final long NOT_MEASURED = 0L;
+    /* The low bits of a start time tell that it's measured, and whether a trace section was begun */
+    private static final long MEASURED_BIT = 1L << 1;
+    private static final long SECTION_BIT = 1L;
+
+    private static volatile PiriMonitor monitor;
+    private static volatile int flags;
+
+    private PiriInstrumentation() {}
+
+    public static void install(PiriMonitor monitor, int flags) {
+        if (monitor == null) {
+            throw new IllegalArgumentException("Use uninstall() to remove the monitor");
+        }
+        PiriInstrumentation.flags = flags;
+        PiriInstrumentation.monitor = monitor;
+    }
+
+    public static void uninstall() {
+        monitor = null;
+        flags = 0;
+    }
+
+    /**
+     * Called by generated code when create() or bind() starts.
+     *
+     * @return the start time to pass to the matching end call
+     */
+    public static long begin(String section) {
+        if (monitor == null) {
+            return NOT_MEASURED;
+        }
+        final long start = (System.nanoTime() & ~(MEASURED_BIT | SECTION_BIT)) | MEASURED_BIT;
+        if ((flags & TRACE_SECTIONS) != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(section);
+            return start | SECTION_BIT;
+        }
+        return start;
+    }
+
+    /* Called by generated code when create() returns */
+    public static void endCreate(long start, String destination, Intent intent) {
+        if (start == NOT_MEASURED) {
+            return;
+        }
+        final long duration = System.nanoTime() - start;
+        endSection(start);
+        final PiriMonitor currentMonitor = monitor;
+        if (currentMonitor != null) {
+            final int extrasBytes = (flags & MEASURE_EXTRAS) != 0 ? getParcelledSize(intent.getExtras()) : -1;
+            currentMonitor.onCreate(destination, duration, extrasBytes);
+        }
+    }
+
+    /* Called by generated code when bind() returns */
+    public static void endBind(long start, String destination) {
+        if (start == NOT_MEASURED) {
+            return;
+        }
+        final long duration = System.nanoTime() - start;
+        endSection(start);
+        final PiriMonitor currentMonitor = monitor;
+        if (currentMonitor != null) {
+            currentMonitor.onBind(destination, duration);
+        }
+    }
+
+    /* Only ends the section begin() started, even if the flags changed in between */
+    private static void endSection(long start) {
+        if ((start & SECTION_BIT) != 0) {
+            Trace.endSection();
+        }
+    }
+
+    private static int getParcelledSize(Bundle extras) {
+        if (extras == null) {
+            return 0;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            extras.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
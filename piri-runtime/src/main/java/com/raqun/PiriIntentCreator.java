@@ -0,0 +1,30 @@
+package com.raqun;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Base class of the IntentCreators generated with the piri.compact option. It holds the Intent and the
+ * flags, so every creator only has its own constructor, builder methods and create().
+ *
+ * @param <T> the generated creator, returned by addFlags for chaining
+ */
+
+public abstract class PiriIntentCreator<T extends PiriIntentCreator<T>> {
+    protected final Intent intent;
+
+    protected PiriIntentCreator(Context context, Class<? extends Activity> activityClass) {
+        intent = new Intent(context, activityClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public final T addFlags(int... flags) {
+        for (int flag : flags) {
+            intent.addFlags(flag);
+        }
+        return (T) this;
+    }
+
+    public abstract Intent create();
+}
@@ -0,0 +1,19 @@
+package com.raqun;
+
+/**
+ * Receives what the instrumented code generated by Piri measures, see {@link PiriInstrumentation}.
+ * Called on the thread that created the Intent or bound the activity, so it should return quickly.
+ */
+
+public interface PiriMonitor {
+    /**
+     * @param destination  class name of the started activity
+     * @param extrasBytes  parcelled size of the extras, or -1 if sizes aren't measured
+     */
+    void onCreate(String destination, long durationNanos, int extrasBytes);
+
+    /**
+     * @param destination  class name of the bound activity
+     */
+    void onBind(String destination, long durationNanos);
+}